@@ -24,11 +24,23 @@ public class TwigCoreConstants
     public static final String SYNTAX_IGNORE = "Ignore";
     public static final String SYNTAX_WARNING = "Warning";
     public static final String SYNTAX_PROBLEM_SEVERITY = "syntax_problem_severity";
+    public static final String BUILD_PARALLELISM = "build_parallelism";
+    public static final String PARSER_ENGINE = "parser_engine";
+    public static final String PARSER_ENGINE_LR = "lr";
+    public static final String PARSER_ENGINE_DESCENT = "descent";
 
     // Twig core tags
     public static final String START_BLOCK ="block";
     public static final String END_BLOCK ="endblock";
     public static final String EXTENDS ="extends";
+    public static final String INCLUDE ="include";
+    public static final String EMBED ="embed";
+    public static final String IMPORT ="import";
+    public static final String FROM ="from";
+    public static final String USE ="use";
+    public static final String MACRO ="macro";
+    public static final String SELF ="_self";
+    public static final String FILTER ="filter";
     
     // Twig core classes
     public static final String TWIG_EXTENSION = "Twig_Extension";
@@ -37,6 +49,9 @@ public class TwigCoreConstants
     public static final String TWIG_FUNCTION_METHOD = "Twig_Function_Method";
     public static final String TWIG_FUNCTION_FUNCTION = "Twig_Function_Function";
     public static final String TWIG_TEST_FUNCTION = "Twig_Test_Function";
+    public static final String TWIG_SIMPLE_FILTER = "Twig_SimpleFilter";
+    public static final String TWIG_SIMPLE_FUNCTION = "Twig_SimpleFunction";
+    public static final String TWIG_SIMPLE_TEST = "Twig_SimpleTest";
     public static final String TWIG_TOKEN_PARSER = "Twig_TokenParser";
 
     // / Twig core method names
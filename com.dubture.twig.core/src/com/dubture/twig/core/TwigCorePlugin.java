@@ -19,6 +19,8 @@ import org.eclipse.core.runtime.Status;
 import org.osgi.framework.BundleContext;
 
 import com.dubture.twig.core.model.TwigModelAccess;
+import com.dubture.twig.core.model.TwigResourceChangeListener;
+import com.dubture.twig.core.util.TwigTemplateClassifier;
 
 public class TwigCorePlugin extends Plugin
 {
@@ -32,6 +34,8 @@ public class TwigCorePlugin extends Plugin
 
     private Boolean _isDltk3 = null;
 
+    private IResourceChangeListener resourceListener = new TwigResourceChangeListener();
+
     // The shared instance
     private static TwigCorePlugin plugin;
 
@@ -48,20 +52,10 @@ public class TwigCorePlugin extends Plugin
         plugin = this;
 
         IWorkspace workspace = ResourcesPlugin.getWorkspace();
-        IResourceChangeListener listener = new IResourceChangeListener()
-        {
-
-            @Override
-            public void resourceChanged(IResourceChangeEvent event)
-            {
-
-                TwigModelAccess.getDefault().clearCache();
-
-            }
-        };
-
-        workspace.addResourceChangeListener(listener,
-                IResourceChangeEvent.PRE_BUILD);
+        workspace.addResourceChangeListener(resourceListener,
+                IResourceChangeEvent.POST_CHANGE
+                        | IResourceChangeEvent.PRE_CLOSE
+                        | IResourceChangeEvent.PRE_DELETE);
 
     }
 
@@ -73,6 +67,9 @@ public class TwigCorePlugin extends Plugin
      */
     public void stop(BundleContext bundleContext) throws Exception
     {
+        ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceListener);
+        TwigModelAccess.getDefault().saveSnapshots();
+        TwigTemplateClassifier.shutdown();
         super.stop(bundleContext);
         plugin = null;
     }
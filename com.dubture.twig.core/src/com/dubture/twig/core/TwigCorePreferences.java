@@ -9,11 +9,21 @@
 package com.dubture.twig.core;
 
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.dltk.compiler.problem.ProblemSeverity;
 
 public class TwigCorePreferences
 {
 
+    /**
+     * The parser engine, looked up once and dropped when the preference
+     * changes. Every parse asks for it.
+     */
+    private static volatile String parserEngine;
+    private static boolean listening = false;
+
     /**
      * Get the severity level for annotation problems.
      * 
@@ -57,4 +67,109 @@ public class TwigCorePreferences
 
         return null;
     }
+
+    /**
+     * Get the number of threads parsing templates during a build. A value of
+     * 0 or less, the default, uses one thread per available processor.
+     * 
+     * @return the number of build threads, at least 1
+     */
+    public static int getBuildParallelism()
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        try {
+
+            int parallelism = Platform.getPreferencesService().getInt(
+                    TwigCorePlugin.PLUGIN_ID,
+                    TwigCoreConstants.BUILD_PARALLELISM, 0, null);
+
+            if (parallelism > 0) {
+                return Math.min(parallelism, processors);
+            }
+
+        } catch (Exception e) {
+
+        }
+
+        return processors;
+    }
+
+    /**
+     * Get the parser building the declarations of templates, either the
+     * generated LR parser (the default) or the recursive descent one.
+     * 
+     * @return {@link TwigCoreConstants#PARSER_ENGINE_LR} or
+     *         {@link TwigCoreConstants#PARSER_ENGINE_DESCENT}
+     */
+    public static String getParserEngine()
+    {
+        String engine = parserEngine;
+
+        if (engine != null) {
+            return engine;
+        }
+
+        synchronized (TwigCorePreferences.class) {
+            engine = readParserEngine();
+
+            // without a listener the choice could not be refreshed
+            if (listenToParserEngine()) {
+                parserEngine = engine;
+            }
+        }
+
+        return engine;
+    }
+
+    private static boolean listenToParserEngine()
+    {
+        if (listening) {
+            return true;
+        }
+
+        try {
+
+            InstanceScope.INSTANCE.getNode(TwigCorePlugin.PLUGIN_ID).addPreferenceChangeListener(
+                    new IPreferenceChangeListener()
+                    {
+                        @Override
+                        public void preferenceChange(PreferenceChangeEvent event)
+                        {
+                            if (TwigCoreConstants.PARSER_ENGINE.equals(event.getKey())) {
+                                synchronized (TwigCorePreferences.class) {
+                                    parserEngine = null;
+                                }
+                            }
+                        }
+                    });
+
+            listening = true;
+
+        } catch (Exception e) {
+
+        }
+
+        return listening;
+    }
+
+    private static String readParserEngine()
+    {
+        try {
+
+            String engine = Platform.getPreferencesService().getString(
+                    TwigCorePlugin.PLUGIN_ID,
+                    TwigCoreConstants.PARSER_ENGINE,
+                    TwigCoreConstants.PARSER_ENGINE_LR, null);
+
+            if (TwigCoreConstants.PARSER_ENGINE_DESCENT.equals(engine)) {
+                return TwigCoreConstants.PARSER_ENGINE_DESCENT;
+            }
+
+        } catch (Exception e) {
+
+        }
+
+        return TwigCoreConstants.PARSER_ENGINE_LR;
+    }
 }
@@ -8,15 +8,19 @@
  ******************************************************************************/
 package com.dubture.twig.core.builder;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.builder.IBuildContext;
 import org.eclipse.dltk.core.builder.IBuildParticipant;
+import org.eclipse.dltk.core.builder.IBuildParticipantExtension;
 
+import com.dubture.twig.core.TwigCorePreferences;
 import com.dubture.twig.core.log.Logger;
-import com.dubture.twig.core.model.Template;
-import com.dubture.twig.core.model.TwigModelAccess;
 import com.dubture.twig.core.util.TwigModelUtils;
 
 /**
@@ -30,14 +34,24 @@ import com.dubture.twig.core.util.TwigModelUtils;
  * 
  * > Filters
  * 
+ * Templates are only collected while the builder visits them, they are
+ * parsed and indexed by a {@link TwigBuildStage} at the end of the build.
  * 
  * @author Robert Gruendler <r.gruendler@gmail.com>
  * 
  */
-public class TwigBuildParticipant implements IBuildParticipant
+public class TwigBuildParticipant implements IBuildParticipant,
+        IBuildParticipantExtension
 {
 
-    private TwigModelAccess model = TwigModelAccess.getDefault();
+    private List<ISourceModule> templates = new ArrayList<ISourceModule>();
+
+    @Override
+    public boolean beginBuild(int buildType)
+    {
+        templates.clear();
+        return true;
+    }
 
     @Override
     public void build(IBuildContext context) throws CoreException
@@ -48,10 +62,34 @@ public class TwigBuildParticipant implements IBuildParticipant
 
         try {
             if (file != null && TwigModelUtils.isTwigTemplate(file.getName())) {
-                model.addTemplate(new Template(sourceModule));
+                templates.add(sourceModule);
             }
         } catch (Exception e) {
             Logger.logException(e);
         }
     }
+
+    @Override
+    public void endBuild(IProgressMonitor monitor)
+    {
+        if (templates.isEmpty()) {
+            return;
+        }
+
+        TwigBuildStage stage = new TwigBuildStage(TwigCorePreferences.getBuildParallelism());
+        long start = System.currentTimeMillis();
+
+        try {
+            stage.run(templates, monitor);
+        } finally {
+            // a stage which failed while indexing may leave a batch behind
+            TwigBuildResults.getDefault().clear();
+        }
+
+        Logger.debugMSG("built " + templates.size() + " twig templates on "
+                + stage.getParallelism() + " threads in "
+                + (System.currentTimeMillis() - start) + "ms");
+
+        templates.clear();
+    }
 }
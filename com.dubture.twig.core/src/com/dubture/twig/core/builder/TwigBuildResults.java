@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.builder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.dubture.twig.core.index.TwigIndexingVisitorExtension;
+
+/**
+ *
+ * Holds the batches of the {@link TwigBuildStage} while it indexes their
+ * templates. The {@link TwigIndexingVisitorExtension} writes the references
+ * of a batch to the index instead of visiting the template again, as long as
+ * the template has not changed since the stage parsed it.
+ *
+ * A batch is handed out once. The stage takes back every batch the indexer
+ * did not ask for, so batches never outlive the indexing of their template.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigBuildResults
+{
+
+    private static final TwigBuildResults instance = new TwigBuildResults();
+
+    private final Map<String, TwigReferenceBuffer.Batch> batches = new HashMap<String, TwigReferenceBuffer.Batch>();
+
+    public static TwigBuildResults getDefault()
+    {
+        return instance;
+    }
+
+    /**
+     * @param batch
+     *            a batch of a template which has been parsed successfully
+     */
+    public synchronized void put(TwigReferenceBuffer.Batch batch)
+    {
+        batches.put(batch.getSourceModule().getHandleIdentifier(), batch);
+    }
+
+    /**
+     * Remove the batch of a template.
+     *
+     * @param handleIdentifier
+     * @return the batch, or null if the template has not been built or has
+     *         already been taken
+     */
+    public synchronized TwigReferenceBuffer.Batch take(String handleIdentifier)
+    {
+        return batches.remove(handleIdentifier);
+    }
+
+    public synchronized int size()
+    {
+        return batches.size();
+    }
+
+    public synchronized void clear()
+    {
+        batches.clear();
+    }
+}
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.internal.core.index2.ProjectIndexerManager;
+import org.eclipse.php.internal.core.PHPLanguageToolkit;
+
+import com.dubture.twig.core.index.TwigIndexingVisitor;
+import com.dubture.twig.core.index.TwigIndexingVisitorExtension;
+import com.dubture.twig.core.index.TwigReferenceCollector;
+import com.dubture.twig.core.log.Logger;
+import com.dubture.twig.core.model.Template;
+import com.dubture.twig.core.model.TemplateVariables;
+import com.dubture.twig.core.model.TwigModelAccess;
+import com.dubture.twig.core.parser.TwigModuleCache;
+
+/**
+ *
+ * Parses and indexes the templates collected by the
+ * {@link TwigBuildParticipant} on a bounded pool of worker threads.
+ *
+ * Workers only parse and visit, their results are published through a
+ * {@link TwigReferenceBuffer}. The thread which called
+ * {@link #run(List, IProgressMonitor)} is the only one writing to the
+ * {@link TwigModelAccess} and the index, in batches. It indexes every
+ * template itself, the {@link TwigIndexingVisitorExtension} picks up the
+ * references of the template from the {@link TwigBuildResults} instead of
+ * visiting it again.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigBuildStage
+{
+
+    private static final int BATCH_SIZE = 64;
+    private static final long POLL_TIMEOUT = 100;
+
+    /**
+     * How long the writer waits for the next batch before it gives up on the
+     * remaining templates, the indexer visits those itself.
+     */
+    private static final long STALL_TIMEOUT = 60 * 1000;
+
+    private final int parallelism;
+    private final TwigReferenceBuffer buffer = new TwigReferenceBuffer();
+
+    /**
+     * @param parallelism
+     *            the number of worker threads, 1 runs the stage on the
+     *            calling thread
+     */
+    public TwigBuildStage(int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Parse and index the given templates and write the results to the model.
+     * Returns when all templates have been written or the monitor has been
+     * canceled.
+     *
+     * @param templates
+     * @param monitor
+     */
+    public void run(List<ISourceModule> templates, IProgressMonitor monitor)
+    {
+        if (monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+
+        if (parallelism == 1 || templates.size() < 2) {
+            runSequential(templates, monitor);
+            return;
+        }
+
+        // the queue is bounded, a full queue makes the writer parse as well
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism,
+                parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(parallelism * 4),
+                new WorkerFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        List<TwigReferenceBuffer.Batch> batches = new ArrayList<TwigReferenceBuffer.Batch>(BATCH_SIZE);
+        int written = 0;
+
+        try {
+            for (final ISourceModule template : templates) {
+                if (monitor.isCanceled()) {
+                    return;
+                }
+
+                executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        TwigReferenceBuffer.Batch batch = null;
+
+                        try {
+                            batch = index(template);
+                        } finally {
+                            // the writer counts on a batch for every template,
+                            // even if the worker dies on an Error
+                            if (batch == null) {
+                                batch = buffer.createBatch(template);
+                                batch.setFailed(true);
+                            }
+
+                            buffer.publish(batch);
+                        }
+                    }
+                });
+
+                written += write(batches, 0);
+            }
+
+            long lastWrite = System.currentTimeMillis();
+
+            while (written < templates.size() && !monitor.isCanceled()) {
+                int count = write(batches, POLL_TIMEOUT);
+
+                if (count > 0) {
+                    written += count;
+                    lastWrite = System.currentTimeMillis();
+                } else if (System.currentTimeMillis() - lastWrite > STALL_TIMEOUT) {
+                    Logger.log(Logger.WARNING, "twig build stage stalled, " + (templates.size() - written)
+                            + " templates are left to the indexer");
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runSequential(List<ISourceModule> templates, IProgressMonitor monitor)
+    {
+        List<TwigReferenceBuffer.Batch> batches = new ArrayList<TwigReferenceBuffer.Batch>(BATCH_SIZE);
+
+        for (ISourceModule template : templates) {
+            if (monitor.isCanceled()) {
+                return;
+            }
+
+            batches.add(index(template));
+
+            if (batches.size() == BATCH_SIZE) {
+                flush(batches);
+                batches.clear();
+            }
+        }
+
+        flush(batches);
+    }
+
+    private int write(List<TwigReferenceBuffer.Batch> batches, long timeout) throws InterruptedException
+    {
+        int count = buffer.drain(batches, BATCH_SIZE, timeout);
+
+        if (count > 0) {
+            flush(batches);
+            batches.clear();
+        }
+
+        return count;
+    }
+
+    /**
+     * Parse a single template and collect its references. Runs on the worker
+     * threads.
+     *
+     * @param template
+     * @return
+     */
+    protected TwigReferenceBuffer.Batch index(ISourceModule template)
+    {
+        TwigReferenceBuffer.Batch batch = buffer.createBatch(template);
+
+        try {
+            String source = getSource(template);
+            batch.setSource(source);
+            ModuleDeclaration module = TwigModuleCache.getDefault().get(template.getHandleIdentifier(), source);
+            TwigReferenceCollector references = new TwigReferenceCollector(batch);
+            TwigIndexingVisitor visitor = new TwigIndexingVisitor(references, template, source);
+            module.traverse(visitor);
+            references.flush();
+            batch.setEdges(visitor.getEdges());
+            batch.setBlockNames(visitor.getBlockNames());
+            batch.setVariables(TemplateVariables.build(module, source));
+        } catch (Exception e) {
+            Logger.logException(e);
+            batch.setFailed(true);
+        }
+
+        return batch;
+    }
+
+    protected String getSource(ISourceModule template) throws Exception
+    {
+        return template.getSource();
+    }
+
+    /**
+     * Write indexed templates to the model and the index. Only called from
+     * the thread running the stage.
+     *
+     * @param batches
+     */
+    protected void flush(List<TwigReferenceBuffer.Batch> batches)
+    {
+        TwigModelAccess model = TwigModelAccess.getDefault();
+        TwigBuildResults results = TwigBuildResults.getDefault();
+
+        for (TwigReferenceBuffer.Batch batch : batches) {
+            ISourceModule template = batch.getSourceModule();
+            Template twigTemplate = new Template(template);
+            twigTemplate.setVariables(batch.getVariables());
+            model.addTemplate(twigTemplate);
+
+            if (batch.isFailed()) {
+                continue;
+            }
+
+            // the indexer takes the batch on this thread, writes its
+            // references and only then updates the graph and the blocks
+            results.put(batch);
+            writeReferences(template);
+
+            if (results.take(template.getHandleIdentifier()) != null) {
+                Logger.debugMSG("twig references of " + template.getElementName() + " left to the indexer");
+                model.updateTemplateGraph(template, batch.getEdges());
+                model.updateBlocks(template, batch.getBlockNames());
+            }
+        }
+    }
+
+    /**
+     * Index a template whose batch is waiting in the {@link TwigBuildResults}.
+     *
+     * @param template
+     */
+    protected void writeReferences(ISourceModule template)
+    {
+        ProjectIndexerManager.indexSourceModule(template, PHPLanguageToolkit.getDefault());
+    }
+
+    private static class WorkerFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "Twig build stage " + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
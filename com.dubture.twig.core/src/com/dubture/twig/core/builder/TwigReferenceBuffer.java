@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+
+import com.dubture.twig.core.model.TemplateGraph;
+import com.dubture.twig.core.model.TemplateVariables;
+import com.dubture.twig.core.parser.TwigModuleCache;
+
+/**
+ *
+ * Hands the references found by the workers of the {@link TwigBuildStage} to
+ * the single thread which writes them to the model.
+ *
+ * Every worker collects the references of one template into its own
+ * {@link Batch}, which is only published once the template has been visited
+ * completely. Workers never share a batch and never touch the model.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigReferenceBuffer
+{
+
+    private final BlockingQueue<Batch> queue = new LinkedBlockingQueue<Batch>();
+
+    /**
+     * @param sourceModule
+     * @return an empty batch for the given template
+     */
+    public Batch createBatch(ISourceModule sourceModule)
+    {
+        return new Batch(sourceModule);
+    }
+
+    /**
+     * Publish a completely visited template to the writer.
+     *
+     * @param batch
+     */
+    public void publish(Batch batch)
+    {
+        queue.add(batch);
+    }
+
+    /**
+     * Move up to <code>max</code> published batches to the given list, waiting
+     * for the first one at most <code>timeout</code> milliseconds.
+     *
+     * @param batches
+     * @param max
+     * @param timeout
+     * @return the number of batches moved
+     * @throws InterruptedException
+     */
+    public int drain(List<Batch> batches, int max, long timeout) throws InterruptedException
+    {
+        Batch first = queue.poll(timeout, TimeUnit.MILLISECONDS);
+
+        if (first == null) {
+            return 0;
+        }
+
+        batches.add(first);
+        return 1 + queue.drainTo(batches, max - 1);
+    }
+
+    /**
+     * The references of a single template.
+     */
+    public static class Batch implements IIndexingRequestor
+    {
+        private final ISourceModule sourceModule;
+        private final List<ReferenceInfo> references = new ArrayList<ReferenceInfo>();
+        private List<TemplateGraph.Edge> edges = Collections.emptyList();
+        private List<String> blockNames = Collections.emptyList();
+        private TemplateVariables variables;
+        private boolean failed = false;
+        private int sourceLength = -1;
+        private long sourceHash;
+
+        private Batch(ISourceModule sourceModule)
+        {
+            this.sourceModule = sourceModule;
+        }
+
+        @Override
+        public void addDeclaration(DeclarationInfo info)
+        {
+        }
+
+        @Override
+        public void addReference(ReferenceInfo info)
+        {
+            references.add(info);
+        }
+
+        public ISourceModule getSourceModule()
+        {
+            return sourceModule;
+        }
+
+        public List<ReferenceInfo> getReferences()
+        {
+            return references;
+        }
+
+        public List<TemplateGraph.Edge> getEdges()
+        {
+            return edges;
+        }
+
+        public void setEdges(List<TemplateGraph.Edge> edges)
+        {
+            this.edges = edges;
+        }
+
+        public List<String> getBlockNames()
+        {
+            return blockNames;
+        }
+
+        public void setBlockNames(List<String> blockNames)
+        {
+            this.blockNames = blockNames;
+        }
+
+        /**
+         * @return the variables of the template, null if it could not be
+         *         parsed
+         */
+        public TemplateVariables getVariables()
+        {
+            return variables;
+        }
+
+        public void setVariables(TemplateVariables variables)
+        {
+            this.variables = variables;
+        }
+
+        /**
+         * Remember the source the references have been collected from.
+         *
+         * @param source
+         */
+        public void setSource(String source)
+        {
+            sourceLength = source.length();
+            sourceHash = TwigModuleCache.hash(source);
+        }
+
+        /**
+         * @param source
+         * @return true if the references have been collected from the given
+         *         source
+         */
+        public boolean isIndexed(String source)
+        {
+            return source != null && source.length() == sourceLength
+                    && TwigModuleCache.hash(source) == sourceHash;
+        }
+
+        /**
+         * @return true if the template could not be parsed
+         */
+        public boolean isFailed()
+        {
+            return failed;
+        }
+
+        public void setFailed(boolean failed)
+        {
+            this.failed = failed;
+        }
+    }
+}
@@ -17,19 +17,21 @@ import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.model.LocalVariable;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchEngine;
 import org.eclipse.dltk.internal.core.SourceModule;
 import org.eclipse.php.internal.core.codeassist.PHPSelectionEngine;
 import org.eclipse.php.internal.core.model.PhpModelAccess;
 
-import com.dubture.twig.core.ExtensionManager;
+import com.dubture.twig.core.TwigCoreConstants;
 import com.dubture.twig.core.log.Logger;
 import com.dubture.twig.core.model.Filter;
 import com.dubture.twig.core.model.Function;
-import com.dubture.twig.core.model.ITemplateResolver;
+import com.dubture.twig.core.model.Macro;
+import com.dubture.twig.core.model.MacroImport;
 import com.dubture.twig.core.model.TwigModelAccess;
-import com.dubture.twig.core.parser.SourceParserUtil;
+import com.dubture.twig.core.parser.TwigModuleCache;
 import com.dubture.twig.core.parser.ast.node.BlockStatement;
 import com.dubture.twig.core.parser.ast.node.TwigCallExpression;
 import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
@@ -43,6 +45,7 @@ import com.dubture.twig.core.util.TwigModelUtils;
  * 
  * - 'block' tags
  * - functions
+ * - imported macros
  * 
  * @author Robert Gruendler <r.gruendler@gmail.com>
  *
@@ -60,12 +63,13 @@ public class SelectionEngine extends PHPSelectionEngine
             return super.select(sourceUnit, offset, end);
         }
         
-        ISourceModule source = (ISourceModule) sourceUnit.getModelElement();
+        final ISourceModule source = (ISourceModule) sourceUnit.getModelElement();
         final IScriptProject project = source.getScriptProject();
         
         try {
             
-            final TwigModuleDeclaration module = (TwigModuleDeclaration) SourceParserUtil.parseSourceModule((SourceModule)source);
+            final String text = source.getSource();
+            final TwigModuleDeclaration module = (TwigModuleDeclaration) TwigModuleCache.getDefault().get(source.getHandleIdentifier(), text);
             final List<IModelElement> elements = new ArrayList<IModelElement>();
             
             if (module == null) {
@@ -74,10 +78,22 @@ public class SelectionEngine extends PHPSelectionEngine
             
             module.traverse(new TwigASTVisitor()
             {
+                private Variable previous;
+
                 @Override
                 public boolean visit(TwigCallExpression s) throws Exception
                 {
                     if (s.sourceStart() <= offset && s.sourceEnd() >= offset) {
+                        Macro macro = findMacro(s);
+
+                        if (macro != null) {
+                            int start = macro.getOffset();
+                            int end = start + macro.getLength();
+                            elements.add(new LocalVariable(macro.getParent(), macro.getElementName(),
+                                    start, end, start, end, TwigCoreConstants.MACRO));
+                            return false;
+                        }
+
                         Function[] functions = TwigModelAccess.getDefault().getFunctions(project);
                         
                         for (Function function : functions) {
@@ -95,9 +111,40 @@ public class SelectionEngine extends PHPSelectionEngine
                     return true;
                 }
                 
+                /**
+                 * forms.input(...) of an imported template or input(...)
+                 * imported by a from tag
+                 */
+                private Macro findMacro(TwigCallExpression call)
+                {
+                    TwigModelAccess model = TwigModelAccess.getDefault();
+
+                    if (previous == null || previous.sourceEnd() > call.sourceStart()
+                            || !".".equals(text.substring(previous.sourceEnd(), call.sourceStart()).trim())) {
+                        for (MacroImport macroImport : model.findMacroImports(source)) {
+                            if (macroImport.getMacro() != null && macroImport.getAlias().equals(call.getName())) {
+                                Macro[] macros = model.getImportedMacros(source, call.getName());
+                                return macros.length == 1 ? macros[0] : null;
+                            }
+                        }
+
+                        return null;
+                    }
+
+                    for (Macro macro : model.getImportedMacros(source, previous.getValue())) {
+                        if (macro.getElementName().equals(call.getName())) {
+                            return macro;
+                        }
+                    }
+
+                    return null;
+                }
+
                 @Override
                 public boolean visit(Variable s) throws Exception
                 {
+                    previous = s;
+
                     if (s.sourceStart() <= offset && s.sourceEnd() >= offset) {
                         for (Filter filter : TwigModelAccess.getDefault().getFilters(project)) {
                             if (filter.getElementName().equals(s.getValue())) {
@@ -121,9 +168,9 @@ public class SelectionEngine extends PHPSelectionEngine
                             && block.sourceStart() <= offset && (block.sourceEnd()+1) >= offset) {
                         String blockName = block.getBlockName().getValue();
 
-                        for (ITemplateResolver resolver : ExtensionManager.getInstance().getTemplateProviders()) {
-                            String path = TwigModelAccess.getDefault().getParentPath(module, project);
-                            SourceModule sourceModule = resolver.revolePath(path, project);
+                        SourceModule sourceModule = TwigModelAccess.getDefault().getParentTemplate(source);
+                        
+                        if (sourceModule != null) {
                             List<com.dubture.twig.core.model.BlockName> blocks = TwigModelAccess.getDefault().findBlocks(sourceModule, project);
                             if (blocks != null) {
                                 for (com.dubture.twig.core.model.BlockName parentBlockName : blocks) {
@@ -34,6 +34,7 @@ import com.dubture.twig.core.codeassist.strategies.KeywordStrategy;
 import com.dubture.twig.core.codeassist.strategies.TagStrategy;
 import com.dubture.twig.core.codeassist.strategies.TemplateVariablesStrategy;
 import com.dubture.twig.core.codeassist.strategies.TestStrategy;
+import com.dubture.twig.core.codeassist.strategies.VariableFieldStrategy;
 import com.dubture.twig.core.log.Logger;
 
 /**
@@ -68,9 +69,9 @@ public class TwigCompletionStrategyFactory implements
             } else if (context.getClass() == FilterContext.class) {
                 result.add(new FilterStrategy(context));
             } else if (context.getClass() == VariableFieldContext.class) {
-                // can't really do much in a plain twig context, this is the job
-                // for extensions
-                // result.add(new VariableFieldStrategy(context));
+                // only completes imported macros, the fields of other
+                // variables are the job for extensions
+                result.add(new VariableFieldStrategy(context));
             } else if (context.getClass() == TemplateVariablesContext.class) {
                 result.add(new TemplateVariablesStrategy(context));
             } else if (context.getClass() == FunctionContext.class) {
@@ -10,13 +10,11 @@ package com.dubture.twig.core.codeassist.context;
 
 import org.eclipse.dltk.core.CompletionRequestor;
 import org.eclipse.dltk.core.ISourceModule;
-import org.eclipse.dltk.internal.core.SourceModule;
 
 import com.dubture.twig.core.documentModel.parser.partitioner.TwigPartitionTypes;
 import com.dubture.twig.core.log.Logger;
-import com.dubture.twig.core.parser.SourceParserUtil;
-import com.dubture.twig.core.parser.ast.node.BlockStatement;
-import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+import com.dubture.twig.core.model.TemplateGraph;
+import com.dubture.twig.core.model.TwigModelAccess;
 
 /**
  * @author Robert Gruendler <r.gruendler@gmail.com>
@@ -26,8 +24,6 @@ import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
 public class BlocknameContext extends AbstractTwigCompletionContext
 {
 
-    protected TwigModuleDeclaration module;
-    
     /* (non-Javadoc)
      * @see com.dubture.twig.core.codeassist.context.AbstractTwigCompletionContext#isValid(org.eclipse.dltk.core.ISourceModule, int, org.eclipse.dltk.core.CompletionRequestor)
      */
@@ -55,14 +51,12 @@ public class BlocknameContext extends AbstractTwigCompletionContext
                     return false;
                 }
                 
-                module = (TwigModuleDeclaration) SourceParserUtil.parseSourceModule((SourceModule) getSourceModule());
+                // the template graph knows the parent of every indexed
+                // template, no need to parse the module
+                ISourceModule module = getSourceModule();
+                TemplateGraph graph = TwigModelAccess.getDefault().getTemplateGraph(module.getScriptProject());
                 
-                for(BlockStatement block : module.getBlocks()) {
-                    if ("extends".equals(block.getName().getValue())) {
-                        return true;
-                    }
-                }
-                return false;
+                return graph.getParentName(module) != null;
             }
         } catch (Exception e) {
             Logger.logException(e);
@@ -70,9 +64,4 @@ public class BlocknameContext extends AbstractTwigCompletionContext
         
         return false;
     }
-    
-    public TwigModuleDeclaration getModule()
-    {
-        return module;
-    }
 }
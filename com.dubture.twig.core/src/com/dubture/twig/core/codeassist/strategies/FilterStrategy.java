@@ -8,15 +8,16 @@
  ******************************************************************************/
 package com.dubture.twig.core.codeassist.strategies;
 
+import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.internal.core.SourceRange;
 import org.eclipse.php.core.codeassist.ICompletionContext;
-import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.codeassist.ICompletionReporter;
 import org.eclipse.php.internal.core.codeassist.strategies.AbstractCompletionStrategy;
 
 import com.dubture.twig.core.codeassist.context.FilterContext;
 import com.dubture.twig.core.log.Logger;
 import com.dubture.twig.core.model.Filter;
+import com.dubture.twig.core.model.ITwigElementRequestor;
 import com.dubture.twig.core.model.TwigModelAccess;
 
 /**
@@ -39,7 +40,7 @@ public class FilterStrategy extends AbstractCompletionStrategy
     }
 
     @Override
-    public void apply(ICompletionReporter reporter) throws Exception
+    public void apply(final ICompletionReporter reporter) throws Exception
     {
 
         try {
@@ -48,20 +49,19 @@ public class FilterStrategy extends AbstractCompletionStrategy
             TwigModelAccess model = TwigModelAccess.getDefault();
 
             String prefix = ctx.getPrefix();
-            SourceRange range = getReplacementRange(getContext());
+            final SourceRange range = getReplacementRange(getContext());
+            final IScriptProject project = ctx.getSourceModule().getScriptProject();
 
-            Filter[] filters = model.getFilters(ctx.getSourceModule()
-                    .getScriptProject());
-
-            for (Filter filter : filters) {
-                if (CodeAssistUtils.startsWithIgnoreCase(
-                        filter.getElementName(), prefix)) {
-
-                    filter.setScriptProject(ctx.getSourceModule()
-                            .getScriptProject());
+            model.searchFilters(project, prefix, new ITwigElementRequestor<Filter>()
+            {
+                @Override
+                public boolean accept(Filter filter)
+                {
+                    filter.setScriptProject(project);
                     reporter.reportType(filter, "", range);
+                    return true;
                 }
-            }
+            });
 
         } catch (Exception e) {
             Logger.logException(e);
@@ -8,6 +8,7 @@
  ******************************************************************************/
 package com.dubture.twig.core.codeassist.strategies;
 
+import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.internal.core.SourceRange;
 import org.eclipse.php.core.codeassist.ICompletionContext;
 import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
@@ -17,6 +18,9 @@ import org.eclipse.php.internal.core.codeassist.strategies.AbstractCompletionStr
 import com.dubture.twig.core.codeassist.context.FunctionContext;
 import com.dubture.twig.core.log.Logger;
 import com.dubture.twig.core.model.Function;
+import com.dubture.twig.core.model.ITwigElementRequestor;
+import com.dubture.twig.core.model.Macro;
+import com.dubture.twig.core.model.MacroImport;
 import com.dubture.twig.core.model.TwigModelAccess;
 
 /**
@@ -38,7 +42,7 @@ public class FunctionStrategy extends AbstractCompletionStrategy
     }
 
     @Override
-    public void apply(ICompletionReporter reporter) throws Exception
+    public void apply(final ICompletionReporter reporter) throws Exception
     {
 
         try {
@@ -47,19 +51,29 @@ public class FunctionStrategy extends AbstractCompletionStrategy
             TwigModelAccess model = TwigModelAccess.getDefault();
 
             String prefix = ctx.getPrefix();
-            SourceRange range = getReplacementRange(getContext());
+            final SourceRange range = getReplacementRange(getContext());
+            final IScriptProject project = ctx.getSourceModule().getScriptProject();
 
-            Function[] functions = model.getFunctions(ctx.getSourceModule()
-                    .getScriptProject());
-
-            for (Function function : functions) {
-                if (CodeAssistUtils.startsWithIgnoreCase(
-                        function.getElementName(), prefix)) {
+            model.searchFunctions(project, prefix, new ITwigElementRequestor<Function>()
+            {
+                @Override
+                public boolean accept(Function function)
+                {
+                    function.setScriptProject(project);
+                    reporter.reportType(function, "()", range);
+                    return true;
+                }
+            });
 
-                    function.setScriptProject(ctx.getSourceModule()
-                            .getScriptProject());
+            // {% from 'forms.html.twig' import input as field %}
+            for (MacroImport macroImport : model.findMacroImports(ctx.getSourceModule())) {
+                if (macroImport.getMacro() == null
+                        || !CodeAssistUtils.startsWithIgnoreCase(macroImport.getAlias(), prefix)) {
+                    continue;
+                }
 
-                    reporter.reportType(function, "()", range);
+                for (Macro macro : model.getImportedMacros(ctx.getSourceModule(), macroImport.getAlias())) {
+                    reporter.reportType(macro.alias(macroImport.getAlias()), "()", range);
                 }
             }
 
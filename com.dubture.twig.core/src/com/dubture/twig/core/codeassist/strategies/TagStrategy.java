@@ -11,10 +11,10 @@ package com.dubture.twig.core.codeassist.strategies;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.internal.core.SourceRange;
 import org.eclipse.php.core.codeassist.ICompletionContext;
-import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.codeassist.ICompletionReporter;
 
 import com.dubture.twig.core.codeassist.context.TagContext;
+import com.dubture.twig.core.model.ITwigElementRequestor;
 import com.dubture.twig.core.model.Tag;
 import com.dubture.twig.core.model.TwigModelAccess;
 
@@ -37,21 +37,24 @@ public class TagStrategy extends AbstractTwigCompletionStrategy
     }
 
     @Override
-    public void apply(ICompletionReporter reporter) throws Exception
+    public void apply(final ICompletionReporter reporter) throws Exception
     {
 
         TagContext ctx = (TagContext) getContext();
         ISourceModule module = ctx.getSourceModule();
-        Tag[] tags = TwigModelAccess.getDefault().findTags(
-                module.getScriptProject());
-        SourceRange range = getReplacementRange(ctx);
+        final SourceRange range = getReplacementRange(ctx);
 
         String prefix = ctx.getPrefix();
 
-        for (Tag tag : tags) {
-            if (CodeAssistUtils.startsWithIgnoreCase(tag.getElementName(),
-                    prefix))
-                reporter.reportType(tag, "", range);
-        }
+        TwigModelAccess.getDefault().searchTags(module.getScriptProject(),
+                prefix, new ITwigElementRequestor<Tag>()
+                {
+                    @Override
+                    public boolean accept(Tag tag)
+                    {
+                        reporter.reportType(tag, "", range);
+                        return true;
+                    }
+                });
     }
 }
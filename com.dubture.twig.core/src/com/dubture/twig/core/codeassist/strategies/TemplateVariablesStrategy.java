@@ -8,20 +8,21 @@
  ******************************************************************************/
 package com.dubture.twig.core.codeassist.strategies;
 
-import org.eclipse.dltk.core.IField;
-import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.internal.core.ModelElement;
 import org.eclipse.dltk.internal.core.SourceRange;
 import org.eclipse.php.core.codeassist.ICompletionContext;
-import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.codeassist.ICompletionReporter;
 import org.eclipse.php.internal.core.codeassist.strategies.GlobalElementStrategy;
-import org.eclipse.php.internal.core.typeinference.PHPModelUtils;
+import org.eclipse.php.internal.core.typeinference.FakeField;
 
 import com.dubture.twig.core.codeassist.context.AbstractTwigCompletionContext;
+import com.dubture.twig.core.model.TemplateVariables;
+import com.dubture.twig.core.model.TwigModelAccess;
 
 /**
  * 
- * Completes local variables in templates
+ * Completes the variables visible at the cursor, see
+ * {@link TemplateVariables}.
  * 
  * @author Robert Gruendler <r.gruendler@gmail.com>
  * 
@@ -44,15 +45,17 @@ public class TemplateVariablesStrategy extends GlobalElementStrategy
         AbstractTwigCompletionContext abstractContext = (AbstractTwigCompletionContext) context;
         String prefix = abstractContext.getPrefix();
 
-        IField[] fields = PHPModelUtils.getFileFields(
-                abstractContext.getSourceModule(), prefix, false, null);
+        TemplateVariables variables = TwigModelAccess.getDefault()
+                .getTemplateVariables(abstractContext.getSourceModule());
 
         SourceRange replaceRange = getReplacementRange(context);
+        ModelElement parent = (ModelElement) abstractContext.getSourceModule();
 
-        for (IModelElement var : fields) {
-            if (CodeAssistUtils.startsWithIgnoreCase(var.getElementName(),
-                    prefix))
-                reporter.reportField((IField) var, "", replaceRange, false);
+        for (TemplateVariables.Definition var : variables.getVisible(
+                abstractContext.getOffset(), prefix)) {
+            FakeField field = new FakeField(parent, var.getName(),
+                    var.getOffset(), var.getName().length());
+            reporter.reportField(field, "", replaceRange, false);
         }
 
     }
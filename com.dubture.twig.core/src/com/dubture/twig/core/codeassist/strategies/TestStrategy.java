@@ -11,10 +11,10 @@ package com.dubture.twig.core.codeassist.strategies;
 import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.internal.core.SourceRange;
 import org.eclipse.php.core.codeassist.ICompletionContext;
-import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.codeassist.ICompletionReporter;
 
 import com.dubture.twig.core.codeassist.context.TestContext;
+import com.dubture.twig.core.model.ITwigElementRequestor;
 import com.dubture.twig.core.model.Test;
 import com.dubture.twig.core.model.TwigModelAccess;
 
@@ -29,23 +29,24 @@ public class TestStrategy extends KeywordStrategy
     }
 
     @Override
-    public void apply(ICompletionReporter reporter) throws Exception
+    public void apply(final ICompletionReporter reporter) throws Exception
     {
 
         TestContext ctx = (TestContext) getContext();
 
-        IScriptProject project = ctx.getSourceModule().getScriptProject();
-        Test[] tests = TwigModelAccess.getDefault().getTests(project);
-        SourceRange range = getReplacementRange(ctx);
+        final IScriptProject project = ctx.getSourceModule().getScriptProject();
+        final SourceRange range = getReplacementRange(ctx);
         String prefix = ctx.getPrefix();
 
-        for (Test test : tests) {
-            if (CodeAssistUtils.startsWithIgnoreCase(test.getElementName(),
-                    prefix)) {
+        TwigModelAccess.getDefault().searchTests(project, prefix, new ITwigElementRequestor<Test>()
+        {
+            @Override
+            public boolean accept(Test test)
+            {
                 test.setScriptProject(project);
                 reporter.reportType(test, "", range);
+                return true;
             }
-
-        }
+        });
     }
 }
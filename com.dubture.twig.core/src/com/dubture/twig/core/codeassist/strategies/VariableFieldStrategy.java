@@ -8,20 +8,32 @@
  ******************************************************************************/
 package com.dubture.twig.core.codeassist.strategies;
 
+import org.eclipse.dltk.internal.core.SourceRange;
 import org.eclipse.php.core.codeassist.ICompletionContext;
+import org.eclipse.php.internal.core.codeassist.CodeAssistUtils;
 import org.eclipse.php.internal.core.codeassist.ICompletionReporter;
 
 import com.dubture.twig.core.codeassist.context.VariableFieldContext;
+import com.dubture.twig.core.model.Macro;
+import com.dubture.twig.core.model.TwigModelAccess;
 
 /**
  * 
+ * Completes the macros of an imported template:
+ * 
+ * <pre>
+ * {% import 'forms.html.twig' as forms %}
+ * {{ forms.| }}
+ * </pre>
+ * 
+ * Other fields of variables are left to the extensions.
  * 
  * @see VariableFieldContext
  * 
  * @author "Robert Gruendler <r.gruendler@gmail.com>"
  * 
  */
-@SuppressWarnings("restriction")
+@SuppressWarnings({"restriction", "deprecation"})
 public class VariableFieldStrategy extends AbstractTwigCompletionStrategy
 {
 
@@ -35,7 +47,42 @@ public class VariableFieldStrategy extends AbstractTwigCompletionStrategy
     public void apply(ICompletionReporter reporter) throws Exception
     {
 
-        // VariableFieldContext ctx = (VariableFieldContext) getContext();
+        VariableFieldContext ctx = (VariableFieldContext) getContext();
+        String alias = getIdentifier(ctx.getVariable());
+
+        if (alias == null) {
+            return;
+        }
+
+        String prefix = ctx.getPrefix();
+        SourceRange range = getReplacementRange(ctx);
+
+        for (Macro macro : TwigModelAccess.getDefault().getImportedMacros(ctx.getSourceModule(), alias)) {
+            if (CodeAssistUtils.startsWithIgnoreCase(macro.getElementName(), prefix)) {
+                reporter.reportType(macro, "()", range);
+            }
+        }
+    }
+
+    /**
+     * @param variable
+     *            the text before the dot, may contain whitespace and
+     *            delimiters
+     * @return the trailing identifier or null
+     */
+    private String getIdentifier(String variable)
+    {
+        if (variable == null) {
+            return null;
+        }
+
+        int end = variable.length();
+        int start = end;
+
+        while (start > 0 && Character.isJavaIdentifierPart(variable.charAt(start - 1))) {
+            start--;
+        }
 
+        return start < end ? variable.substring(start, end) : null;
     }
 }
@@ -8,8 +8,9 @@
  ******************************************************************************/
 package com.dubture.twig.core.documentModel.parser;
 
-import java.io.StringReader;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.dltk.ast.Modifiers;
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
@@ -17,11 +18,14 @@ import org.eclipse.dltk.ast.statements.Statement;
 import org.eclipse.dltk.compiler.IElementRequestor.FieldInfo;
 import org.eclipse.dltk.compiler.IElementRequestor.MethodInfo;
 import org.eclipse.dltk.compiler.env.IModuleSource;
+import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.php.core.compiler.PHPSourceElementRequestorExtension;
 
 import com.dubture.twig.core.TwigCoreConstants;
 import com.dubture.twig.core.log.Logger;
-import com.dubture.twig.core.parser.SourceParserUtil;
+import com.dubture.twig.core.model.TemplateVariables;
+import com.dubture.twig.core.model.TwigModelAccess;
+import com.dubture.twig.core.parser.TwigModuleCache;
 import com.dubture.twig.core.parser.ast.node.BlockStatement;
 import com.dubture.twig.core.parser.ast.node.StringLiteral;
 import com.dubture.twig.core.parser.ast.node.Variable;
@@ -61,8 +65,7 @@ public class TwigSourceElementRequestorExtension extends
             String source = sourceModule.getSourceContents();
             fRequestor.enterModule();
 
-            final ModuleDeclaration decl = SourceParserUtil
-                    .parseSourceModule(new StringReader(source));
+            final ModuleDeclaration decl = TwigModuleCache.getDefault().get(sourceModule);
 
             decl.traverse(new TwigASTVisitor()
             {
@@ -140,26 +143,34 @@ public class TwigSourceElementRequestorExtension extends
                     return false;
                 }
 
-                @Override
-                public boolean endvisit(Variable s) throws Exception
-                {
+            });
 
-                    FieldInfo info = new FieldInfo();
+            // report each defined variable once, not every occurrence
+            TemplateVariables variables = TemplateVariables.build(decl, source);
+            Set<String> reported = new HashSet<String>();
 
-                    info.declarationStart =s.sourceStart();
-                    info.nameSourceStart = s.sourceStart();
-                    info.nameSourceEnd = s.sourceEnd();
-                    info.name = s.getValue();
-                    info.modifiers = Modifiers.AccPublic;
+            for (TemplateVariables.Definition variable : variables.getDefinitions()) {
+                if (variable.getKind() == TemplateVariables.LOOP
+                        || !reported.add(variable.getName())) {
+                    continue;
+                }
 
-                    fRequestor.enterField(info);
+                FieldInfo info = new FieldInfo();
 
-                    fRequestor.exitField(s.sourceEnd());
-                    return false;
-                }
-            });
+                info.declarationStart = variable.getOffset();
+                info.nameSourceStart = variable.getOffset();
+                info.nameSourceEnd = variable.getOffset() + variable.getName().length();
+                info.name = variable.getName();
+                info.modifiers = Modifiers.AccPublic;
 
+                fRequestor.enterField(info);
+                fRequestor.exitField(info.nameSourceEnd);
+            }
 
+            if (sourceModule.getModelElement() instanceof ISourceModule) {
+                TwigModelAccess.getDefault().updateTemplateVariables(
+                        (ISourceModule) sourceModule.getModelElement(), variables);
+            }
 
             fRequestor.exitModule(decl.sourceEnd());
 
@@ -8,39 +8,87 @@
 */
 package com.dubture.twig.core.index;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.dltk.ast.statements.Statement;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.index2.IIndexingRequestor;
 import org.eclipse.dltk.core.index2.IIndexingRequestor.ReferenceInfo;
 
+import com.dubture.twig.core.TwigCoreConstants;
 import com.dubture.twig.core.log.Logger;
 import com.dubture.twig.core.model.ITwigModelElement;
+import com.dubture.twig.core.model.TemplateGraph;
+import com.dubture.twig.core.model.TwigMetadata;
 import com.dubture.twig.core.parser.ast.node.BlockName;
 import com.dubture.twig.core.parser.ast.node.BlockStatement;
+import com.dubture.twig.core.parser.ast.node.PrintStatement;
 import com.dubture.twig.core.parser.ast.node.StringLiteral;
+import com.dubture.twig.core.parser.ast.node.TwigCallExpression;
 import com.dubture.twig.core.parser.ast.node.Variable;
 import com.dubture.twig.core.parser.ast.visitor.TwigASTVisitor;
 
 /**
- * Indexes extends and block tags for now.
+ * Indexes block names, macros, macro imports, the usages of tags, filters,
+ * functions and tests and the template relations (extends, include, embed,
+ * import and use) which make up the {@link TemplateGraph}.
  * 
  * @author Robert Gruendler <r.gruendler@gmail.com>
  */
 public class TwigIndexingVisitor extends TwigASTVisitor
 {
     
+    private static final String[][] TWO_WORD_TESTS = {{"divisible", "by"}, {"same", "as"}};
+    private static final String[] INTERMEDIATE_TAGS = {"else", "elseif"};
+    
     private IIndexingRequestor requestor;
     private ISourceModule module;
     
+    /**
+     * The template source, needed to tell filters from functions and
+     * variables. Read from the module on first use if not given.
+     */
+    private String source;
+    
     BlockStatement currentTag = null;
-    BlockStatement extendsTag = null;
     BlockStatement blockTag = null;
     
+    /**
+     * The last two names seen in the current tag, to detect tests after
+     * "is" and "is not".
+     */
+    private String previousName = null;
+    private String nameBeforePrevious = null;
+    
+    /**
+     * The second word of the test seen last, e.g. "by" of "divisible by".
+     */
+    private String continuation = null;
+    
+    private List<TemplateGraph.Edge> edges = new ArrayList<TemplateGraph.Edge>();
+    private List<String> blockNames = new ArrayList<String>();
 
     public TwigIndexingVisitor(IIndexingRequestor requestor, ISourceModule module)
+    {
+        this(requestor, module, null);
+    }
+    
+    /**
+     * @param requestor
+     * @param module
+     * @param source
+     *            the source the visited module has been parsed from
+     */
+    public TwigIndexingVisitor(IIndexingRequestor requestor, ISourceModule module, String source)
     {
         this.requestor = requestor;
         this.module = module;
-        
+        this.source = source;
     }
     
     @Override
@@ -49,17 +97,49 @@ public class TwigIndexingVisitor extends TwigASTVisitor
         if (currentTag != null) {
             if (currentTag.isBlock()) {
                 blockTag = currentTag;
-            } else if (currentTag.isExtends()) {
-                extendsTag = currentTag;
             }
         }
         return false;
     }
     
+    @Override
+    public boolean visit(PrintStatement s) throws Exception
+    {
+        resetNames();
+        return true;
+    }
+    
     @Override
     public boolean visit(BlockStatement block) throws Exception
     {
         currentTag = block;
+        resetNames();
+        
+        if (block.getName() != null && isTagUsage(block.getTag())) {
+            BlockName name = block.getName();
+            addUsage(ITwigModelElement.TAG_USAGE, block.getTag(), name.sourceStart(), block.getTag().length());
+        }
+        
+        int kind = getRelationKind(block.getTag());
+        
+        if (kind != 0 && block.getChilds() != null) {
+            // only the literals directly inside the tag name templates,
+            // not the ones in a "with" hash or similar
+            for (Object child : block.getChilds()) {
+                if (child instanceof StringLiteral) {
+                    addRelation(kind, (StringLiteral) child);
+                }
+            }
+        }
+        
+        if (TwigCoreConstants.MACRO.equals(block.getTag())) {
+            addMacro(block);
+        } else if (TwigCoreConstants.IMPORT.equals(block.getTag())) {
+            addImport(block);
+        } else if (TwigCoreConstants.FROM.equals(block.getTag())) {
+            addFromImport(block);
+        }
+        
         return true;
     }
     
@@ -67,7 +147,6 @@ public class TwigIndexingVisitor extends TwigASTVisitor
     public boolean endvisit(BlockStatement block) throws Exception
     {
         currentTag = null;
-        extendsTag = null;
         blockTag = null;
         return true;
     }
@@ -79,19 +158,418 @@ public class TwigIndexingVisitor extends TwigASTVisitor
             Logger.debugMSG("Indexing block reference " + s.getValue()  + " in " + module.getElementName() + " / " + module.getScriptProject().getElementName());
             ReferenceInfo info = new ReferenceInfo(ITwigModelElement.BLOCK, s.sourceStart(), s.sourceEnd() - s.sourceStart(), s.getValue(), null, null);
             requestor.addReference(info);
+            blockNames.add(s.getValue());
+        } else {
+            addNameUsage(s.getValue(), s.sourceStart(), s.sourceEnd() - s.sourceStart(), false);
         }
         
+        pushName(s.getValue());
         return false;
     }
     
     @Override
-    public boolean visit(StringLiteral s) throws Exception
+    public boolean visit(TwigCallExpression s) throws Exception
     {
-        if (extendsTag != null) {
-            Logger.debugMSG("Indexing extends reference " + s.getValue());
-            ReferenceInfo info = new ReferenceInfo(ITwigModelElement.EXTENDS, s.sourceStart(), s.sourceEnd() - s.sourceStart(), s.getValue(), null, null);      
-            requestor.addReference(info);
+        boolean macroDeclaration = currentTag != null
+                && TwigCoreConstants.MACRO.equals(currentTag.getTag())
+                && currentTag.getFirstChild() == s;
+        
+        if (!macroDeclaration && s.getName() != null) {
+            addNameUsage(s.getName(), s.sourceStart(), s.getName().length(), true);
         }
+        
+        pushName(s.getName());
+        return true;
+    }
+    
+    @Override
+    public boolean visit(StringLiteral s) throws Exception
+    {
         return false;
     }
+    
+    private void addNameUsage(String name, int offset, int length, boolean call)
+    {
+        if (name.equals(continuation)) {
+            // the second word of a test
+            continuation = null;
+            return;
+        }
+        
+        continuation = null;
+        
+        if ("not".equals(name) && "is".equals(previousName)) {
+            return;
+        }
+        
+        int kind = getUsageKind(offset, call);
+        
+        if (kind == 0) {
+            return;
+        }
+        
+        if (kind == ITwigModelElement.TEST_USAGE) {
+            String text = getSource();
+            
+            for (String[] test : TWO_WORD_TESTS) {
+                if (!test[0].equals(name)) {
+                    continue;
+                }
+                
+                int next = offset + length;
+                
+                while (next < text.length() && Character.isWhitespace(text.charAt(next))) {
+                    next++;
+                }
+                
+                int end = next + test[1].length();
+                
+                if (text.startsWith(test[1], next)
+                        && (end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end)))) {
+                    continuation = test[1];
+                    name = test[0] + " " + test[1];
+                    length = end - offset;
+                }
+            }
+        }
+        
+        addUsage(kind, name, offset, length);
+    }
+    
+    /**
+     * Decide what the name at the given offset is used as:
+     * 
+     * <pre>
+     * {{ value|filter }}  {{ function() }}  {% if value is test %}  {% filter name %}
+     * </pre>
+     * 
+     * @param offset
+     * @param call
+     *            true if the name is followed by arguments
+     * @return a usage kind of {@link ITwigModelElement} or 0 for variables,
+     *         attributes and methods
+     */
+    private int getUsageKind(int offset, boolean call)
+    {
+        char previous = getPreviousChar(offset);
+        
+        if (previous == '|') {
+            return ITwigModelElement.FILTER_USAGE;
+        } else if (previous == '.' || previous == 0) {
+            return 0;
+        } else if ("is".equals(previousName)
+                || ("not".equals(previousName) && "is".equals(nameBeforePrevious))) {
+            return ITwigModelElement.TEST_USAGE;
+        } else if (currentTag != null && TwigCoreConstants.FILTER.equals(currentTag.getTag())) {
+            return ITwigModelElement.FILTER_USAGE;
+        }
+        
+        return call ? ITwigModelElement.FUNCTION_USAGE : 0;
+    }
+    
+    /**
+     * End tags and the intermediate tags of an if or for belong to the usage
+     * of their opening tag.
+     * 
+     * @param tag
+     * @return
+     */
+    private static boolean isTagUsage(String tag)
+    {
+        if (tag.startsWith("end")) {
+            return false;
+        }
+        
+        for (String intermediate : INTERMEDIATE_TAGS) {
+            if (intermediate.equals(tag)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * The parser drops the "=" of default values, so the name of a default
+     * like <code>value = none</code> is a variable as well. Argument names
+     * follow "(" or "," and are followed by ",", ")" or "=".
+     * 
+     * @param variable
+     * @return true if the variable of a macro signature is an argument name
+     */
+    private boolean isMacroArgument(Variable variable)
+    {
+        if (getSource() == null) {
+            return true;
+        }
+        
+        char previous = getPreviousChar(variable.sourceStart());
+        char next = getNextChar(variable.sourceEnd());
+        
+        return (previous == '(' || previous == ',') && (next == ',' || next == ')' || next == '=');
+    }
+    
+    /**
+     * @param offset
+     * @return the first non whitespace character at or after the offset, 0
+     *         if there is none or the source is not available
+     */
+    private char getNextChar(int offset)
+    {
+        String text = getSource();
+        
+        if (text == null) {
+            return 0;
+        }
+        
+        for (int i = Math.max(offset, 0); i < text.length(); i++) {
+            char c = text.charAt(i);
+            
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+        
+        return 0;
+    }
+    
+    /**
+     * @param offset
+     * @return the first non whitespace character before the offset, 0 if
+     *         the source is not available
+     */
+    private char getPreviousChar(int offset)
+    {
+        String text = getSource();
+        
+        if (text == null) {
+            return 0;
+        }
+        
+        for (int i = Math.min(offset, text.length()) - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+        
+        return 0;
+    }
+    
+    private String getSource()
+    {
+        if (source == null && module != null) {
+            try {
+                source = module.getSource();
+            } catch (ModelException e) {
+                Logger.logException(e);
+                module = null;
+            }
+        }
+        
+        return source;
+    }
+    
+    private void pushName(String name)
+    {
+        nameBeforePrevious = previousName;
+        previousName = name;
+    }
+    
+    private void resetNames()
+    {
+        previousName = null;
+        nameBeforePrevious = null;
+        continuation = null;
+    }
+    
+    private void addUsage(int kind, String name, int offset, int length)
+    {
+        requestor.addReference(new ReferenceInfo(kind, offset, length, name, null, null));
+    }
+    
+    /**
+     * @return the template relations found so far
+     */
+    public List<TemplateGraph.Edge> getEdges()
+    {
+        return edges;
+    }
+    
+    /**
+     * @return the names of the blocks declared so far
+     */
+    public List<String> getBlockNames()
+    {
+        return blockNames;
+    }
+    
+    private void addRelation(int kind, StringLiteral s)
+    {
+        Logger.debugMSG("Indexing template reference " + s.getValue());
+        int length = s.sourceEnd() - s.sourceStart();
+        ReferenceInfo info = new ReferenceInfo(kind, s.sourceStart(), length, s.getValue(), null, null);
+        requestor.addReference(info);
+        edges.add(new TemplateGraph.Edge(kind, module, s.getValue(), s.sourceStart(), length));
+    }
+    
+    /**
+     * {% macro name(argument, other = 'default') %}
+     * 
+     * The parser drops the <code>=</code>, so a string literal following an
+     * argument is taken as its default value.
+     */
+    private void addMacro(BlockStatement block)
+    {
+        Statement first = block.getFirstChild();
+        Map<String, String> arguments = new LinkedHashMap<String, String>();
+        String name;
+        int offset;
+        
+        if (first instanceof TwigCallExpression) {
+            TwigCallExpression call = (TwigCallExpression) first;
+            String previous = null;
+            name = call.getName();
+            offset = call.sourceStart();
+            
+            if (call.getArguments() != null) {
+                for (Object argument : call.getArguments()) {
+                    if (argument instanceof Variable && isMacroArgument((Variable) argument)) {
+                        previous = ((Variable) argument).getValue();
+                        arguments.put(previous, "");
+                    } else if (argument instanceof Variable && previous != null) {
+                        // a name as default value, e.g. none
+                        arguments.put(previous, ((Variable) argument).getValue());
+                        previous = null;
+                    } else if (argument instanceof StringLiteral && previous != null) {
+                        arguments.put(previous, ((StringLiteral) argument).getValue());
+                        previous = null;
+                    }
+                }
+            }
+        } else if (first instanceof Variable) {
+            name = ((Variable) first).getValue();
+            offset = first.sourceStart();
+        } else {
+            return;
+        }
+        
+        Logger.debugMSG("Indexing macro " + name);
+        String metadata = TwigMetadata.encode(null, null, null, false, arguments);
+        requestor.addReference(new ReferenceInfo(ITwigModelElement.MACRO, offset, name.length(), name, metadata, null));
+    }
+    
+    /**
+     * {% import 'forms.html.twig' as forms %}
+     */
+    private void addImport(BlockStatement block)
+    {
+        List<Statement> children = getChildren(block);
+        String template = getImportedTemplate(children);
+        
+        for (int i = 1; i + 1 < children.size(); i++) {
+            if (isKeyword(children.get(i), "as") && children.get(i + 1) instanceof Variable) {
+                addImportAlias((Variable) children.get(i + 1), template, null);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * {% from 'forms.html.twig' import input as input_field, textarea %}
+     */
+    private void addFromImport(BlockStatement block)
+    {
+        List<Statement> children = getChildren(block);
+        String template = getImportedTemplate(children);
+        int i = 1;
+        
+        while (i < children.size() && !isKeyword(children.get(i), TwigCoreConstants.IMPORT)) {
+            i++;
+        }
+        
+        for (i++; i < children.size(); i++) {
+            if (!(children.get(i) instanceof Variable)) {
+                continue;
+            }
+            
+            Variable macro = (Variable) children.get(i);
+            Variable alias = macro;
+            
+            if (i + 2 < children.size() && isKeyword(children.get(i + 1), "as")
+                    && children.get(i + 2) instanceof Variable) {
+                alias = (Variable) children.get(i + 2);
+                i += 2;
+            }
+            
+            addImportAlias(alias, template, macro.getValue());
+        }
+    }
+    
+    /**
+     * @param alias
+     * @param template
+     *            the name of the imported template, or
+     *            {@link TwigCoreConstants#SELF}
+     * @param macro
+     *            the imported macro, null if the alias names the template
+     */
+    private void addImportAlias(Variable alias, String template, String macro)
+    {
+        if (template == null) {
+            return;
+        }
+        
+        Logger.debugMSG("Indexing macro import " + alias.getValue() + " of " + template);
+        String metadata = TwigMetadata.encode(null, null, null, macro, false, null);
+        int length = alias.sourceEnd() - alias.sourceStart();
+        requestor.addReference(new ReferenceInfo(ITwigModelElement.IMPORT_ALIAS, alias.sourceStart(), length, alias.getValue(), metadata, template));
+    }
+    
+    private static String getImportedTemplate(List<Statement> children)
+    {
+        if (children.isEmpty()) {
+            return null;
+        }
+        
+        Statement first = children.get(0);
+        
+        if (first instanceof StringLiteral) {
+            return ((StringLiteral) first).getValue();
+        } else if (isKeyword(first, TwigCoreConstants.SELF)) {
+            return TwigCoreConstants.SELF;
+        }
+        
+        return null;
+    }
+    
+    private static boolean isKeyword(Statement statement, String keyword)
+    {
+        return statement instanceof Variable && keyword.equals(((Variable) statement).getValue());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Statement> getChildren(BlockStatement block)
+    {
+        List<Statement> children = block.getChilds();
+        return children != null ? children : Collections.<Statement> emptyList();
+    }
+    
+    private static int getRelationKind(String tag)
+    {
+        if (TwigCoreConstants.EXTENDS.equals(tag)) {
+            return ITwigModelElement.EXTENDS;
+        } else if (TwigCoreConstants.INCLUDE.equals(tag)) {
+            return ITwigModelElement.INCLUDE;
+        } else if (TwigCoreConstants.EMBED.equals(tag)) {
+            return ITwigModelElement.EMBED;
+        } else if (TwigCoreConstants.IMPORT.equals(tag) || TwigCoreConstants.FROM.equals(tag)) {
+            return ITwigModelElement.IMPORT;
+        } else if (TwigCoreConstants.USE.equals(tag)) {
+            return ITwigModelElement.USE;
+        }
+        
+        return 0;
+    }
 }
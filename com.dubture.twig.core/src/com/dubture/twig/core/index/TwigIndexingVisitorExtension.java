@@ -9,7 +9,9 @@
 package com.dubture.twig.core.index;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.dltk.ast.ASTNode;
 import org.eclipse.dltk.ast.declarations.MethodDeclaration;
@@ -21,6 +23,7 @@ import org.eclipse.dltk.ast.references.SimpleReference;
 import org.eclipse.dltk.ast.references.VariableReference;
 import org.eclipse.dltk.ast.statements.Statement;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.index2.IIndexingRequestor.ReferenceInfo;
 import org.eclipse.php.core.index.PhpIndexingVisitorExtension;
 import org.eclipse.php.internal.core.compiler.ast.nodes.ArrayCreation;
@@ -34,16 +37,19 @@ import org.eclipse.php.internal.core.compiler.ast.nodes.PHPMethodDeclaration;
 import org.eclipse.php.internal.core.compiler.ast.nodes.ReturnStatement;
 import org.eclipse.php.internal.core.compiler.ast.nodes.Scalar;
 import org.eclipse.php.internal.core.compiler.ast.visitor.PHPASTVisitor;
-import org.json.simple.JSONObject;
 
 import com.dubture.twig.core.TwigCoreConstants;
+import com.dubture.twig.core.builder.TwigBuildResults;
+import com.dubture.twig.core.builder.TwigBuildStage;
+import com.dubture.twig.core.builder.TwigReferenceBuffer;
 import com.dubture.twig.core.log.Logger;
 import com.dubture.twig.core.model.Filter;
 import com.dubture.twig.core.model.Function;
 import com.dubture.twig.core.model.ITwigModelElement;
 import com.dubture.twig.core.model.Tag;
 import com.dubture.twig.core.model.Test;
-import com.dubture.twig.core.model.TwigType;
+import com.dubture.twig.core.model.TwigModelAccess;
+import com.dubture.twig.core.model.TwigSymbolTable;
 import com.dubture.twig.core.util.TwigModelUtils;
 
 
@@ -67,12 +73,32 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
     protected boolean inTagParseMethod;
     protected ClassDeclaration currentClass;
     protected Tag tag;
-    protected List<MethodDeclaration> methods = new ArrayList<MethodDeclaration>();
+
+    /**
+     * Methods and functions of the current module by name. The first
+     * declaration of a name wins.
+     */
+    protected Map<String, PHPMethodDeclaration> methods = new HashMap<String, PHPMethodDeclaration>();
     protected List<Function> functions = new ArrayList<Function>();
     protected List<Filter> filters = new ArrayList<Filter>();
     protected List<Test> tests = new ArrayList<Test>();
+    protected List<TwigSymbolTable.Entry> symbols = new ArrayList<TwigSymbolTable.Entry>();
     
     protected TwigIndexingVisitor visitor;
+    protected TwigReferenceCollector references;
+    
+    /**
+     * The outermost block traversed by the twig visitor, nested blocks are
+     * covered by its traversal.
+     */
+    protected ASTNode traversedBlock;
+
+    /**
+     * The batch the {@link TwigBuildStage} prepared for the current module,
+     * its references are written instead of visiting the module again.
+     */
+    protected TwigReferenceBuffer.Batch prepared;
+    protected boolean preparedChecked;
 
     public TwigIndexingVisitorExtension()
     {
@@ -83,7 +109,44 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
     public void setSourceModule(ISourceModule module)
     {
         super.setSourceModule(module);
-        visitor = new TwigIndexingVisitor(requestor, sourceModule);
+        visitor = null;
+        traversedBlock = null;
+        prepared = null;
+        preparedChecked = false;
+
+        if (references != null) {
+            references.clear();
+        }
+    }
+
+    /**
+     * The twig visitor is shared by all blocks of a module so the template
+     * relations can be collected at the end of the module.
+     * 
+     * @return
+     */
+    protected TwigIndexingVisitor getVisitor()
+    {
+        if (visitor == null) {
+            visitor = new TwigIndexingVisitor(getReferences(), sourceModule);
+        }
+
+        return visitor;
+    }
+
+    /**
+     * The references of the current module, written to the requestor at the
+     * end of the module.
+     * 
+     * @return
+     */
+    protected TwigReferenceCollector getReferences()
+    {
+        if (references == null || references.getTarget() != requestor) {
+            references = new TwigReferenceCollector(requestor);
+        }
+
+        return references;
     }
     
 
@@ -92,13 +155,14 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
     public boolean visit(MethodDeclaration s) throws Exception
     {
 
-        if (!methods.contains(s))
-            methods.add(s);
-
         if (s instanceof PHPMethodDeclaration) {
 
             PHPMethodDeclaration phpMethod = (PHPMethodDeclaration) s;
 
+            if (!methods.containsKey(phpMethod.getName())) {
+                methods.put(phpMethod.getName(), phpMethod);
+            }
+
             if (inTwigExtension&& phpMethod.getName().equals(TwigCoreConstants.GET_FILTERS)) {
 
                 phpMethod.traverse(new PHPASTVisitor()
@@ -111,10 +175,15 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
                         Expression key = s.getKey();
                         Expression value = s.getValue();
 
-                        if (key == null | value == null) {
+                        if (value == null) {
                             return false;
                         }
 
+                        // a list of simple callables
+                        if (key == null) {
+                            return true;
+                        }
+
                         if (key.getClass() == Scalar.class && value.getClass() == ClassInstanceCreation.class) {
 
                             Scalar name = (Scalar) key;
@@ -157,6 +226,21 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
                         }
                         return true;
                     }
+
+                    @Override
+                    public boolean visit(ClassInstanceCreation s) throws Exception
+                    {
+                        String[] callable = getSimpleCallable(s, TwigCoreConstants.TWIG_SIMPLE_FILTER);
+
+                        if (callable != null) {
+                            Filter filter = new Filter(callable[0]);
+                            filter.setInternalFunction(callable[1]);
+                            filter.setPhpClass(currentClass.getName());
+                            filters.add(filter);
+                        }
+
+                        return true;
+                    }
                 });
 
             } else if (inTwigExtension && TwigCoreConstants.GET_TESTS.equals(s.getName())) {
@@ -171,9 +255,12 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
                         Expression key = s.getKey();
                         Expression value = s.getValue();
 
-                        if (key == null || value == null)
+                        if (value == null)
                             return false;
 
+                        if (key == null)
+                            return true;
+
                         if (key.getClass() == Scalar.class && value.getClass() == ClassInstanceCreation.class) {
 
                             Scalar name = (Scalar) key;
@@ -189,9 +276,6 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
 
                                 String elemName = name.getValue().replaceAll("['\"]", "");
 
-                                JSONObject metadata = new JSONObject();
-                                metadata.put(TwigType.PHPCLASS,currentClass.getName());
-
                                 Test test = new Test(elemName);
                                 test.setPhpClass(currentClass.getName());
                                 test.setInternalFunction(internalFunction.getValue().replaceAll("['\"]", ""));
@@ -201,6 +285,21 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
                         }
                         return true;
                     }
+
+                    @Override
+                    public boolean visit(ClassInstanceCreation s) throws Exception
+                    {
+                        String[] callable = getSimpleCallable(s, TwigCoreConstants.TWIG_SIMPLE_TEST);
+
+                        if (callable != null) {
+                            Test test = new Test(callable[0]);
+                            test.setInternalFunction(callable[1]);
+                            test.setPhpClass(currentClass.getName());
+                            tests.add(test);
+                        }
+
+                        return true;
+                    }
                 });
 
             } else if (inTwigExtension&& TwigCoreConstants.GET_FUNCTIONS.equals(s.getName())) {
@@ -214,10 +313,14 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
                         Expression key = s.getKey();
                         Expression value = s.getValue();
 
-                        if (key == null || value == null) {
+                        if (value == null) {
                             return false;
                         }
 
+                        if (key == null) {
+                            return true;
+                        }
+
                         if (key.getClass() == Scalar.class && value.getClass() == ClassInstanceCreation.class) {
 
                             Scalar name = (Scalar) key;
@@ -241,9 +344,6 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
                                 }
 
                                 String elemName = name.getValue().replaceAll("['\"]", "");
-                                JSONObject metadata = new JSONObject();
-                                metadata.put(TwigType.PHPCLASS, currentClass.getName());
-
                                 Function function = new Function(elemName);
                                 function.setPhpClass(currentClass.getName());
                                 function.setInternalFunction(internalFunction.getValue().replaceAll("['\"]", ""));
@@ -252,6 +352,21 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
                         }
                         return true;
                     }
+
+                    @Override
+                    public boolean visit(ClassInstanceCreation s) throws Exception
+                    {
+                        String[] callable = getSimpleCallable(s, TwigCoreConstants.TWIG_SIMPLE_FUNCTION);
+
+                        if (callable != null) {
+                            Function function = new Function(callable[0]);
+                            function.setInternalFunction(callable[1]);
+                            function.setPhpClass(currentClass.getName());
+                            functions.add(function);
+                        }
+
+                        return true;
+                    }
                 });
 
             } else if (inTokenParser && TwigCoreConstants.PARSE_TOKEN_METHOD.equals(s.getName())) {
@@ -306,7 +421,6 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
         return false;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public boolean endvisit(TypeDeclaration s) throws Exception
     {
@@ -329,26 +443,25 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
 
                     String endTag = tag.getEndTag();
 
-                    JSONObject metadata = new JSONObject();
-                    metadata.put(TwigType.PHPCLASS, currentClass.getName());
-                    metadata.put(TwigType.DOC, desc);
-                    metadata.put(TwigType.IS_OPEN_CLOSE, endTag != null);
+                    tag.setPhpClass(currentClass.getName());
+                    tag.setDescription(desc);
+                    String metadata = tag.getMetadata();
 
                     Logger.debugMSG("indexing twig tag: " + tag.getStartTag()
                             + " : " + tag.getEndTag() + " with metadata: "
-                            + metadata.toString());
+                            + metadata);
 
                     ReferenceInfo info = new ReferenceInfo(
                             ITwigModelElement.START_TAG,
                             currentClass.sourceStart(), length,
-                            tag.getStartTag(), metadata.toString(), null);
+                            tag.getStartTag(), metadata, null);
                     addReferenceInfo(info);
 
                     if (endTag != null) {
                         ReferenceInfo endIinfo = new ReferenceInfo(
                                 ITwigModelElement.END_TAG,
                                 currentClass.sourceStart(), length,
-                                tag.getEndTag(), metadata.toString(), null);
+                                tag.getEndTag(), metadata, null);
                         addReferenceInfo(endIinfo);
                     }
 
@@ -424,6 +537,50 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
         return true;
     }
 
+    /**
+     * Twig 1.12 and later declare callables as a list of
+     * <code>new Twig_SimpleFilter('name', callable, options)</code>.
+     *
+     * @param creation
+     * @param className
+     *            the simple callable class to look for
+     * @return the name and the internal function of the callable, or null.
+     *         The function is empty for callables compiled by a node class
+     *         or implemented by a closure.
+     */
+    private String[] getSimpleCallable(ClassInstanceCreation creation, String className)
+    {
+        if (!className.equals(creation.getClassName().toString())) {
+            return null;
+        }
+
+        List<?> args = creation.getCtorParams().getChilds();
+
+        if (args.isEmpty() || args.get(0).getClass() != Scalar.class) {
+            return null;
+        }
+
+        String name = ((Scalar) args.get(0)).getValue().replaceAll("['\"]", "");
+        String internal = "";
+        Object callable = args.size() > 1 ? args.get(1) : null;
+
+        if (callable instanceof ArrayCreation) {
+            // array($this, 'method')
+            List<ArrayElement> elements = ((ArrayCreation) callable).getElements();
+            callable = elements.size() == 2 ? elements.get(1).getValue() : null;
+        }
+
+        if (callable != null && callable.getClass() == Scalar.class) {
+            String value = ((Scalar) callable).getValue();
+
+            if (value.startsWith("'") || value.startsWith("\"")) {
+                internal = value.replaceAll("['\"]", "");
+            }
+        }
+
+        return new String[] {name, internal};
+    }
+
     @Override
     public boolean endvisit(Statement s) throws Exception
     {
@@ -444,81 +601,88 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
     public boolean endvisit(ModuleDeclaration s) throws Exception
     {
         for (Test test : tests) {
-            for (MethodDeclaration method : methods) {
-                if (method.getName().equals(test.getInternalFunction())) {
-
-                    PHPMethodDeclaration phpMethod = (PHPMethodDeclaration) method;
-                    PHPDocBlock doc = phpMethod.getPHPDoc();
 
-                    if (doc != null) {
-                        test.addDoc(doc);
-                    }
+            // callables of native PHP functions are kept without docs
+            PHPMethodDeclaration method = methods.get(test.getInternalFunction());
+            PHPDocBlock doc = method != null ? method.getPHPDoc() : null;
 
-                    Logger.debugMSG("indexing test tag: "
-                            + test.getElementName() + " with metadata: "
-                            + test.getMetadata());
+            if (doc != null) {
+                test.addDoc(doc);
+            }
 
-                    ReferenceInfo info = new ReferenceInfo(
-                            ITwigModelElement.TEST, 0, 0,
-                            test.getElementName(), test.getMetadata(), null);
-                    addReferenceInfo(info);
+            Logger.debugMSG("indexing test tag: "
+                    + test.getElementName() + " with metadata: "
+                    + test.getMetadata());
 
-                }
-            }
+            ReferenceInfo info = new ReferenceInfo(
+                    ITwigModelElement.TEST, 0, 0,
+                    test.getElementName(), test.getMetadata(), null);
+            addReferenceInfo(info);
         }
 
         for (Function function : functions) {
 
-            for (MethodDeclaration method : methods) {
-
-                if (method.getName().equals(function.getInternalFunction())) {
-
-                    PHPMethodDeclaration phpMethod = (PHPMethodDeclaration) method;
-                    PHPDocBlock doc = phpMethod.getPHPDoc();
-
-                    if (doc != null) {
-                        function.addDoc(doc);
-                    }
+            PHPMethodDeclaration method = methods.get(function.getInternalFunction());
+            PHPDocBlock doc = method != null ? method.getPHPDoc() : null;
 
-                    function.addArgs(method.getArguments());
-
-                    Logger.debugMSG("indexing function: "
-                            + function.getElementName() + " with metadata: "
-                            + function.getMetadata());
-                    ReferenceInfo info = new ReferenceInfo(
-                            ITwigModelElement.FUNCTION, 0, 0,
-                            function.getElementName(), function.getMetadata(),
-                            null);
-                    addReferenceInfo(info);
+            if (doc != null) {
+                function.addDoc(doc);
+            }
 
-                }
+            if (method != null) {
+                function.addArgs(method.getArguments());
             }
+
+            Logger.debugMSG("indexing function: "
+                    + function.getElementName() + " with metadata: "
+                    + function.getMetadata());
+            ReferenceInfo info = new ReferenceInfo(
+                    ITwigModelElement.FUNCTION, 0, 0,
+                    function.getElementName(), function.getMetadata(),
+                    null);
+            addReferenceInfo(info);
         }
 
         for (Filter filter : filters) {
 
-            for (MethodDeclaration method : methods) {
+            PHPMethodDeclaration method = methods.get(filter.getInternalFunction());
+            PHPDocBlock doc = method != null ? method.getPHPDoc() : null;
 
-                if (method.getName().equals(filter.getInternalFunction())) {
-
-                    PHPMethodDeclaration phpMethod = (PHPMethodDeclaration) method;
-                    PHPDocBlock doc = phpMethod.getPHPDoc();
+            if (doc != null) {
+                filter.addDoc(doc);
+            }
 
-                    if (doc != null) {
-                        filter.addDoc(doc);
-                    }
+            if (method != null) {
+                filter.addArgs(method.getArguments());
+            }
 
-                    filter.addArgs(method.getArguments());
+            Logger.debugMSG("indexing filter: "
+                    + filter.getElementName() + " with metadata: "
+                    + filter.getMetadata());
+            ReferenceInfo info = new ReferenceInfo(
+                    ITwigModelElement.FILTER, 0, 0,
+                    filter.getElementName(), filter.getMetadata(), null);
+            addReferenceInfo(info);
+        }
 
-                    Logger.debugMSG("indexing filter: "
-                            + filter.getElementName() + " with metadata: "
-                            + filter.getMetadata());
-                    ReferenceInfo info = new ReferenceInfo(
-                            ITwigModelElement.FILTER, 0, 0,
-                            filter.getElementName(), filter.getMetadata(), null);
-                    addReferenceInfo(info);
+        try {
+            getReferences().flush();
+        } catch (Exception e) {
+            Logger.logException(e);
+        }
 
-                }
+        // invalidates the cached block names, so only once the block
+        // references have been written
+        if (sourceModule != null) {
+            TwigModelAccess model = TwigModelAccess.getDefault();
+            model.updateSymbols(sourceModule, symbols);
+
+            if (prepared != null) {
+                model.updateTemplateGraph(sourceModule, prepared.getEdges());
+                model.updateBlocks(sourceModule, prepared.getBlockNames());
+            } else {
+                model.updateTemplateGraph(sourceModule, getVisitor().getEdges());
+                model.updateBlocks(sourceModule, getVisitor().getBlockNames());
             }
         }
 
@@ -529,19 +693,87 @@ public class TwigIndexingVisitorExtension extends PhpIndexingVisitorExtension
     protected void addReferenceInfo(ReferenceInfo info)
     {
         try {
-            requestor.addReference(info);
+            getReferences().addReference(info);
+            recordSymbol(info);
         } catch (Exception e) {
             Logger.logException(e);
         }
     }
+
+    /**
+     * Remember the twig symbols reported for the current module so the
+     * {@link TwigSymbolTable} can be updated without querying the index.
+     * 
+     * @param info
+     */
+    protected void recordSymbol(ReferenceInfo info)
+    {
+        switch (info.elementType) {
+            case ITwigModelElement.FILTER :
+            case ITwigModelElement.FUNCTION :
+            case ITwigModelElement.TEST :
+            case ITwigModelElement.START_TAG :
+            case ITwigModelElement.END_TAG :
+                symbols.add(new TwigSymbolTable.Entry(info.elementType, info.name, info.metadata,
+                        sourceModule, info.offset, info.length));
+                break;
+        }
+    }
     
     @Override
     public boolean visitGeneral(ASTNode node) throws Exception
     {
-        if (node instanceof org.eclipse.dltk.ast.statements.Block) {
-            node.traverse(new TwigIndexingVisitor(requestor, sourceModule));
+        if (node instanceof org.eclipse.dltk.ast.statements.Block && !isTraversed(node)) {
+            traversedBlock = node;
+
+            if (!isPrepared()) {
+                node.traverse(getVisitor());
+            }
         }
         
         return super.visitGeneral(node);
     }
+
+    /**
+     * Look up the batch of the current module once, and collect its
+     * references if it has been built from the current source.
+     * 
+     * @return true if the module does not need to be visited
+     */
+    protected boolean isPrepared()
+    {
+        if (preparedChecked) {
+            return prepared != null;
+        }
+
+        preparedChecked = true;
+
+        if (sourceModule == null) {
+            return false;
+        }
+
+        TwigReferenceBuffer.Batch batch = TwigBuildResults.getDefault().take(sourceModule.getHandleIdentifier());
+
+        try {
+            if (batch == null || !batch.isIndexed(sourceModule.getSource())) {
+                return false;
+            }
+        } catch (ModelException e) {
+            Logger.logException(e);
+            return false;
+        }
+
+        for (ReferenceInfo info : batch.getReferences()) {
+            getReferences().addReference(info);
+        }
+
+        prepared = batch;
+        return true;
+    }
+
+    private boolean isTraversed(ASTNode node)
+    {
+        return traversedBlock != null && node.sourceStart() >= traversedBlock.sourceStart()
+                && node.sourceEnd() <= traversedBlock.sourceEnd();
+    }
 }
\ No newline at end of file
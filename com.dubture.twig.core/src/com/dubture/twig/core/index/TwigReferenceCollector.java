@@ -0,0 +1,139 @@
+/*
+* This file is part of the Twig Eclipse Plugin.
+*
+* (c) Robert Gruendler <r.gruendler@gmail.com>
+*
+* For the full copyright and license information, please view the LICENSE
+* file that was distributed with this source code.
+*/
+package com.dubture.twig.core.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+
+/**
+ * Collects the references reported while indexing a single module and writes
+ * them to the index in one go when the module has been visited.
+ *
+ * References with the same kind, name and offset are only written once, the
+ * first one reported wins.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ */
+public class TwigReferenceCollector implements IIndexingRequestor
+{
+
+    private final IIndexingRequestor target;
+    private final Map<Key, ReferenceInfo> references = new LinkedHashMap<Key, ReferenceInfo>();
+    private int reported = 0;
+
+    public TwigReferenceCollector(IIndexingRequestor target)
+    {
+        this.target = target;
+    }
+
+    public IIndexingRequestor getTarget()
+    {
+        return target;
+    }
+
+    @Override
+    public void addDeclaration(DeclarationInfo info)
+    {
+        target.addDeclaration(info);
+    }
+
+    @Override
+    public void addReference(ReferenceInfo info)
+    {
+        reported++;
+        Key key = new Key(info.elementType, info.name, info.offset);
+
+        if (!references.containsKey(key)) {
+            references.put(key, info);
+        }
+    }
+
+    /**
+     * Write the collected references to the target requestor and reset the
+     * collector.
+     *
+     * @return the number of references written
+     */
+    public int flush()
+    {
+        int count = references.size();
+
+        for (ReferenceInfo info : references.values()) {
+            target.addReference(info);
+        }
+
+        clear();
+        return count;
+    }
+
+    /**
+     * Discard the collected references without writing them.
+     */
+    public void clear()
+    {
+        references.clear();
+        reported = 0;
+    }
+
+    /**
+     * @return the number of distinct references waiting to be flushed
+     */
+    public int size()
+    {
+        return references.size();
+    }
+
+    /**
+     * @return the number of references reported since the last flush,
+     *         including duplicates
+     */
+    public int getReported()
+    {
+        return reported;
+    }
+
+    private static class Key
+    {
+        private final int kind;
+        private final String name;
+        private final int offset;
+
+        Key(int kind, String name, int offset)
+        {
+            this.kind = kind;
+            this.name = name;
+            this.offset = offset;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = 31 * kind + offset;
+            return 31 * hash + (name != null ? name.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+
+            if (kind != other.kind || offset != other.offset) {
+                return false;
+            }
+
+            return name == null ? other.name == null : name.equals(other.name);
+        }
+    }
+}
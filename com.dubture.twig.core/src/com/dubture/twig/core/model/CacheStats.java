@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Hit, miss and invalidation counters of one of the model caches.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class CacheStats
+{
+
+    private final String name;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CacheStats(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void hit()
+    {
+        hits.incrementAndGet();
+    }
+
+    public void miss()
+    {
+        misses.incrementAndGet();
+    }
+
+    public void invalidated()
+    {
+        invalidations.incrementAndGet();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getInvalidations()
+    {
+        return invalidations.get();
+    }
+
+    /**
+     * @return hits / (hits + misses), 0 if the cache has not been used yet
+     */
+    public double getHitRate()
+    {
+        long h = hits.get();
+        long total = h + misses.get();
+
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public void reset()
+    {
+        hits.set(0);
+        misses.set(0);
+        invalidations.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + ": " + getHits() + " hits, " + getMisses() + " misses, "
+                + getInvalidations() + " invalidations, "
+                + Math.round(getHitRate() * 100) + "% hit rate";
+    }
+}
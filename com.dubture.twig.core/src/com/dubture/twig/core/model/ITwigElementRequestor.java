@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+/**
+ * Receives the matches of a streaming {@link TwigModelAccess} query.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public interface ITwigElementRequestor<T extends TwigType>
+{
+
+    /**
+     * @param element
+     * @return false to stop the query
+     */
+    boolean accept(T element);
+
+}
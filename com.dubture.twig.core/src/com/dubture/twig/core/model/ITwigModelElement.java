@@ -18,5 +18,15 @@ public interface ITwigModelElement
     int TEST = 804;
     int BLOCK = 805;
     int EXTENDS = 806;
+    int INCLUDE = 807;
+    int EMBED = 808;
+    int IMPORT = 809;
+    int USE = 810;
+    int MACRO = 811;
+    int IMPORT_ALIAS = 812;
+    int FILTER_USAGE = 813;
+    int FUNCTION_USAGE = 814;
+    int TEST_USAGE = 815;
+    int TAG_USAGE = 816;
 
 }
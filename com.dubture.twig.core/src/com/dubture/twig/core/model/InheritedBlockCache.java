@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.dltk.core.ISourceModule;
+
+/**
+ *
+ * Caches the names of the blocks a template inherits along its whole extends
+ * chain, and the names of the blocks each indexed template declares itself.
+ *
+ * Every entry remembers the templates of the chain it has been computed from
+ * and is dropped as soon as one of them changes. An entry computed while one
+ * of them changed is not stored, see {@link #getVersion()}. Changes to other
+ * templates, and modules which never had blocks such as PHP files, do not
+ * affect an entry.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class InheritedBlockCache
+{
+
+    /**
+     * Block names by the handle identifier of the template.
+     */
+    private final Map<String, String[]> blocks = new HashMap<String, String[]>();
+
+    /**
+     * Handle identifiers of the cached templates by the handle identifier of
+     * each template in their chain.
+     */
+    private final Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+
+    /**
+     * Names of the blocks declared in a template, by its handle identifier,
+     * as collected by the indexer.
+     */
+    private final Map<String, String[]> declared = new HashMap<String, String[]>();
+
+    /**
+     * The version at which a template has last been invalidated, by its
+     * handle identifier.
+     */
+    private final Map<String, Long> changed = new HashMap<String, Long>();
+
+    /**
+     * Incremented on every invalidation.
+     */
+    private long version = 0;
+
+    /**
+     * The version of the last {@link #clear()}.
+     */
+    private long clearedAt = 0;
+
+    /**
+     * @param template
+     * @return the cached block names or null
+     */
+    public synchronized String[] get(ISourceModule template)
+    {
+        return blocks.get(template.getHandleIdentifier());
+    }
+
+    /**
+     * @return the current version, to be passed to
+     *         {@link #put(ISourceModule, String[], List, long)}
+     */
+    public synchronized long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @param template
+     * @param names
+     *            the inherited block names, sorted
+     * @param chain
+     *            handle identifiers of the template and all its parents
+     * @param computedAt
+     *            the version before the names have been computed, the entry
+     *            is dropped if a template of the chain has been invalidated
+     *            since
+     */
+    public synchronized void put(ISourceModule template, String[] names, List<String> chain, long computedAt)
+    {
+        if (computedAt < clearedAt) {
+            return;
+        }
+
+        for (String handle : chain) {
+            Long changedAt = changed.get(handle);
+
+            if (changedAt != null && changedAt.longValue() > computedAt) {
+                return;
+            }
+        }
+
+        String key = template.getHandleIdentifier();
+        blocks.put(key, names);
+
+        for (String handle : chain) {
+            Set<String> keys = dependents.get(handle);
+
+            if (keys == null) {
+                keys = new HashSet<String>();
+                dependents.put(handle, keys);
+            }
+
+            keys.add(key);
+        }
+    }
+
+    /**
+     * @param template
+     * @return the block names declared in the template, or null if it has
+     *         not been indexed since startup
+     */
+    public synchronized String[] getDeclared(ISourceModule template)
+    {
+        return declared.get(template.getHandleIdentifier());
+    }
+
+    /**
+     * Record the block names of an indexed template and drop every entry
+     * computed from it. Modules without blocks are not kept, the indexer
+     * reports every PHP file as well. A module which had no blocks before
+     * and no entry depends on changes nothing.
+     *
+     * @param template
+     * @param names
+     */
+    public synchronized void setDeclared(ISourceModule template, String[] names)
+    {
+        String key = template.getHandleIdentifier();
+        String[] previous;
+
+        if (names.length > 0) {
+            previous = declared.put(key, names);
+        } else {
+            previous = declared.remove(key);
+
+            if (previous == null && !dependents.containsKey(key)) {
+                return;
+            }
+        }
+
+        invalidate(template);
+    }
+
+    /**
+     * Forget a removed template.
+     *
+     * @param template
+     */
+    public synchronized void remove(ISourceModule template)
+    {
+        declared.remove(template.getHandleIdentifier());
+        invalidate(template);
+    }
+
+    /**
+     * Drop every entry computed from the given template.
+     *
+     * @param template
+     */
+    public synchronized void invalidate(ISourceModule template)
+    {
+        version++;
+        changed.put(template.getHandleIdentifier(), Long.valueOf(version));
+        Set<String> keys = dependents.remove(template.getHandleIdentifier());
+
+        if (keys == null) {
+            return;
+        }
+
+        for (String key : keys) {
+            blocks.remove(key);
+        }
+    }
+
+    public synchronized void clear()
+    {
+        blocks.clear();
+        dependents.clear();
+        declared.clear();
+        changed.clear();
+        version++;
+        clearedAt = version;
+    }
+}
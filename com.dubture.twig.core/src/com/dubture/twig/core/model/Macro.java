@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import org.eclipse.dltk.internal.core.ModelElement;
+
+/**
+ *
+ * A macro declared in a template: <code>{% macro name(arguments) %}</code>.
+ *
+ * The parent is the declaring template, the arguments are read from the
+ * {@link TwigMetadata} stored in the index.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class Macro extends TwigCallable
+{
+
+    private final int offset;
+    private final int length;
+
+    public Macro(ModelElement parent, String name, int offset, int length)
+    {
+        super(parent, name);
+        this.offset = offset;
+        this.length = length;
+
+        if (parent != null) {
+            setScriptProject(parent.getScriptProject());
+        }
+    }
+
+    /**
+     * @return the offset of the macro name in the declaring template
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @param name
+     * @return this macro under the name it has been imported as
+     */
+    public Macro alias(String name)
+    {
+        Macro alias = new Macro((ModelElement) getParent(), name, offset, length);
+        alias.setMetadata(metadata);
+        return alias;
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import com.dubture.twig.core.TwigCoreConstants;
+
+/**
+ *
+ * A name bound to imported macros:
+ *
+ * <pre>
+ * {% import 'forms.html.twig' as forms %}
+ * {% from 'forms.html.twig' import input as input_field %}
+ * </pre>
+ *
+ * The first form binds the whole template, the second a single macro.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class MacroImport
+{
+
+    private final String alias;
+    private final String template;
+    private final String macro;
+    private final int offset;
+
+    public MacroImport(String alias, String template, String macro, int offset)
+    {
+        this.alias = alias;
+        this.template = template;
+        this.macro = macro;
+        this.offset = offset;
+    }
+
+    public String getAlias()
+    {
+        return alias;
+    }
+
+    /**
+     * @return the name of the imported template, as written in the tag
+     */
+    public String getTemplate()
+    {
+        return template;
+    }
+
+    /**
+     * @return true if the macros are imported from the importing template
+     */
+    public boolean isSelf()
+    {
+        return TwigCoreConstants.SELF.equals(template);
+    }
+
+    /**
+     * @return the imported macro, or null if the alias names a template
+     */
+    public String getMacro()
+    {
+        return macro;
+    }
+
+    public int getOffset()
+    {
+        return offset;
+    }
+}
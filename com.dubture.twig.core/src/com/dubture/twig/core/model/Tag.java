@@ -8,8 +8,6 @@
  ******************************************************************************/
 package com.dubture.twig.core.model;
 
-import org.json.simple.JSONObject;
-
 /**
  * 
  * 
@@ -73,13 +71,7 @@ public class Tag extends TwigType
     public String getMetadata()
     {
 
-        return "";
-    }
-
-    @Override
-    public void setMetadata(JSONObject data)
-    {
-        // TODO Auto-generated method stub
-
+        return TwigMetadata.encode(getPhpClass(), null, getDescription(),
+                endTag != null, null);
     }
 }
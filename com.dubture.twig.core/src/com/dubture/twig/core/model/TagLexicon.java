@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Immutable lookup table of the tags known in one project: every start tag
+ * with its open/close flag, the end tag paired with it and the reverse
+ * mapping from end tags to their start tag.
+ *
+ * A lexicon is never modified after it has been built, so it can be read
+ * without locking. The {@link TwigSymbolTable} replaces it as a whole when
+ * the token parsers of the project change.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TagLexicon
+{
+
+    public static final TagLexicon EMPTY = new TagLexicon(
+            Collections.<String, Boolean> emptyMap(),
+            Collections.<String, String> emptyMap(),
+            Collections.<String, String> emptyMap());
+
+    /**
+     * Open/close flag by start tag.
+     */
+    private final Map<String, Boolean> startTags;
+
+    /**
+     * End tag by start tag.
+     */
+    private final Map<String, String> endTags;
+
+    /**
+     * Start tag by end tag.
+     */
+    private final Map<String, String> startByEnd;
+
+    private TagLexicon(Map<String, Boolean> startTags, Map<String, String> endTags,
+            Map<String, String> startByEnd)
+    {
+        this.startTags = startTags;
+        this.endTags = endTags;
+        this.startByEnd = startByEnd;
+    }
+
+    /**
+     * Build a lexicon from the tag symbols of a {@link TwigSymbolTable}. A
+     * start and an end tag belong together when they have been indexed from
+     * the same token parser, i.e. the same source module and offset.
+     *
+     * @param entries
+     *            {@link ITwigModelElement#START_TAG} and
+     *            {@link ITwigModelElement#END_TAG} entries
+     * @return
+     */
+    public static TagLexicon build(List<TwigSymbolTable.Entry> entries)
+    {
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, Boolean> startTags = new HashMap<String, Boolean>();
+        Map<String, String> endTags = new HashMap<String, String>();
+        Map<String, String> startByEnd = new HashMap<String, String>();
+        Map<String, String> startByParser = new HashMap<String, String>();
+
+        for (TwigSymbolTable.Entry entry : entries) {
+            if (entry.getKind() != ITwigModelElement.START_TAG) {
+                continue;
+            }
+
+            boolean openClose = entry.getSymbol().getDecodedMetadata().isOpenClose();
+            Boolean known = startTags.get(entry.getName());
+
+            if (known == null || (!known.booleanValue() && openClose)) {
+                startTags.put(entry.getName(), Boolean.valueOf(openClose));
+            }
+
+            startByParser.put(getParserKey(entry), entry.getName());
+        }
+
+        for (TwigSymbolTable.Entry entry : entries) {
+            if (entry.getKind() != ITwigModelElement.END_TAG) {
+                continue;
+            }
+
+            String start = startByParser.get(getParserKey(entry));
+
+            if (start == null) {
+                // the end tag of an unknown parser, still a valid tag
+                startByEnd.put(entry.getName(), null);
+                continue;
+            }
+
+            startTags.put(start, Boolean.TRUE);
+
+            if (!endTags.containsKey(start)) {
+                endTags.put(start, entry.getName());
+            }
+
+            if (startByEnd.get(entry.getName()) == null) {
+                startByEnd.put(entry.getName(), start);
+            }
+        }
+
+        return new TagLexicon(Collections.unmodifiableMap(startTags),
+                Collections.unmodifiableMap(endTags),
+                Collections.unmodifiableMap(startByEnd));
+    }
+
+    private static String getParserKey(TwigSymbolTable.Entry entry)
+    {
+        // symbols of a pack have no source module
+        String module = entry.getSourceModule() != null
+                ? entry.getSourceModule().getHandleIdentifier()
+                : TwigSymbolPack.class.getName();
+
+        return module + '#' + entry.getOffset();
+    }
+
+    public boolean isStartTag(String name)
+    {
+        return startTags.containsKey(name);
+    }
+
+    public boolean isEndTag(String name)
+    {
+        return startByEnd.containsKey(name);
+    }
+
+    public boolean isTag(String name)
+    {
+        return isStartTag(name) || isEndTag(name);
+    }
+
+    /**
+     * @param name
+     * @return true if the given start tag encloses a body and needs an end
+     *         tag
+     */
+    public boolean hasEndTag(String name)
+    {
+        Boolean openClose = startTags.get(name);
+        return openClose != null && openClose.booleanValue();
+    }
+
+    /**
+     * @param start
+     * @return the end tag closing the given start tag, or null
+     */
+    public String getEndTag(String start)
+    {
+        return endTags.get(start);
+    }
+
+    /**
+     * @param end
+     * @return the start tag opened by the given end tag, or null
+     */
+    public String getStartTag(String end)
+    {
+        return startByEnd.get(end);
+    }
+
+    public int size()
+    {
+        return startTags.size() + startByEnd.size();
+    }
+}
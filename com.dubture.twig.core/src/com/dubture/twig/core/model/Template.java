@@ -21,12 +21,27 @@ public class Template
 {
 
     private ISourceModule sourceModule;
+    private volatile TemplateVariables variables;
 
     public ISourceModule getSourceModule()
     {
         return sourceModule;
     }
 
+    /**
+     * @return the variables of the last parse, or null if the template has
+     *         not been parsed yet
+     */
+    public TemplateVariables getVariables()
+    {
+        return variables;
+    }
+
+    public void setVariables(TemplateVariables variables)
+    {
+        this.variables = variables;
+    }
+
     public Template(ISourceModule sourceModule)
     {
 
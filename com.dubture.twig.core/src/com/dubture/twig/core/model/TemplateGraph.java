@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.SearchFor;
+import org.eclipse.dltk.core.index2.search.ISearchRequestor;
+import org.eclipse.dltk.core.index2.search.ModelAccess;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.php.internal.core.PHPLanguageToolkit;
+
+import com.dubture.twig.core.index.TwigIndexingVisitor;
+
+/**
+ *
+ * Directed graph of the relations between the templates of one
+ * {@link IScriptProject}: extends, include, embed, import and use.
+ *
+ * Edges point from a template to the logical name it references, e.g.
+ * <code>AcmeDemoBundle::layout.html.twig</code>. They are persisted as
+ * references in the DLTK index by the {@link TwigIndexingVisitor}, read once
+ * when the graph is first accessed and afterwards replaced per source module
+ * whenever the indexer visits it.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class TemplateGraph
+{
+
+    private static final int[] KINDS = {ITwigModelElement.EXTENDS,
+            ITwigModelElement.INCLUDE, ITwigModelElement.EMBED,
+            ITwigModelElement.IMPORT, ITwigModelElement.USE};
+
+    private final IScriptProject project;
+
+    /**
+     * Edges by the handle identifier of the referencing source module.
+     */
+    private final Map<String, List<Edge>> outgoing = new LinkedHashMap<String, List<Edge>>();
+
+    /**
+     * Edges by the referenced template name.
+     */
+    private final Map<String, List<Edge>> incoming = new HashMap<String, List<Edge>>();
+
+    /**
+     * Updates which arrived before the graph was loaded, an empty list
+     * removes the edges of the module.
+     */
+    private final Map<String, List<Edge>> pending = new LinkedHashMap<String, List<Edge>>();
+
+    private boolean loaded = false;
+
+    public TemplateGraph(IScriptProject project)
+    {
+        this.project = project;
+    }
+
+    public IScriptProject getScriptProject()
+    {
+        return project;
+    }
+
+    /**
+     * @param sourceModule
+     * @return the relations declared by the given template
+     */
+    public synchronized List<Edge> getOutgoing(ISourceModule sourceModule)
+    {
+        load();
+
+        List<Edge> edges = outgoing.get(sourceModule.getHandleIdentifier());
+
+        if (edges == null) {
+            return Collections.emptyList();
+        }
+
+        return Collections.unmodifiableList(edges);
+    }
+
+    /**
+     * @param name
+     *            logical template name
+     * @param kind
+     *            one of the relation kinds of {@link ITwigModelElement}
+     * @return the edges of the given kind pointing to the template name
+     */
+    public synchronized List<Edge> getIncoming(String name, int kind)
+    {
+        load();
+
+        List<Edge> edges = incoming.get(name);
+        List<Edge> result = new ArrayList<Edge>();
+
+        if (edges == null) {
+            return result;
+        }
+
+        for (Edge edge : edges) {
+            if (edge.getKind() == kind) {
+                result.add(edge);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param kind
+     * @return all template names referenced with the given relation kind
+     */
+    public synchronized Set<String> getTargets(int kind)
+    {
+        load();
+
+        Set<String> result = new HashSet<String>();
+
+        for (Map.Entry<String, List<Edge>> entry : incoming.entrySet()) {
+            for (Edge edge : entry.getValue()) {
+                if (edge.getKind() == kind) {
+                    result.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param sourceModule
+     * @return the template name in the extends tag of the module, or null
+     */
+    public synchronized String getParentName(ISourceModule sourceModule)
+    {
+        for (Edge edge : getOutgoing(sourceModule)) {
+            if (edge.getKind() == ITwigModelElement.EXTENDS) {
+                return edge.getTarget();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Replace the edges declared by the given source module. Updates which
+     * arrive before the graph has been loaded are kept and applied on top of
+     * the snapshot or the index, which may not contain them yet.
+     *
+     * @param sourceModule
+     * @param edges
+     */
+    public synchronized void update(ISourceModule sourceModule, List<Edge> edges)
+    {
+        List<Edge> copy = edges != null ? new ArrayList<Edge>(edges) : new ArrayList<Edge>();
+
+        if (!loaded) {
+            pending.put(sourceModule.getHandleIdentifier(), copy);
+            return;
+        }
+
+        put(sourceModule.getHandleIdentifier(), copy);
+    }
+
+    private void put(String key, List<Edge> edges)
+    {
+        removeEdges(key);
+
+        if (edges.isEmpty()) {
+            return;
+        }
+
+        outgoing.put(key, edges);
+
+        for (Edge edge : edges) {
+            addIncoming(edge);
+        }
+    }
+
+    public synchronized boolean contains(ISourceModule sourceModule)
+    {
+        return outgoing.containsKey(sourceModule.getHandleIdentifier());
+    }
+
+    /**
+     * @return a copy of the edges by module handle, or null if the graph has
+     *         not been loaded yet
+     */
+    public synchronized Map<String, List<Edge>> copyEdges()
+    {
+        if (!loaded) {
+            return null;
+        }
+
+        Map<String, List<Edge>> copy = new LinkedHashMap<String, List<Edge>>();
+
+        for (Map.Entry<String, List<Edge>> entry : outgoing.entrySet()) {
+            copy.put(entry.getKey(), new ArrayList<Edge>(entry.getValue()));
+        }
+
+        return copy;
+    }
+
+    public synchronized void remove(ISourceModule sourceModule)
+    {
+        if (!loaded) {
+            pending.put(sourceModule.getHandleIdentifier(), new ArrayList<Edge>());
+            return;
+        }
+
+        removeEdges(sourceModule.getHandleIdentifier());
+    }
+
+    private void removeEdges(String key)
+    {
+        List<Edge> edges = outgoing.remove(key);
+
+        if (edges == null) {
+            return;
+        }
+
+        for (Edge edge : edges) {
+            List<Edge> targetEdges = incoming.get(edge.getTarget());
+
+            if (targetEdges == null) {
+                continue;
+            }
+
+            targetEdges.remove(edge);
+
+            if (targetEdges.isEmpty()) {
+                incoming.remove(edge.getTarget());
+            }
+        }
+    }
+
+    private void addIncoming(Edge edge)
+    {
+        List<Edge> edges = incoming.get(edge.getTarget());
+
+        if (edges == null) {
+            edges = new ArrayList<Edge>(2);
+            incoming.put(edge.getTarget(), edges);
+        }
+
+        edges.add(edge);
+    }
+
+    /**
+     * Fill the graph from the {@link TwigSymbolSnapshot} of the project or,
+     * if there is none, from the DLTK index. Runs once per graph. Templates
+     * which changed or were added since the snapshot was written are left out
+     * until the indexer reports them through
+     * {@link #update(ISourceModule, List)}.
+     */
+    private void load()
+    {
+        if (loaded) {
+            return;
+        }
+
+        Map<String, List<Edge>> snapshot = TwigSymbolSnapshot.takeEdges(project);
+
+        if (snapshot != null) {
+            for (Map.Entry<String, List<Edge>> entry : snapshot.entrySet()) {
+                outgoing.put(entry.getKey(), entry.getValue());
+
+                for (Edge edge : entry.getValue()) {
+                    addIncoming(edge);
+                }
+            }
+
+            applyPending();
+            loaded = true;
+            return;
+        }
+
+        IDLTKSearchScope scope = SearchEngine.createSearchScope(project);
+        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit.getDefault());
+
+        for (final int kind : KINDS) {
+            engine.search(kind, null, null, 0, 0, 0, SearchFor.REFERENCES,
+                    MatchRule.PREFIX, scope, new ISearchRequestor()
+                    {
+                        @Override
+                        public void match(int elementType, int flags, int offset,
+                                int length, int nameOffset, int nameLength,
+                                String elementName, String metadata, String doc,
+                                String qualifier, String parent,
+                                ISourceModule sourceModule, boolean isReference)
+                        {
+                            String key = sourceModule.getHandleIdentifier();
+                            List<Edge> edges = outgoing.get(key);
+
+                            if (edges == null) {
+                                edges = new ArrayList<Edge>(2);
+                                outgoing.put(key, edges);
+                            }
+
+                            Edge edge = new Edge(kind, sourceModule, elementName, offset, length);
+                            edges.add(edge);
+                            addIncoming(edge);
+                        }
+                    }, null);
+        }
+
+        applyPending();
+        loaded = true;
+    }
+
+    private void applyPending()
+    {
+        for (Map.Entry<String, List<Edge>> update : pending.entrySet()) {
+            put(update.getKey(), update.getValue());
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * A relation from a template to the logical name of another template.
+     */
+    public static class Edge
+    {
+        private final int kind;
+        private final ISourceModule source;
+        private final String target;
+        private final int offset;
+        private final int length;
+
+        public Edge(int kind, ISourceModule source, String target, int offset, int length)
+        {
+            this.kind = kind;
+            this.source = source;
+            this.target = target;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * @return one of the relation kinds of {@link ITwigModelElement}
+         */
+        public int getKind()
+        {
+            return kind;
+        }
+
+        public ISourceModule getSource()
+        {
+            return source;
+        }
+
+        public String getTarget()
+        {
+            return target;
+        }
+
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        public int getLength()
+        {
+            return length;
+        }
+    }
+}
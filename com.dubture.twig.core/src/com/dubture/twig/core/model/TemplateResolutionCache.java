@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.internal.core.SourceModule;
+
+import com.dubture.twig.core.ExtensionManager;
+import com.dubture.twig.core.log.Logger;
+
+/**
+ *
+ * Caches the result of resolving logical template names like
+ * <code>AcmeDemoBundle::layout.html.twig</code> through the
+ * {@link ITemplateResolver}s of one {@link IScriptProject}.
+ *
+ * Names which could not be resolved are cached as well. The cache is flushed
+ * by the {@link TwigResourceChangeListener} whenever a file of the project is
+ * added, removed or moved.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class TemplateResolutionCache
+{
+
+    /**
+     * Marks names which none of the resolvers could resolve.
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    private final IScriptProject project;
+    private final ConcurrentMap<String, Object> entries = new ConcurrentHashMap<String, Object>();
+    private final CacheStats stats;
+
+    public TemplateResolutionCache(IScriptProject project)
+    {
+        this.project = project;
+        this.stats = new CacheStats("template resolution (" + project.getElementName() + ")");
+    }
+
+    public IScriptProject getScriptProject()
+    {
+        return project;
+    }
+
+    /**
+     * @param name
+     *            logical template name
+     * @return the template or null if it cannot be resolved
+     */
+    public SourceModule resolve(String name)
+    {
+        Object entry = entries.get(name);
+
+        if (entry != null) {
+            stats.hit();
+            return entry == UNRESOLVED ? null : (SourceModule) entry;
+        }
+
+        stats.miss();
+        SourceModule module = null;
+
+        for (ITemplateResolver resolver : ExtensionManager.getInstance().getTemplateProviders()) {
+
+            module = resolver.revolePath(name, project);
+
+            if (module != null) {
+                break;
+            }
+        }
+
+        entries.put(name, module != null ? module : UNRESOLVED);
+        return module;
+    }
+
+    public void clear()
+    {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        entries.clear();
+        stats.invalidated();
+        Logger.debugMSG("flushed " + stats);
+    }
+
+    public CacheStats getStats()
+    {
+        return stats;
+    }
+}
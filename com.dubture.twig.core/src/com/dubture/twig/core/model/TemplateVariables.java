@@ -0,0 +1,681 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.statements.Statement;
+
+import com.dubture.twig.core.parser.ast.node.BlockStatement;
+import com.dubture.twig.core.parser.ast.node.TwigCallExpression;
+import com.dubture.twig.core.parser.ast.node.Variable;
+
+/**
+ *
+ * The variables defined in a template, by the source range they are visible
+ * in.
+ *
+ * Definitions come from <code>set</code> tags, the targets of
+ * <code>for</code> loops (plus their <code>loop</code> variable), the keys of
+ * a literal <code>with</code> context and the arguments of macros. A
+ * definition is visible from the end of its tag to the end of the enclosing
+ * <code>for</code>, <code>with</code>, <code>macro</code> or
+ * <code>block</code>, or the end of the template. Macros and
+ * <code>with ... only</code> do not see the variables defined outside of
+ * them.
+ *
+ * The table is built once per parse and holds every definition once. Scopes
+ * nest, so the definitions sorted by the start of their scope form a tree of
+ * enclosing scopes: a lookup is a binary search for the last scope starting
+ * before an offset, followed by a walk up its enclosing scopes. The innermost
+ * definition of a name wins.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TemplateVariables
+{
+
+    public static final int SET = 1;
+    public static final int FOR = 2;
+    public static final int LOOP = 3;
+    public static final int WITH = 4;
+    public static final int MACRO_ARGUMENT = 5;
+
+    private static final String FOR_TAG = "for";
+    private static final String WITH_TAG = "with";
+    private static final String MACRO_TAG = "macro";
+    private static final String SET_TAG = "set";
+    private static final String LOOP_VARIABLE = "loop";
+    private static final String ONLY = "only";
+    private static final String IN = "in";
+
+    private static final Comparator<Definition> BY_NAME = new Comparator<Definition>()
+    {
+        @Override
+        public int compare(Definition a, Definition b)
+        {
+            return a.name.compareToIgnoreCase(b.name);
+        }
+    };
+
+    /**
+     * Outer scopes first when two start at the same offset.
+     */
+    private static final Comparator<Definition> BY_SCOPE = new Comparator<Definition>()
+    {
+        @Override
+        public int compare(Definition a, Definition b)
+        {
+            if (a.scopeStart != b.scopeStart) {
+                return a.scopeStart < b.scopeStart ? -1 : 1;
+            }
+
+            return a.scopeEnd > b.scopeEnd ? -1 : (a.scopeEnd == b.scopeEnd ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Scope> SCOPE_BY_START = new Comparator<Scope>()
+    {
+        @Override
+        public int compare(Scope a, Scope b)
+        {
+            if (a.start != b.start) {
+                return a.start < b.start ? -1 : 1;
+            }
+
+            return a.end > b.end ? -1 : (a.end == b.end ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Definition> BY_OFFSET = new Comparator<Definition>()
+    {
+        @Override
+        public int compare(Definition a, Definition b)
+        {
+            return a.offset < b.offset ? -1 : (a.offset == b.offset ? 0 : 1);
+        }
+    };
+
+    public static final TemplateVariables EMPTY = build("", new ArrayList<Definition>(),
+            new ArrayList<Scope>());
+
+    private final int sourceLength;
+    private final int sourceHash;
+
+    /**
+     * All definitions by {@link #BY_SCOPE}, the start of their scopes and
+     * the index of the innermost definition whose scope encloses theirs, or
+     * -1.
+     */
+    private final Definition[] scoped;
+    private final int[] scopeStarts;
+    private final int[] enclosing;
+
+    /**
+     * The scopes of macros and <code>with ... only</code>, the same way.
+     */
+    private final Scope[] isolated;
+    private final int[] isolatedStarts;
+    private final int[] enclosingIsolated;
+
+    /**
+     * All definitions, by offset.
+     */
+    private final List<Definition> definitions;
+
+    private TemplateVariables(int sourceLength, int sourceHash, Definition[] scoped,
+            Scope[] isolated, List<Definition> definitions)
+    {
+        this.sourceLength = sourceLength;
+        this.sourceHash = sourceHash;
+        this.scoped = scoped;
+        this.isolated = isolated;
+        this.definitions = definitions;
+
+        scopeStarts = new int[scoped.length];
+        int[] scopeEnds = new int[scoped.length];
+
+        for (int i = 0; i < scoped.length; i++) {
+            scopeStarts[i] = scoped[i].scopeStart;
+            scopeEnds[i] = scoped[i].scopeEnd;
+        }
+
+        isolatedStarts = new int[isolated.length];
+        int[] isolatedEnds = new int[isolated.length];
+
+        for (int i = 0; i < isolated.length; i++) {
+            isolatedStarts[i] = isolated[i].start;
+            isolatedEnds[i] = isolated[i].end;
+        }
+
+        enclosing = getEnclosing(scopeStarts, scopeEnds);
+        enclosingIsolated = getEnclosing(isolatedStarts, isolatedEnds);
+    }
+
+    /**
+     * A single variable definition.
+     */
+    public static class Definition
+    {
+        private final String name;
+        private final int kind;
+        private final int offset;
+        private final int scopeStart;
+        private final int scopeEnd;
+
+        Definition(String name, int kind, int offset, int scopeStart, int scopeEnd)
+        {
+            this.name = name;
+            this.kind = kind;
+            this.offset = offset;
+            this.scopeStart = scopeStart;
+            this.scopeEnd = scopeEnd;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return one of {@link TemplateVariables#SET},
+         *         {@link TemplateVariables#FOR}, ...
+         */
+        public int getKind()
+        {
+            return kind;
+        }
+
+        /**
+         * @return the offset of the defining name in the template
+         */
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        public int getScopeStart()
+        {
+            return scopeStart;
+        }
+
+        public int getScopeEnd()
+        {
+            return scopeEnd;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + "[" + scopeStart + ", " + scopeEnd + ")";
+        }
+    }
+
+    /**
+     * A scope opened by a tag, closed by its end tag.
+     */
+    private static class Scope
+    {
+        private final String tag;
+        private final int tagStart;
+        private final int start;
+        private final boolean isolated;
+        private int end;
+
+        Scope(String tag, int tagStart, int start, int end, boolean isolated)
+        {
+            this.tag = tag;
+            this.tagStart = tagStart;
+            this.start = start;
+            this.end = end;
+            this.isolated = isolated;
+        }
+    }
+
+    /**
+     * Extract the variable definitions of a parsed template.
+     *
+     * @param module
+     *            the parsed template
+     * @param source
+     *            the source the module has been parsed from
+     * @return
+     */
+    public static TemplateVariables build(ModuleDeclaration module, String source)
+    {
+        List<Definition> definitions = new ArrayList<Definition>();
+        List<Scope> isolated = new ArrayList<Scope>();
+        LinkedList<Scope> open = new LinkedList<Scope>();
+        Map<Scope, List<Definition>> pending = new HashMap<Scope, List<Definition>>();
+
+        Scope template = new Scope(null, 0, 0, source.length(), false);
+        open.push(template);
+
+        for (Object node : module.getStatements()) {
+            if (!(node instanceof BlockStatement)) {
+                continue;
+            }
+
+            BlockStatement block = (BlockStatement) node;
+            String tag = block.getTag();
+
+            if (tag.startsWith("end") && closes(open, tag.substring(3))) {
+                while (!tag.substring(3).equals(open.peek().tag)) {
+                    close(open.pop(), block.sourceStart(), pending, definitions);
+                }
+
+                close(open.pop(), block.sourceStart(), pending, definitions);
+                continue;
+            }
+
+            List<Variable> names = getDefinedNames(block, source);
+            int kind = getKind(block);
+
+            if (kind == SET) {
+                addPending(pending, open.peek(), names, kind, block.sourceEnd());
+                continue;
+            }
+
+            if (!isScope(block)) {
+                continue;
+            }
+
+            Scope scope = new Scope(tag, block.sourceStart(), block.sourceEnd(),
+                    source.length(), isIsolated(block));
+            open.push(scope);
+
+            if (scope.isolated) {
+                isolated.add(scope);
+            }
+
+            if (kind != 0) {
+                addPending(pending, scope, names, kind, scope.start);
+            }
+
+            if (kind == FOR) {
+                List<Definition> loop = pending.get(scope);
+                loop.add(new Definition(LOOP_VARIABLE, LOOP, block.sourceStart(), scope.start, 0));
+            }
+        }
+
+        while (!open.isEmpty()) {
+            close(open.pop(), source.length(), pending, definitions);
+        }
+
+        return build(source, definitions, isolated);
+    }
+
+    private static TemplateVariables build(String source,
+            List<Definition> definitions, List<Scope> isolated)
+    {
+        Definition[] scoped = definitions.toArray(new Definition[definitions.size()]);
+        Arrays.sort(scoped, BY_SCOPE);
+
+        Scope[] isolatedScopes = isolated.toArray(new Scope[isolated.size()]);
+        Arrays.sort(isolatedScopes, SCOPE_BY_START);
+
+        Collections.sort(definitions, BY_OFFSET);
+
+        return new TemplateVariables(source.length(), source.hashCode(), scoped,
+                isolatedScopes, Collections.unmodifiableList(definitions));
+    }
+
+    /**
+     * @param starts
+     *            the starts of nested or disjoint ranges, outer ranges first
+     *            among equal starts
+     * @param ends
+     * @return for each range the index of the innermost range before it
+     *         which encloses it, or -1
+     */
+    private static int[] getEnclosing(int[] starts, int[] ends)
+    {
+        int[] enclosing = new int[starts.length];
+        int[] open = new int[starts.length];
+        int depth = 0;
+
+        for (int i = 0; i < starts.length; i++) {
+            while (depth > 0 && ends[open[depth - 1]] < ends[i]) {
+                depth--;
+            }
+
+            enclosing[i] = depth > 0 ? open[depth - 1] : -1;
+            open[depth++] = i;
+        }
+
+        return enclosing;
+    }
+
+    /**
+     * @param starts
+     * @param offset
+     * @return the index of the last range starting at or before the offset,
+     *         or -1
+     */
+    private static int getLastStart(int[] starts, int offset)
+    {
+        int low = 0;
+        int high = starts.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (starts[middle] <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low - 1;
+    }
+
+    private static boolean closes(LinkedList<Scope> open, String tag)
+    {
+        for (Scope scope : open) {
+            if (tag.equals(scope.tag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void close(Scope scope, int end, Map<Scope, List<Definition>> pending,
+            List<Definition> definitions)
+    {
+        scope.end = end;
+        List<Definition> defined = pending.remove(scope);
+
+        if (defined == null) {
+            return;
+        }
+
+        for (Definition definition : defined) {
+            if (definition.scopeStart < end) {
+                definitions.add(new Definition(definition.name, definition.kind,
+                        definition.offset, definition.scopeStart, end));
+            }
+        }
+    }
+
+    private static void addPending(Map<Scope, List<Definition>> pending,
+            Scope scope, List<Variable> names, int kind, int start)
+    {
+        List<Definition> defined = pending.get(scope);
+
+        if (defined == null) {
+            defined = new ArrayList<Definition>();
+            pending.put(scope, defined);
+        }
+
+        for (Variable name : names) {
+            defined.add(new Definition(name.getValue(), kind, name.sourceStart(), start, 0));
+        }
+    }
+
+    private static int getKind(BlockStatement block)
+    {
+        String tag = block.getTag();
+
+        if (SET_TAG.equals(tag)) {
+            return SET;
+        } else if (FOR_TAG.equals(tag)) {
+            return FOR;
+        } else if (WITH_TAG.equals(tag)) {
+            return WITH;
+        } else if (MACRO_TAG.equals(tag)) {
+            return MACRO_ARGUMENT;
+        }
+
+        return 0;
+    }
+
+    private static boolean isScope(BlockStatement block)
+    {
+        String tag = block.getTag();
+
+        if (block.isBlock()) {
+            // {% block title 'Title' %} has no body
+            List<?> statements = block.getChilds();
+            return statements == null || statements.size() < 2;
+        }
+
+        return FOR_TAG.equals(tag) || WITH_TAG.equals(tag) || MACRO_TAG.equals(tag);
+    }
+
+    private static boolean isIsolated(BlockStatement block)
+    {
+        if (MACRO_TAG.equals(block.getTag())) {
+            return true;
+        }
+
+        if (!WITH_TAG.equals(block.getTag())) {
+            return false;
+        }
+
+        for (Variable variable : getVariables(block)) {
+            if (ONLY.equals(variable.getValue())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The AST of a tag is a flat list of names, strings and calls, so the
+     * defined names are told apart by their position in the tag source.
+     */
+    private static List<Variable> getDefinedNames(BlockStatement block, String source)
+    {
+        String tag = block.getTag();
+        List<Variable> names = new ArrayList<Variable>();
+
+        if (SET_TAG.equals(tag)) {
+            // {% set a, b = ... %} or the capturing {% set a %}
+            int assign = source.indexOf('=', block.sourceStart());
+
+            for (Variable variable : getVariables(block)) {
+                if (assign == -1 || assign >= block.sourceEnd()
+                        || variable.sourceStart() < assign) {
+                    names.add(variable);
+                }
+            }
+        } else if (FOR_TAG.equals(tag)) {
+            // {% for key, value in ... %}
+            for (Variable variable : getVariables(block)) {
+                if (IN.equals(variable.getValue())) {
+                    break;
+                }
+
+                names.add(variable);
+            }
+        } else if (WITH_TAG.equals(tag)) {
+            // the keys of {% with {key: value} %}
+            for (Variable variable : getVariables(block)) {
+                if (nextChar(source, variable.sourceEnd(), block.sourceEnd()) == ':') {
+                    names.add(variable);
+                }
+            }
+        } else if (MACRO_TAG.equals(tag)) {
+            // {% macro name(argument, other = none, ...) %}, the parser drops
+            // the "=" so names used as default values are variables as well
+            Statement first = block.getFirstChild();
+
+            if (first instanceof TwigCallExpression) {
+                List<?> arguments = ((TwigCallExpression) first).getArguments();
+
+                if (arguments != null) {
+                    for (Object argument : arguments) {
+                        if (!(argument instanceof Variable)) {
+                            continue;
+                        }
+
+                        Variable variable = (Variable) argument;
+                        char previous = previousChar(source, variable.sourceStart(), block.sourceStart());
+                        char next = nextChar(source, variable.sourceEnd(), block.sourceEnd());
+
+                        if ((previous == '(' || previous == ',')
+                                && (next == ',' || next == ')' || next == '=')) {
+                            names.add(variable);
+                        }
+                    }
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private static List<Variable> getVariables(BlockStatement block)
+    {
+        List<?> statements = block.getChilds();
+
+        if (statements == null) {
+            return Collections.emptyList();
+        }
+
+        List<Variable> variables = new ArrayList<Variable>();
+
+        for (Object statement : statements) {
+            if (statement instanceof Variable) {
+                variables.add((Variable) statement);
+            }
+        }
+
+        return variables;
+    }
+
+    private static char previousChar(String source, int offset, int start)
+    {
+        for (int i = Math.min(offset, source.length()) - 1; i >= start && i >= 0; i--) {
+            char c = source.charAt(i);
+
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+
+        return 0;
+    }
+
+    private static char nextChar(String source, int offset, int end)
+    {
+        for (int i = offset; i < end && i < source.length(); i++) {
+            char c = source.charAt(i);
+
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @param source
+     * @return true if the table has been built from the given source
+     */
+    public boolean isValid(String source)
+    {
+        return source != null && source.length() == sourceLength
+                && source.hashCode() == sourceHash;
+    }
+
+    /**
+     * @param offset
+     * @return the variables visible at the given offset, sorted by name
+     */
+    public Definition[] getVisible(int offset)
+    {
+        List<Definition> visible = getVisible(offset, null);
+        return visible.toArray(new Definition[visible.size()]);
+    }
+
+    /**
+     * @param offset
+     * @param prefix
+     * @return the variables visible at the given offset whose name starts
+     *         with the prefix, ignoring case, sorted by name
+     */
+    public List<Definition> getVisible(int offset, String prefix)
+    {
+        List<Definition> result = new ArrayList<Definition>();
+        Set<String> names = new HashSet<String>();
+        int hiddenBefore = getIsolatedTagStart(offset);
+
+        if (prefix == null) {
+            prefix = "";
+        }
+
+        // the scopes enclosing the offset, innermost first
+        for (int i = getLastStart(scopeStarts, offset); i >= 0; i = enclosing[i]) {
+            Definition definition = scoped[i];
+
+            if (offset >= definition.scopeEnd || definition.offset < hiddenBefore) {
+                continue;
+            }
+
+            if (definition.name.regionMatches(true, 0, prefix, 0, prefix.length())
+                    && names.add(definition.name)) {
+                result.add(definition);
+            }
+        }
+
+        Collections.sort(result, BY_NAME);
+        return result;
+    }
+
+    /**
+     * Definitions before the tag of the innermost isolated scope of an
+     * offset are hidden.
+     *
+     * @param offset
+     * @return the start of the tag, or -1 outside of isolated scopes
+     */
+    private int getIsolatedTagStart(int offset)
+    {
+        for (int i = getLastStart(isolatedStarts, offset); i >= 0; i = enclosingIsolated[i]) {
+            if (offset < isolated[i].end) {
+                return isolated[i].tagStart;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return all definitions of the template, by offset
+     */
+    public List<Definition> getDefinitions()
+    {
+        return definitions;
+    }
+
+    /**
+     * @return the number of definitions
+     */
+    public int size()
+    {
+        return definitions.size();
+    }
+}
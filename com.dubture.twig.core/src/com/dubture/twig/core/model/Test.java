@@ -11,7 +11,6 @@ package com.dubture.twig.core.model;
 import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.internal.core.ModelElement;
 import org.eclipse.php.internal.core.compiler.ast.nodes.PHPDocBlock;
-import org.json.simple.JSONObject;
 
 /**
  * 
@@ -40,27 +39,12 @@ public class Test extends TwigType
         super(null, elemName);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public String getMetadata()
     {
 
-        JSONObject data = new JSONObject();
-        data.put(PHPCLASS, phpClass);
-        data.put(DOC, getDocString());
-        data.put(INTERNAL, internalFunction);
-
-        return data.toString();
-    }
-
-    @Override
-    public void setMetadata(JSONObject data)
-    {
-
-        phpClass = (String) data.get(PHPCLASS);
-        description = (String) data.get(DOC);
-        internalFunction = (String) data.get(INTERNAL);
-
+        return TwigMetadata.encode(getPhpClass(), getInternalFunction(),
+                getDocString(), false, null);
     }
 
     public void addDoc(PHPDocBlock doc)
@@ -73,6 +57,8 @@ public class Test extends TwigType
     protected String getDocString()
     {
 
+        String description = getDescription();
+
         if (description != null)
             return description;
 
@@ -84,8 +70,8 @@ public class Test extends TwigType
         String shortDesc = doc.getShortDescription() != null ? doc
                 .getShortDescription() : "";
 
-        description = shortDesc + longDesc;
-        return description;
+        this.description = shortDesc + longDesc;
+        return this.description;
 
     }
 
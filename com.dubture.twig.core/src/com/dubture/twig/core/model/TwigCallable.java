@@ -8,8 +8,7 @@
  ******************************************************************************/
 package com.dubture.twig.core.model;
 
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,16 +18,13 @@ import org.eclipse.dltk.internal.core.ModelElement;
 import org.eclipse.php.internal.core.compiler.ast.nodes.FormalParameter;
 import org.eclipse.php.internal.core.compiler.ast.nodes.PHPDocBlock;
 import org.eclipse.php.internal.core.compiler.ast.nodes.Scalar;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 
 @SuppressWarnings("restriction")
 public abstract class TwigCallable extends TwigType
 {
 
     protected PHPDocBlock doc;
-    protected JSONArray filterArguments = new JSONArray();
-    protected Map<String, String> arguments = new HashMap<String, String>();
+    protected Map<String, String> arguments;
     protected IScriptProject _project;
 
     public TwigCallable(ModelElement parent, String name)
@@ -40,6 +36,8 @@ public abstract class TwigCallable extends TwigType
     protected String getDocString()
     {
 
+        String description = getDescription();
+
         if (description != null)
             return description;
 
@@ -51,48 +49,24 @@ public abstract class TwigCallable extends TwigType
         String shortDesc = doc.getShortDescription() != null ? doc
                 .getShortDescription() : "";
 
-        description = longDesc + shortDesc;
-        return description;
+        this.description = longDesc + shortDesc;
+        return this.description;
 
     }
 
-    @SuppressWarnings("rawtypes")
     @Override
-    public void setMetadata(JSONObject data)
+    public void setMetadata(TwigMetadata data)
     {
 
-        phpClass = (String) data.get(PHPCLASS);
-        description = (String) data.get(DOC);
-        filterArguments = (JSONArray) data.get(ARGS);
-        internalFunction = (String) data.get(INTERNAL);
-
-        for (Object o : filterArguments) {
-
-            JSONObject json = (JSONObject) o;
-
-            if (json == null)
-                continue;
-
-            Iterator it = json.keySet().iterator();
-
-            while (it.hasNext()) {
-
-                String param = (String) it.next();
-                String def = (String) json.get(param);
-                arguments.put(param, def);
-
-            }
-
-        }
+        super.setMetadata(data);
+        arguments = null;
 
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    @SuppressWarnings("rawtypes")
     public void addArgs(List arguments)
     {
 
-        JSONArray args = new JSONArray();
-
         for (Object o : arguments) {
 
             FormalParameter param = (FormalParameter) o;
@@ -100,7 +74,6 @@ public abstract class TwigCallable extends TwigType
             if (param == null)
                 continue;
 
-            JSONObject arg = new JSONObject();
             ASTNode init = param.getInitialization();
 
             String defaultValue = init != null
@@ -113,19 +86,21 @@ public abstract class TwigCallable extends TwigType
 
             }
 
-            this.arguments.put(param.getName(), defaultValue);
-            arg.put(param.getName(), defaultValue);
-            args.add(arg);
+            getArguments().put(param.getName(), defaultValue);
 
         }
 
-        filterArguments = args;
-
     }
 
     public Map<String, String> getArguments()
     {
 
+        if (arguments == null) {
+            arguments = metadata != null
+                    ? metadata.getArguments()
+                    : new LinkedHashMap<String, String>();
+        }
+
         return arguments;
 
     }
@@ -142,18 +117,12 @@ public abstract class TwigCallable extends TwigType
         return _project;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public String getMetadata()
     {
 
-        JSONObject data = new JSONObject();
-        data.put(PHPCLASS, phpClass);
-        data.put(DOC, getDocString());
-        data.put(ARGS, filterArguments);
-        data.put(INTERNAL, internalFunction);
-
-        return data.toString();
+        return TwigMetadata.encode(getPhpClass(), getInternalFunction(),
+                getDocString(), false, getArguments());
     }
 
     public void addDoc(PHPDocBlock doc)
@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.dubture.twig.core.log.Logger;
+
+/**
+ *
+ * Compact encoding of the metadata stored in the index for filters,
+ * functions, tests and tags.
+ *
+ * The encoded form is a single string of delimited fields:
+ *
+ * <pre>
+ * MAGIC VERSION | phpClass | internal | flags | doc | macro | arg1 | default1 | ...
+ * </pre>
+ *
+ * Version 1 had no macro field, the macro of an import alias was stored as
+ * the internal function. It is still decoded as is.
+ *
+ * Decoding only records the field boundaries, the values are cut out of the
+ * encoded string when they are requested.
+ *
+ * Metadata written by older versions of the plugin is JSON. It is still
+ * understood, but {@link #needsReindex(String)} reports it so the module can
+ * be indexed again.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public final class TwigMetadata
+{
+
+    public static final char MAGIC = '\u0001';
+    public static final char VERSION = '2';
+    private static final char VERSION_1 = '1';
+
+    private static final char SEPARATOR = '\u001f';
+
+    private static final int PHPCLASS = 0;
+    private static final int INTERNAL = 1;
+    private static final int FLAGS = 2;
+    private static final int DOC = 3;
+    private static final int MACRO = 4;
+    private static final int FIRST_ARGUMENT = 5;
+
+    private static final int FLAG_OPEN_CLOSE = 1;
+
+    private static final TwigMetadata EMPTY = new TwigMetadata(encode(null, null, null, false, null));
+
+    private final String data;
+
+    /**
+     * End offsets of the fields inside {@link #data}, computed on first
+     * access.
+     */
+    private int[] ends;
+
+    private TwigMetadata(String data)
+    {
+        this.data = data;
+    }
+
+    /**
+     * Decode metadata read from the index.
+     *
+     * @param data
+     *            encoded or legacy JSON metadata, may be null
+     * @return never null
+     */
+    public static TwigMetadata decode(String data)
+    {
+        if (data == null || data.length() == 0) {
+            return EMPTY;
+        }
+
+        if (isCurrent(data)) {
+            return new TwigMetadata(data);
+        }
+
+        if (data.charAt(0) == '{') {
+            return decodeJSON(data);
+        }
+
+        return EMPTY;
+    }
+
+    /**
+     * Check if the metadata has been written in an outdated format and the
+     * declaring source module should be indexed again.
+     *
+     * @param data
+     * @return
+     */
+    public static boolean needsReindex(String data)
+    {
+        return data != null && data.length() > 0 && !isCurrent(data);
+    }
+
+    private static boolean isCurrent(String data)
+    {
+        return data.length() > 2 && data.charAt(0) == MAGIC
+                && (data.charAt(1) == VERSION || data.charAt(1) == VERSION_1);
+    }
+
+    private boolean isVersion1()
+    {
+        return data.charAt(1) == VERSION_1;
+    }
+
+    /**
+     * Encode the metadata of a twig symbol.
+     *
+     * @param phpClass
+     * @param internal
+     * @param doc
+     * @param openClose
+     * @param arguments
+     *            argument names mapped to their default value, may be null
+     * @return
+     */
+    public static String encode(String phpClass, String internal, String doc,
+            boolean openClose, Map<String, String> arguments)
+    {
+        return encode(phpClass, internal, doc, null, openClose, arguments);
+    }
+
+    /**
+     * @param phpClass
+     * @param internal
+     * @param doc
+     * @param macro
+     *            the macro bound by an import alias, null for a whole
+     *            template
+     * @param openClose
+     * @param arguments
+     * @return
+     * @see #encode(String, String, String, boolean, Map)
+     */
+    public static String encode(String phpClass, String internal, String doc,
+            String macro, boolean openClose, Map<String, String> arguments)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(MAGIC).append(VERSION);
+        append(builder, phpClass);
+        append(builder, internal);
+        append(builder, openClose ? String.valueOf(FLAG_OPEN_CLOSE) : "0");
+        append(builder, doc);
+        append(builder, macro);
+
+        if (arguments != null) {
+            for (Map.Entry<String, String> argument : arguments.entrySet()) {
+                append(builder, argument.getKey());
+                append(builder, argument.getValue());
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, String value)
+    {
+        builder.append(SEPARATOR);
+
+        if (value == null) {
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            builder.append(c == SEPARATOR ? ' ' : c);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static TwigMetadata decodeJSON(String json)
+    {
+        try {
+            JSONObject data = (JSONObject) new JSONParser().parse(new StringReader(json));
+
+            if (data == null) {
+                return EMPTY;
+            }
+
+            Map<String, String> arguments = new LinkedHashMap<String, String>();
+            Object args = data.get(TwigType.ARGS);
+
+            if (args instanceof JSONArray) {
+                for (Object o : (JSONArray) args) {
+                    if (!(o instanceof JSONObject)) {
+                        continue;
+                    }
+                    JSONObject arg = (JSONObject) o;
+                    Iterator it = arg.keySet().iterator();
+                    while (it.hasNext()) {
+                        String param = (String) it.next();
+                        arguments.put(param, (String) arg.get(param));
+                    }
+                }
+            }
+
+            Object openClose = data.get(TwigType.IS_OPEN_CLOSE);
+
+            return new TwigMetadata(encode((String) data.get(TwigType.PHPCLASS),
+                    (String) data.get(TwigType.INTERNAL),
+                    (String) data.get(TwigType.DOC),
+                    Boolean.TRUE.equals(openClose), arguments));
+
+        } catch (Exception e) {
+            Logger.logException(e);
+        }
+
+        return EMPTY;
+    }
+
+    public String getPhpClass()
+    {
+        return getField(PHPCLASS);
+    }
+
+    public String getInternalFunction()
+    {
+        return getField(INTERNAL);
+    }
+
+    public String getDoc()
+    {
+        return getField(DOC);
+    }
+
+    /**
+     * @return the macro an import alias is bound to, empty if the alias
+     *         names a whole template
+     */
+    public String getMacro()
+    {
+        return isVersion1() ? getField(INTERNAL) : getField(MACRO);
+    }
+
+    public boolean isOpenClose()
+    {
+        String flags = getField(FLAGS);
+
+        if (flags.length() == 0) {
+            return false;
+        }
+
+        return ((flags.charAt(0) - '0') & FLAG_OPEN_CLOSE) != 0;
+    }
+
+    public int getArgumentCount()
+    {
+        return Math.max(0, (getEnds().length - getFirstArgument()) / 2);
+    }
+
+    public String getArgumentName(int index)
+    {
+        return getField(getFirstArgument() + index * 2);
+    }
+
+    public String getArgumentDefault(int index)
+    {
+        return getField(getFirstArgument() + index * 2 + 1);
+    }
+
+    private int getFirstArgument()
+    {
+        // version 1 has no macro field
+        return isVersion1() ? FIRST_ARGUMENT - 1 : FIRST_ARGUMENT;
+    }
+
+    /**
+     * @return argument names mapped to their default value, in declaration
+     *         order
+     */
+    public Map<String, String> getArguments()
+    {
+        int count = getArgumentCount();
+        Map<String, String> arguments = new LinkedHashMap<String, String>(count * 2);
+
+        for (int i = 0; i < count; i++) {
+            arguments.put(getArgumentName(i), getArgumentDefault(i));
+        }
+
+        return arguments;
+    }
+
+    /**
+     * @return the encoded form of this metadata
+     */
+    public String getData()
+    {
+        return data;
+    }
+
+    private String getField(int index)
+    {
+        int[] fieldEnds = getEnds();
+
+        if (index >= fieldEnds.length) {
+            return "";
+        }
+
+        // the first field starts after MAGIC, VERSION and its separator
+        int start = index == 0 ? 3 : fieldEnds[index - 1] + 1;
+        return data.substring(start, fieldEnds[index]);
+    }
+
+    private int[] getEnds()
+    {
+        if (ends != null) {
+            return ends;
+        }
+
+        int count = 0;
+
+        for (int i = 3; i < data.length(); i++) {
+            if (data.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+
+        int[] result = new int[count + 1];
+        int field = 0;
+
+        for (int i = 3; i < data.length(); i++) {
+            if (data.charAt(i) == SEPARATOR) {
+                result[field++] = i;
+            }
+        }
+
+        result[field] = data.length();
+        return ends = result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return data.replace(SEPARATOR, '|').substring(2);
+    }
+}
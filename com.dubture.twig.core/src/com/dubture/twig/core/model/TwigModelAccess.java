@@ -9,10 +9,18 @@
 package com.dubture.twig.core.model;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ModelException;
@@ -25,15 +33,11 @@ import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchEngine;
 import org.eclipse.dltk.internal.core.ModelElement;
 import org.eclipse.dltk.internal.core.SourceModule;
-import org.eclipse.dltk.internal.core.util.LRUCache;
 import org.eclipse.php.internal.core.PHPLanguageToolkit;
 import org.eclipse.php.internal.core.model.PhpModelAccess;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 
-import com.dubture.twig.core.ExtensionManager;
 import com.dubture.twig.core.log.Logger;
-import com.dubture.twig.core.parser.SourceParserUtil;
+import com.dubture.twig.core.parser.TwigModuleCache;
 import com.dubture.twig.core.parser.ast.node.BlockStatement;
 import com.dubture.twig.core.parser.ast.node.StringLiteral;
 import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
@@ -51,14 +55,22 @@ import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
 public class TwigModelAccess extends PhpModelAccess
 {
     private static TwigModelAccess instance = null;
-    private List<Template> templates = new ArrayList<Template>();
-    private LRUCache tagCache = new LRUCache();
+
+    /**
+     * Templates by the workspace path of their source module. Written by the
+     * builder, read by code assist.
+     */
+    private ConcurrentMap<IPath, Template> templates = new ConcurrentHashMap<IPath, Template>();
+    private Map<IScriptProject, TwigSymbolTable> symbolTables = new HashMap<IScriptProject, TwigSymbolTable>();
+    private Map<IScriptProject, TemplateGraph> templateGraphs = new HashMap<IScriptProject, TemplateGraph>();
+    private InheritedBlockCache blockCache = new InheritedBlockCache();
+    private Map<IScriptProject, TemplateResolutionCache> resolutionCaches = new HashMap<IScriptProject, TemplateResolutionCache>();
 
     private TwigModelAccess()
     {
     }
 
-    public static TwigModelAccess getDefault()
+    public static synchronized TwigModelAccess getDefault()
     {
         if (instance == null) {
             instance = new TwigModelAccess();
@@ -69,23 +81,74 @@ public class TwigModelAccess extends PhpModelAccess
 
     public Template getTemplate(ISourceModule sourceModule)
     {
+        return templates.get(sourceModule.getPath());
+    }
+
+    public void addTemplate(Template twigTemplate)
+    {
+        templates.put(twigTemplate.getSourceModule().getPath(), twigTemplate);
+    }
+
+    /**
+     * Forget the template stored at the given workspace path.
+     * 
+     * @param path
+     */
+    public void removeTemplate(IPath path)
+    {
+        templates.remove(path);
+    }
 
-        for (Template template : templates) {
-            if (template.getSourceModule().equals(sourceModule))
-                return template;
+    /**
+     * Remember the variables of a template which has just been parsed.
+     * 
+     * @param sourceModule
+     * @param variables
+     */
+    public void updateTemplateVariables(ISourceModule sourceModule, TemplateVariables variables)
+    {
+        Template template = templates.get(sourceModule.getPath());
+
+        if (template == null) {
+            template = new Template(sourceModule);
+            Template known = templates.putIfAbsent(sourceModule.getPath(), template);
+
+            if (known != null) {
+                template = known;
+            }
         }
 
-        return null;
+        template.setVariables(variables);
     }
 
-    public void addTemplate(Template twigTemplate)
+    /**
+     * Get the variables defined in a template. The template is only parsed if
+     * its current source has not been parsed before.
+     * 
+     * @param sourceModule
+     * @return
+     */
+    public TemplateVariables getTemplateVariables(ISourceModule sourceModule)
     {
+        try {
+            String source = sourceModule.getSource();
+            Template template = getTemplate(sourceModule);
+            TemplateVariables variables = template != null ? template.getVariables() : null;
 
-        if (templates.contains(twigTemplate))
-            templates.remove(twigTemplate);
+            if (variables != null && variables.isValid(source)) {
+                return variables;
+            }
 
-        templates.add(twigTemplate);
+            variables = TemplateVariables.build(TwigModuleCache.getDefault().get(sourceModule.getHandleIdentifier(), source), source);
+            updateTemplateVariables(sourceModule, variables);
+            return variables;
+        } catch (ModelException e) {
+            Logger.logException(e);
+        } catch (IOException e) {
+            Logger.logException(e);
+        }
 
+        return TemplateVariables.EMPTY;
     }
 
     /**
@@ -98,48 +161,7 @@ public class TwigModelAccess extends PhpModelAccess
      */
     public Function[] getFunctions(IScriptProject scriptProject)
     {
-        IDLTKSearchScope scope = SearchEngine.createSearchScope(scriptProject);
-        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit
-                .getDefault());
-
-        final JSONParser parser = new JSONParser();
-        final List<Function> functions = new ArrayList<Function>();
-
-        engine.search(ITwigModelElement.FUNCTION, null, null, 0, 0, 100,
-                SearchFor.REFERENCES, MatchRule.PREFIX, scope,
-                new ISearchRequestor()
-                {
-
-                    @Override
-                    public void match(int elementType, int flags, int offset,
-                            int length, int nameOffset, int nameLength,
-                            String elementName, String metadata, String doc,
-                            String qualifier, String parent,
-                            ISourceModule sourceModule, boolean isReference)
-                    {
-
-                        try {
-
-                            Function function = new Function((ModelElement) sourceModule, elementName);
-                            if (metadata != null) {
-                                JSONObject mdata = (JSONObject) parser
-                                        .parse(new StringReader(metadata));
-
-                                if (mdata != null && mdata.size() > 0) {
-                                    function.setPhpClass((String) mdata
-                                            .get(TwigType.PHPCLASS));
-                                    function.setInternalFunction((String) mdata.get(TwigType.INTERNAL));
-                                }
-                            }
-                            functions.add(function);
-
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }, null);
-
-        return (Function[]) functions.toArray(new Function[functions.size()]);
+        return getSymbolTable(scriptProject).getFunctions();
     }
 
     /**
@@ -152,45 +174,7 @@ public class TwigModelAccess extends PhpModelAccess
      */
     public Filter[] getFilters(IScriptProject scriptProject)
     {
-        IDLTKSearchScope scope = SearchEngine.createSearchScope(scriptProject);
-        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit
-                .getDefault());
-
-        final JSONParser parser = new JSONParser();
-        final List<Filter> filters = new ArrayList<Filter>();
-
-        engine.search(ITwigModelElement.FILTER, null, null, 0, 0, 100,
-                SearchFor.REFERENCES, MatchRule.PREFIX, scope,
-                new ISearchRequestor()
-                {
-
-                    @Override
-                    public void match(int elementType, int flags, int offset,
-                            int length, int nameOffset, int nameLength,
-                            String elementName, String metadata, String doc,
-                            String qualifier, String parent,
-                            ISourceModule sourceModule, boolean isReference)
-                    {
-
-                        try {
-                            Filter filter = new Filter((ModelElement) sourceModule, elementName);
-                            if (metadata != null) {
-                                JSONObject mdata = (JSONObject) parser
-                                        .parse(new StringReader(metadata));
-                                filter.setMetadata(mdata);
-                            }
-
-                            filters.add(filter);
-
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-
-                    }
-                }, null);
-
-        return (Filter[]) filters.toArray(new Filter[filters.size()]);
-
+        return getSymbolTable(scriptProject).getFilters();
     }
 
     /**
@@ -206,7 +190,7 @@ public class TwigModelAccess extends PhpModelAccess
     public boolean isStartTag(IScriptProject scriptProject, String text)
     {
 
-        return isTag(scriptProject, text, ITwigModelElement.START_TAG);
+        return getTagLexicon(scriptProject).isStartTag(text);
     }
 
     /**
@@ -220,7 +204,7 @@ public class TwigModelAccess extends PhpModelAccess
     public boolean isEndTag(IScriptProject scriptProject, String text)
     {
 
-        return isTag(scriptProject, text, ITwigModelElement.END_TAG);
+        return getTagLexicon(scriptProject).isEndTag(text);
     }
 
     /**
@@ -233,305 +217,493 @@ public class TwigModelAccess extends PhpModelAccess
     public boolean hasEndTag(IScriptProject scriptProject, String text)
     {
 
-        IDLTKSearchScope scope = null;
+        return getTagLexicon(scriptProject).hasEndTag(text);
+    }
 
-        int type = ITwigModelElement.START_TAG;
+    /**
+     * Get the {@link TagLexicon} of the {@link IScriptProject}. The lexicon is
+     * immutable, queries against it never lock or hit the index.
+     * 
+     * @param scriptProject
+     * @return
+     */
+    public TagLexicon getTagLexicon(IScriptProject scriptProject)
+    {
+        if (scriptProject == null) {
+            return TagLexicon.EMPTY;
+        }
 
-        if (scriptProject != null)
-            scope = SearchEngine.createSearchScope(scriptProject);
-        else
-            SearchEngine.createWorkspaceScope(PHPLanguageToolkit.getDefault());
+        return getSymbolTable(scriptProject).getLexicon();
+    }
 
-        if (scope == null)
-            return false;
+    public boolean isTwigTag(IScriptProject scriptProject, String nodeName)
+    {
 
-        String cacheKey = scriptProject.getElementName() + text + type;
+        boolean isTag = isStartTag(scriptProject, nodeName);
 
-        if (tagCache.get(cacheKey) != null) {
+        if (isTag == true)
             return true;
-        }
 
-        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit
-                .getDefault());
+        return isEndTag(scriptProject, nodeName);
+    }
 
-        final JSONParser parser = new JSONParser();
+    /**
+     * Drop the symbol tables of all projects, they are read from the index
+     * again on the next access.
+     */
+    public void clearTagCache()
+    {
 
-        final List<String> tags = new ArrayList<String>();
+        synchronized (symbolTables) {
+            for (TwigSymbolTable table : symbolTables.values()) {
+                Logger.debugMSG("dropped " + table.getLexiconStats());
+            }
 
-        engine.search(type, null, text, 0, 0, 1, SearchFor.REFERENCES,
-                MatchRule.EXACT, scope, new ISearchRequestor()
-                {
+            symbolTables.clear();
+        }
 
-                    @Override
-                    public void match(int elementType, int flags, int offset,
-                            int length, int nameOffset, int nameLength,
-                            String elementName, String metadata, String doc,
-                            String qualifier, String parent,
-                            ISourceModule sourceModule, boolean isReference)
-                    {
+    }
 
-                        try {
-                            JSONObject data = (JSONObject) parser
-                                    .parse(new StringReader(metadata));
+    /**
+     * Forget the symbols and template relations of a deleted source module.
+     * 
+     * @param sourceModule
+     */
+    public void sourceModuleRemoved(ISourceModule sourceModule)
+    {
+        List<TwigSymbolTable> tables;
+        List<TemplateGraph> graphs;
 
-                            boolean hasEnd = (Boolean) data
-                                    .get(TwigType.IS_OPEN_CLOSE);
+        synchronized (symbolTables) {
+            tables = new ArrayList<TwigSymbolTable>(symbolTables.values());
+        }
 
-                            if (hasEnd == true)
-                                tags.add(elementName);
+        synchronized (templateGraphs) {
+            graphs = new ArrayList<TemplateGraph>(templateGraphs.values());
+        }
 
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }, null);
+        for (TwigSymbolTable table : tables) {
+            table.remove(sourceModule);
+        }
 
-        if (tags.size() == 1) {
-            String tagName = tags.get(0);
-            cacheKey = scriptProject.getElementName() + tagName;
-            tagCache.put(cacheKey, text);
-            return true;
+        for (TemplateGraph graph : graphs) {
+            graph.remove(sourceModule);
         }
 
-        return false;
+        blockCache.remove(sourceModule);
+    }
+
+    public void clearCache()
+    {
+
+        clearTagCache();
 
     }
 
     /**
      * 
-     * Check if the given tag is valid for the {@link IScriptProject}.
-     * 
+     * Get all start and end tags defined in the {@link IScriptProject}.
      * 
      * @param scriptProject
-     * @param text
-     * @param type
      * @return
      */
-    private boolean isTag(IScriptProject scriptProject, String text, int type)
+    public Tag[] findTags(IScriptProject scriptProject)
     {
+        return getSymbolTable(scriptProject).getTags();
+    }
 
-        IDLTKSearchScope scope = null;
+    public Test[] getTests(IScriptProject scriptProject)
+    {
+        return getSymbolTable(scriptProject).getTests();
+    }
 
-        if (scriptProject != null)
-            scope = SearchEngine.createSearchScope(scriptProject);
-        else
-            scope = SearchEngine.createWorkspaceScope(PHPLanguageToolkit
-                    .getDefault());
+    /**
+     * Stream the filters of the {@link IScriptProject} whose name starts with
+     * the given prefix to the requestor. The query is not capped, it runs
+     * until all matches are delivered or the requestor returns false.
+     * 
+     * @param scriptProject
+     * @param prefix
+     * @param requestor
+     */
+    public void searchFilters(IScriptProject scriptProject, String prefix,
+            ITwigElementRequestor<Filter> requestor)
+    {
+        TwigSymbolTable.search(getFilters(scriptProject), prefix, requestor);
+    }
 
-        if (scope == null)
-            return false;
+    public void searchFunctions(IScriptProject scriptProject, String prefix,
+            ITwigElementRequestor<Function> requestor)
+    {
+        TwigSymbolTable.search(getFunctions(scriptProject), prefix, requestor);
+    }
 
-        String cacheKey = scriptProject.getElementName() + text + type;
+    public void searchTests(IScriptProject scriptProject, String prefix,
+            ITwigElementRequestor<Test> requestor)
+    {
+        TwigSymbolTable.search(getTests(scriptProject), prefix, requestor);
+    }
 
-        if (tagCache.get(cacheKey) != null) {
-            String cached = (String) tagCache.get(cacheKey);
-            return cached == null || cached.length() == 0;
-        }
+    public void searchTags(IScriptProject scriptProject, String prefix,
+            ITwigElementRequestor<Tag> requestor)
+    {
+        TwigSymbolTable.search(findTags(scriptProject), prefix, requestor);
+    }
 
-        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit
-                .getDefault());
-        final List<String> tags = new ArrayList<String>();
+    /**
+     * Get the {@link TwigSymbolTable} of the given {@link IScriptProject}. The
+     * table is created on first access and filled lazily from the index.
+     * 
+     * @param scriptProject
+     * @return
+     */
+    public TwigSymbolTable getSymbolTable(IScriptProject scriptProject)
+    {
+        synchronized (symbolTables) {
+            TwigSymbolTable table = symbolTables.get(scriptProject);
 
-        engine.search(type, null, text, 0, 0, 1, SearchFor.REFERENCES,
-                MatchRule.EXACT, scope, new ISearchRequestor()
-                {
+            if (table == null) {
+                table = new TwigSymbolTable(scriptProject);
+                symbolTables.put(scriptProject, table);
+            }
 
-                    @Override
-                    public void match(int elementType, int flags, int offset,
-                            int length, int nameOffset, int nameLength,
-                            String elementName, String metadata, String doc,
-                            String qualifier, String parent,
-                            ISourceModule sourceModule, boolean isReference)
-                    {
+            return table;
+        }
+    }
 
-                        tags.add(elementName);
+    /**
+     * Called by the indexer after a source module has been visited. Replaces
+     * the symbols of the module in every table which can see it.
+     * 
+     * @param sourceModule
+     * @param symbols
+     */
+    public void updateSymbols(ISourceModule sourceModule, List<TwigSymbolTable.Entry> symbols)
+    {
+        IScriptProject project = sourceModule.getScriptProject();
+        List<TwigSymbolTable> tables;
 
-                    }
-                }, null);
+        synchronized (symbolTables) {
+            tables = new ArrayList<TwigSymbolTable>(symbolTables.values());
+        }
 
-        if (tags.size() == 1) {
-            String tagName = tags.get(0);
-            cacheKey = scriptProject.getElementName() + tagName;
-            tagCache.put(cacheKey, text);
-            return true;
+        for (TwigSymbolTable table : tables) {
+            if (table.getScriptProject().equals(project) || table.contains(sourceModule)) {
+                table.update(sourceModule, symbols);
+            }
         }
+    }
+    
+    /**
+     * Get the {@link TemplateGraph} of the given {@link IScriptProject}. The
+     * graph is created on first access and filled lazily from the index.
+     * 
+     * @param scriptProject
+     * @return
+     */
+    public TemplateGraph getTemplateGraph(IScriptProject scriptProject)
+    {
+        synchronized (templateGraphs) {
+            TemplateGraph graph = templateGraphs.get(scriptProject);
 
-        tagCache.put(cacheKey, "");
-        return false;
+            if (graph == null) {
+                graph = new TemplateGraph(scriptProject);
+                templateGraphs.put(scriptProject, graph);
+            }
 
+            return graph;
+        }
     }
 
-    public boolean isTwigTag(IScriptProject scriptProject, String nodeName)
+    /**
+     * Called by the indexer with the template relations of a visited module.
+     * 
+     * @param sourceModule
+     * @param edges
+     */
+    public void updateTemplateGraph(ISourceModule sourceModule, List<TemplateGraph.Edge> edges)
     {
+        IScriptProject project = sourceModule.getScriptProject();
+        List<TemplateGraph> graphs;
+        boolean hadEdges = false;
 
-        boolean isTag = isStartTag(scriptProject, nodeName);
+        synchronized (templateGraphs) {
+            graphs = new ArrayList<TemplateGraph>(templateGraphs.values());
+        }
 
-        if (isTag == true)
-            return true;
+        for (TemplateGraph graph : graphs) {
+            boolean contained = graph.contains(sourceModule);
+            hadEdges |= contained;
 
-        return isEndTag(scriptProject, nodeName);
+            if (contained || graph.getScriptProject().equals(project)) {
+                graph.update(sourceModule, edges);
+            }
+        }
+
+        // the indexer reports every PHP file, which never had edges
+        if (hadEdges || (edges != null && !edges.isEmpty())) {
+            blockCache.invalidate(sourceModule);
+        }
     }
 
-    public void clearTagCache()
+    /**
+     * Called by the indexer with the block names of a visited module, once
+     * its references have been written to the index.
+     * 
+     * @param sourceModule
+     * @param names
+     */
+    public void updateBlocks(ISourceModule sourceModule, List<String> names)
     {
+        blockCache.setDeclared(sourceModule, (String[]) names.toArray(new String[names.size()]));
+    }
 
-        tagCache.flush();
+    /**
+     * Resolve a logical template name like
+     * <code>AcmeDemoBundle::layout.html.twig</code> using the registered
+     * {@link ITemplateResolver}s. Results are cached per project.
+     * 
+     * @param path
+     * @param project
+     * @return the template or null
+     */
+    public SourceModule resolveTemplate(String path, IScriptProject project)
+    {
+        if (path == null) {
+            return null;
+        }
 
+        return getResolutionCache(project).resolve(path);
     }
 
-    public void clearCache()
+    public TemplateResolutionCache getResolutionCache(IScriptProject scriptProject)
     {
+        synchronized (resolutionCaches) {
+            TemplateResolutionCache cache = resolutionCaches.get(scriptProject);
 
-        clearTagCache();
+            if (cache == null) {
+                cache = new TemplateResolutionCache(scriptProject);
+                resolutionCaches.put(scriptProject, cache);
+            }
 
+            return cache;
+        }
     }
 
     /**
+     * Called when files have been added to, removed from or moved inside the
+     * project. Template names may resolve differently now.
      * 
-     * 
-     * 
+     * @param scriptProject
+     */
+    public void templatesMoved(IScriptProject scriptProject)
+    {
+        TemplateResolutionCache cache;
+
+        synchronized (resolutionCaches) {
+            cache = resolutionCaches.get(scriptProject);
+        }
+
+        if (cache != null) {
+            cache.clear();
+        }
+
+        // inherited blocks depend on the resolved extends chains
+        blockCache.clear();
+    }
+
+    /**
+     * Write the symbols and template relations of the project to its
+     * {@link TwigSymbolSnapshot}.
      * 
      * @param scriptProject
-     * @return
      */
-    public Tag[] findTags(IScriptProject scriptProject)
+    public void saveSnapshot(IScriptProject scriptProject)
     {
+        TwigSymbolTable table;
+        TemplateGraph graph;
 
-        IDLTKSearchScope scope = SearchEngine.createSearchScope(scriptProject);
-        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit
-                .getDefault());
+        synchronized (symbolTables) {
+            table = symbolTables.get(scriptProject);
+        }
 
-        final List<Tag> tags = new ArrayList<Tag>();
-        final JSONParser parser = new JSONParser();
+        synchronized (templateGraphs) {
+            graph = templateGraphs.get(scriptProject);
+        }
 
-        engine.search(ITwigModelElement.START_TAG, null, null, 0, 0, 200,
-                SearchFor.REFERENCES, MatchRule.PREFIX, scope,
-                new ISearchRequestor()
-                {
+        TwigSymbolSnapshot.write(scriptProject, table, graph);
+    }
 
-                    @Override
-                    public void match(int elementType, int flags, int offset,
-                            int length, int nameOffset, int nameLength,
-                            String elementName, String metadata, String doc,
-                            String qualifier, String parent,
-                            ISourceModule sourceModule, boolean isReference)
-                    {
+    /**
+     * Write the snapshots of all projects whose symbols have been loaded.
+     */
+    public void saveSnapshots()
+    {
+        Set<IScriptProject> projects = new HashSet<IScriptProject>();
 
-                        try {
+        synchronized (symbolTables) {
+            projects.addAll(symbolTables.keySet());
+        }
 
-                            Tag tag = new Tag(elementName);
+        synchronized (templateGraphs) {
+            projects.addAll(templateGraphs.keySet());
+        }
 
-                            if (metadata != null) {
+        for (IScriptProject project : projects) {
+            saveSnapshot(project);
+        }
+    }
 
-                                JSONObject data = (JSONObject) parser
-                                        .parse(new StringReader(metadata));
-                                if (data.size() > 0)
-                                    tag.setPhpClass((String) data
-                                            .get(TwigType.PHPCLASS));
+    /**
+     * Drop everything known about a closed or deleted project.
+     * 
+     * @param scriptProject
+     */
+    public void projectRemoved(IScriptProject scriptProject)
+    {
+        TwigSymbolTable table;
+        TemplateResolutionCache cache;
 
-                                if (data.size() > 1)
-                                    tag.setDescription((String) data
-                                            .get(TwigType.DOC));
+        synchronized (symbolTables) {
+            table = symbolTables.remove(scriptProject);
+        }
 
-                            }
-                            tags.add(tag);
+        synchronized (templateGraphs) {
+            templateGraphs.remove(scriptProject);
+        }
 
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
+        synchronized (resolutionCaches) {
+            cache = resolutionCaches.remove(scriptProject);
+        }
 
-                    }
-                }, null);
+        if (table != null) {
+            Logger.debugMSG("dropped " + table.getLexiconStats());
+        }
 
-        engine.search(ITwigModelElement.END_TAG, null, null, 0, 0, 200,
-                SearchFor.REFERENCES, MatchRule.PREFIX, scope,
-                new ISearchRequestor()
-                {
+        if (cache != null) {
+            Logger.debugMSG("dropped " + cache.getStats());
+        }
 
-                    @Override
-                    public void match(int elementType, int flags, int offset,
-                            int length, int nameOffset, int nameLength,
-                            String elementName, String metadata, String doc,
-                            String qualifier, String parent,
-                            ISourceModule sourceModule, boolean isReference)
-                    {
+        blockCache.clear();
+    }
 
-                        try {
+    /**
+     * Get the template the given one extends, using the {@link TemplateGraph}
+     * instead of parsing the source.
+     * 
+     * @param sourceModule
+     * @return the parent template or null
+     */
+    public SourceModule getParentTemplate(ISourceModule sourceModule)
+    {
+        IScriptProject project = sourceModule.getScriptProject();
+        String name = getTemplateGraph(project).getParentName(sourceModule);
 
-                            Tag tag = new Tag(elementName);
+        return resolveTemplate(name, project);
+    }
 
-                            if (metadata != null) {
+    /**
+     * Get the extends chain of a template, starting with its direct parent.
+     * 
+     * @param sourceModule
+     * @return
+     */
+    public List<SourceModule> getParentTemplates(ISourceModule sourceModule)
+    {
+        List<SourceModule> parents = new ArrayList<SourceModule>();
+        Set<String> visited = new HashSet<String>();
+        visited.add(sourceModule.getHandleIdentifier());
 
-                                JSONObject data = (JSONObject) parser
-                                        .parse(new StringReader(metadata));
+        SourceModule parent = getParentTemplate(sourceModule);
 
-                                if (data.size() > 0)
-                                    tag.setPhpClass((String) data
-                                            .get(TwigType.PHPCLASS));
+        while (parent != null && visited.add(parent.getHandleIdentifier())) {
+            parents.add(parent);
+            parent = getParentTemplate(parent);
+        }
 
-                                if (data.size() > 1)
-                                    tag.setDescription((String) data
-                                            .get(TwigType.DOC));
+        return parents;
+    }
 
-                            }
-                            tags.add(tag);
+    /**
+     * Get the templates which directly extend the given one.
+     * 
+     * @param sourceModule
+     * @return
+     */
+    public List<ISourceModule> getChildTemplates(ISourceModule sourceModule)
+    {
+        IScriptProject project = sourceModule.getScriptProject();
+        TemplateGraph graph = getTemplateGraph(project);
+        List<ISourceModule> children = new ArrayList<ISourceModule>();
 
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
+        for (String name : graph.getTargets(ITwigModelElement.EXTENDS)) {
 
-                    }
-                }, null);
+            if (!sourceModule.equals(resolveTemplate(name, project))) {
+                continue;
+            }
 
-        return (Tag[]) tags.toArray(new Tag[tags.size()]);
+            for (TemplateGraph.Edge edge : graph.getIncoming(name, ITwigModelElement.EXTENDS)) {
+                children.add(edge.getSource());
+            }
+        }
 
+        return children;
     }
 
-    public Test[] getTests(IScriptProject scriptProject)
+    /**
+     * Get the names of all blocks the template inherits along its extends
+     * chain, sorted by name. The result is cached until one of the templates
+     * in the chain is indexed again.
+     * 
+     * The block names of the parents are the ones the indexer collected,
+     * only templates which have not been indexed since startup are looked
+     * up in the index.
+     * 
+     * @param sourceModule
+     * @return
+     */
+    public String[] getInheritedBlocks(ISourceModule sourceModule)
     {
+        String[] names = blockCache.get(sourceModule);
 
-        IDLTKSearchScope scope = SearchEngine.createSearchScope(scriptProject);
-        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit
-                .getDefault());
+        if (names != null) {
+            return names;
+        }
 
-        final JSONParser parser = new JSONParser();
+        long version = blockCache.getVersion();
 
-        final List<Test> tests = new ArrayList<Test>();
+        IScriptProject project = sourceModule.getScriptProject();
+        Set<String> blocks = new TreeSet<String>();
+        List<String> chain = new ArrayList<String>();
+        chain.add(sourceModule.getHandleIdentifier());
 
-        engine.search(ITwigModelElement.TEST, null, null, 0, 0, 100,
-                SearchFor.REFERENCES, MatchRule.PREFIX, scope,
-                new ISearchRequestor()
-                {
+        for (SourceModule parent : getParentTemplates(sourceModule)) {
 
-                    @Override
-                    public void match(int elementType, int flags, int offset,
-                            int length, int nameOffset, int nameLength,
-                            String elementName, String metadata, String doc,
-                            String qualifier, String parent,
-                            ISourceModule sourceModule, boolean isReference)
-                    {
+            chain.add(parent.getHandleIdentifier());
+            String[] declared = blockCache.getDeclared(parent);
 
-                        try {
-                            Test test = new Test(elementName);
-                            if (metadata != null) {
-                                JSONObject mdata = (JSONObject) parser
-                                        .parse(new StringReader(metadata));
-                                test.setMetadata(mdata);
-                            }
+            if (declared != null) {
+                Collections.addAll(blocks, declared);
+                continue;
+            }
 
-                            tests.add(test);
+            List<BlockName> parentBlocks = findBlocks(parent, project);
 
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
+            if (parentBlocks == null) {
+                continue;
+            }
 
-                    }
-                }, null);
+            for (BlockName block : parentBlocks) {
+                blocks.add(block.getElementName());
+            }
+        }
 
-        return (Test[]) tests.toArray(new Test[tests.size()]);
+        names = (String[]) blocks.toArray(new String[blocks.size()]);
+        blockCache.put(sourceModule, names, chain, version);
 
+        return names;
     }
-    
+
     public String getParentPath(TwigModuleDeclaration child, IScriptProject project)
     {
         BlockStatement statement = child.getExtends();
@@ -553,25 +725,16 @@ public class TwigModelAccess extends PhpModelAccess
     public TwigModuleDeclaration getParent(TwigModuleDeclaration child, IScriptProject project)
     {
         TwigModuleDeclaration parent = null;
-        String path = getParentPath(child, project);
+        SourceModule module = resolveTemplate(getParentPath(child, project), project);
         
-        for (ITemplateResolver resolver : ExtensionManager.getInstance().getTemplateProviders()) {
-            
-            SourceModule module = resolver.revolePath(path, project);
+        if (module != null) {
             
-            if (module != null) {
-                
-                try {
-                    parent = (TwigModuleDeclaration) SourceParserUtil.parseSourceModule(module);
-                } catch (ModelException e) {
-                    Logger.logException(e);
-                } catch (IOException e) {
-                    Logger.logException(e);
-                }
-                
-                if (parent != null) {
-                   return parent;
-                }
+            try {
+                parent = (TwigModuleDeclaration) TwigModuleCache.getDefault().get(module);
+            } catch (ModelException e) {
+                Logger.logException(e);
+            } catch (IOException e) {
+                Logger.logException(e);
             }
         }
         
@@ -607,7 +770,201 @@ public class TwigModelAccess extends PhpModelAccess
             return null;
         }
         
-        engine.search(ITwigModelElement.BLOCK, null, null, 0, 0, 200, SearchFor.REFERENCES, null, scope, requestor, null);
+        engine.search(ITwigModelElement.BLOCK, null, null, 0, 0, 0, SearchFor.REFERENCES, null, scope, requestor, null);
         return blocks;
     }
+
+    /**
+     * Find the macros declared in a template.
+     * 
+     * @param template
+     * @return
+     */
+    public Macro[] findMacros(final ISourceModule template)
+    {
+        IDLTKSearchScope scope = SearchEngine.createSearchScope(template);
+        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit.getDefault());
+        final List<Macro> macros = new ArrayList<Macro>();
+
+        if (engine == null || scope == null || scope.getLanguageToolkit() == null) {
+            return new Macro[0];
+        }
+
+        ISearchRequestor requestor = new ISearchRequestor()
+        {
+            @Override
+            public void match(int elementType, int flags, int offset, int length,
+                    int nameOffset, int nameLength, String elementName,
+                    String metadata, String doc, String qualifier, String parent,
+                    ISourceModule sourceModule, boolean isReference)
+            {
+                Macro macro = new Macro((ModelElement) template, elementName, offset, length);
+                macro.setMetadata(TwigMetadata.decode(metadata));
+                macros.add(macro);
+            }
+        };
+
+        engine.search(ITwigModelElement.MACRO, null, null, 0, 0, 0, SearchFor.REFERENCES, null, scope, requestor, null);
+        return macros.toArray(new Macro[macros.size()]);
+    }
+
+    /**
+     * Find the names a template binds to imported macros.
+     * 
+     * @param template
+     * @return
+     */
+    public List<MacroImport> findMacroImports(ISourceModule template)
+    {
+        IDLTKSearchScope scope = SearchEngine.createSearchScope(template);
+        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit.getDefault());
+        final List<MacroImport> imports = new ArrayList<MacroImport>();
+
+        if (engine == null || scope == null || scope.getLanguageToolkit() == null) {
+            return imports;
+        }
+
+        ISearchRequestor requestor = new ISearchRequestor()
+        {
+            @Override
+            public void match(int elementType, int flags, int offset, int length,
+                    int nameOffset, int nameLength, String elementName,
+                    String metadata, String doc, String qualifier, String parent,
+                    ISourceModule sourceModule, boolean isReference)
+            {
+                if (qualifier != null && qualifier.length() > 0) {
+                    String macro = TwigMetadata.decode(metadata).getMacro();
+                    imports.add(new MacroImport(elementName, qualifier,
+                            macro.length() > 0 ? macro : null, offset));
+                }
+            }
+        };
+
+        engine.search(ITwigModelElement.IMPORT_ALIAS, null, null, 0, 0, 0, SearchFor.REFERENCES, null, scope, requestor, null);
+        return imports;
+    }
+
+    /**
+     * Resolve the macros a template imported under the given name, e.g. all
+     * macros of <code>forms.html.twig</code> for
+     * <code>{% import 'forms.html.twig' as forms %}</code>.
+     * 
+     * Only the index is consulted, the imported template is not parsed.
+     * 
+     * @param sourceModule
+     *            the importing template
+     * @param alias
+     * @return
+     */
+    public Macro[] getImportedMacros(ISourceModule sourceModule, String alias)
+    {
+        for (MacroImport macroImport : findMacroImports(sourceModule)) {
+            if (!macroImport.getAlias().equals(alias)) {
+                continue;
+            }
+
+            ISourceModule imported = macroImport.isSelf()
+                    ? sourceModule
+                    : resolveTemplate(macroImport.getTemplate(), sourceModule.getScriptProject());
+
+            if (imported == null) {
+                break;
+            }
+
+            Macro[] macros = findMacros(imported);
+
+            if (macroImport.getMacro() == null) {
+                return macros;
+            }
+
+            for (Macro macro : macros) {
+                if (macro.getElementName().equals(macroImport.getMacro())) {
+                    return new Macro[] {macro};
+                }
+            }
+
+            break;
+        }
+
+        return new Macro[0];
+    }
+
+    /**
+     * Find where a filter, function, test or tag is used in the templates of
+     * a project. Only the index is consulted, no template is parsed.
+     * 
+     * @param scriptProject
+     * @param kind
+     *            one of the usage kinds of {@link ITwigModelElement}, e.g.
+     *            {@link ITwigModelElement#FILTER_USAGE}
+     * @param name
+     *            the used name, or null for all usages of the kind
+     * @return
+     */
+    public List<TwigUsage> findUsages(IScriptProject scriptProject, final int kind, String name)
+    {
+        IDLTKSearchScope scope = SearchEngine.createSearchScope(scriptProject);
+        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit.getDefault());
+        final List<TwigUsage> usages = new ArrayList<TwigUsage>();
+
+        if (engine == null || scope == null || scope.getLanguageToolkit() == null) {
+            return usages;
+        }
+
+        ISearchRequestor requestor = new ISearchRequestor()
+        {
+            @Override
+            public void match(int elementType, int flags, int offset, int length,
+                    int nameOffset, int nameLength, String elementName,
+                    String metadata, String doc, String qualifier, String parent,
+                    ISourceModule sourceModule, boolean isReference)
+            {
+                usages.add(new TwigUsage(kind, elementName, sourceModule, offset, length));
+            }
+        };
+
+        engine.search(kind, null, name, 0, 0, 0, SearchFor.REFERENCES,
+                name != null ? MatchRule.EXACT : MatchRule.PREFIX, scope, requestor, null);
+        return usages;
+    }
+
+    /**
+     * Find the filters, functions or tests of a project which no template of
+     * the project uses.
+     * 
+     * @param scriptProject
+     * @param kind
+     *            {@link ITwigModelElement#FILTER},
+     *            {@link ITwigModelElement#FUNCTION} or
+     *            {@link ITwigModelElement#TEST}
+     * @return the unused names, sorted
+     */
+    public Set<String> findUnusedNames(IScriptProject scriptProject, int kind)
+    {
+        int usageKind;
+
+        switch (kind) {
+            case ITwigModelElement.FILTER :
+                usageKind = ITwigModelElement.FILTER_USAGE;
+                break;
+            case ITwigModelElement.FUNCTION :
+                usageKind = ITwigModelElement.FUNCTION_USAGE;
+                break;
+            case ITwigModelElement.TEST :
+                usageKind = ITwigModelElement.TEST_USAGE;
+                break;
+            default :
+                throw new IllegalArgumentException("not a callable kind: " + kind);
+        }
+
+        // only what the project declares, the bundled core extension is
+        // not the project's to clean up
+        Set<String> unused = new TreeSet<String>(getSymbolTable(scriptProject).getDeclaredNames(kind));
+
+        for (TwigUsage usage : findUsages(scriptProject, usageKind, null)) {
+            unused.remove(usage.getName());
+        }
+
+        return unused;
+    }
 }
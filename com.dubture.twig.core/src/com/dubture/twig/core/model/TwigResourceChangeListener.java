@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.php.internal.core.documentModel.provisional.contenttype.ContentTypeIdForPHP;
+
+import com.dubture.twig.core.log.Logger;
+import com.dubture.twig.core.util.TwigModelUtils;
+
+/**
+ *
+ * Keeps the caches of the {@link TwigModelAccess} in sync with the workspace.
+ *
+ * Adding, removing or moving a template flushes the template resolution cache
+ * of its project, removed templates are dropped from the template registry.
+ * Symbols and template relations of deleted PHP files and templates are
+ * dropped, changed files are reported by the indexer. Closing or deleting a
+ * project drops all of its caches, closing writes its symbol snapshot first.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class TwigResourceChangeListener implements IResourceChangeListener
+{
+
+    @Override
+    public void resourceChanged(IResourceChangeEvent event)
+    {
+        if (event.getType() == IResourceChangeEvent.PRE_CLOSE
+                || event.getType() == IResourceChangeEvent.PRE_DELETE) {
+            if (event.getResource() instanceof IProject) {
+                IScriptProject scriptProject = DLTKCore.create((IProject) event.getResource());
+
+                if (event.getType() == IResourceChangeEvent.PRE_CLOSE) {
+                    TwigModelAccess.getDefault().saveSnapshot(scriptProject);
+                } else {
+                    TwigSymbolSnapshot.delete(scriptProject);
+                }
+
+                TwigModelAccess.getDefault().projectRemoved(scriptProject);
+            }
+            return;
+        }
+
+        IResourceDelta delta = event.getDelta();
+
+        if (delta == null) {
+            return;
+        }
+
+        final Set<IProject> moved = new HashSet<IProject>();
+
+        try {
+            delta.accept(new IResourceDeltaVisitor()
+            {
+                @Override
+                public boolean visit(IResourceDelta delta) throws CoreException
+                {
+                    IResource resource = delta.getResource();
+
+                    if (resource.getType() != IResource.FILE) {
+                        return true;
+                    }
+
+                    int kind = delta.getKind();
+                    boolean template = isTemplate(resource);
+
+                    if ((kind == IResourceDelta.ADDED || kind == IResourceDelta.REMOVED)
+                            && template) {
+                        moved.add(resource.getProject());
+
+                        if (kind == IResourceDelta.REMOVED) {
+                            TwigModelAccess.getDefault().removeTemplate(resource.getFullPath());
+                        }
+                    }
+
+                    if (kind == IResourceDelta.REMOVED && (template || isPhp(resource))) {
+                        ISourceModule sourceModule = DLTKCore.createSourceModuleFrom((IFile) resource);
+
+                        if (sourceModule != null) {
+                            TwigModelAccess.getDefault().sourceModuleRemoved(sourceModule);
+                        }
+                    }
+
+                    return false;
+                }
+            });
+        } catch (CoreException e) {
+            Logger.logException(e);
+        }
+
+        for (IProject project : moved) {
+            IScriptProject scriptProject = DLTKCore.create(project);
+            TwigModelAccess.getDefault().templatesMoved(scriptProject);
+        }
+    }
+
+    private boolean isTemplate(IResource resource)
+    {
+        return TwigModelUtils.isTwigTemplate(resource.getName());
+    }
+
+    private boolean isPhp(IResource resource)
+    {
+        return hasContentType(resource, ContentTypeIdForPHP.ContentTypeID_PHP);
+    }
+
+    private boolean hasContentType(IResource resource, String id)
+    {
+        IContentType[] types = Platform.getContentTypeManager().findContentTypesFor(resource.getName());
+
+        for (IContentType type : types) {
+            if (id.equals(type.getId())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
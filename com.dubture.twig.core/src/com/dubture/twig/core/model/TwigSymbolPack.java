@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.dubture.twig.core.TwigCorePlugin;
+import com.dubture.twig.core.log.Logger;
+
+/**
+ *
+ * Precompiled set of Twig symbols shipped with the plugin, e.g. the filters,
+ * functions, tests and tags of the Twig 1.x core.
+ *
+ * The {@link TwigSymbolTable} merges the bundled packs below the symbols of
+ * the project, so completion works before the PHP sources of a fresh checkout
+ * have been indexed. A symbol of the project always hides the packed symbol
+ * of the same kind and name.
+ *
+ * Packs are UTF-8 text files with one symbol per line: kind, name, offset and
+ * the {@link TwigMetadata}, separated by tabs. Start and end tags of the same
+ * token parser share the offset. They are written by
+ * {@link #write(Writer, String, String, List)}, see the generator in the test
+ * fragment.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigSymbolPack
+{
+
+    public static final String HEADER = "twig-symbol-pack";
+    public static final int VERSION = 1;
+
+    /**
+     * The packs bundled with the core plugin, paths relative to the bundle
+     * root. Only packs written by the generator from a pinned Twig release
+     * are bundled, none is yet.
+     */
+    private static final String[] BUNDLED = {};
+
+    private static final String[] KIND_NAMES = {"start_tag", "end_tag",
+            "filter", "function", "test"};
+    private static final int[] KINDS = {ITwigModelElement.START_TAG,
+            ITwigModelElement.END_TAG, ITwigModelElement.FILTER,
+            ITwigModelElement.FUNCTION, ITwigModelElement.TEST};
+
+    private static volatile List<TwigSymbolTable.Entry> bundled;
+
+    private final String name;
+    private final List<TwigSymbolTable.Entry> entries;
+
+    private TwigSymbolPack(String name, List<TwigSymbolTable.Entry> entries)
+    {
+        this.name = name;
+        this.entries = entries;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the symbols of the pack, they have no source module
+     */
+    public List<TwigSymbolTable.Entry> getEntries()
+    {
+        return entries;
+    }
+
+    /**
+     * @return the symbols of all bundled packs, loaded on first access
+     */
+    public static List<TwigSymbolTable.Entry> getBundledEntries()
+    {
+        List<TwigSymbolTable.Entry> result = bundled;
+
+        if (result != null) {
+            return result;
+        }
+
+        synchronized (TwigSymbolPack.class) {
+            if (bundled != null) {
+                return bundled;
+            }
+
+            result = new ArrayList<TwigSymbolTable.Entry>();
+
+            for (String path : BUNDLED) {
+                TwigSymbolPack pack = readBundled(path);
+
+                if (pack != null) {
+                    result.addAll(pack.getEntries());
+                }
+            }
+
+            result = TwigSymbolStore.getDefault().share(null, result);
+            return bundled = Collections.unmodifiableList(result);
+        }
+    }
+
+    private static TwigSymbolPack readBundled(String path)
+    {
+        TwigCorePlugin plugin = TwigCorePlugin.getDefault();
+
+        if (plugin == null) {
+            return null;
+        }
+
+        URL url = plugin.getBundle().getEntry(path);
+
+        if (url == null) {
+            Logger.debugMSG("missing twig symbol pack " + path);
+            return null;
+        }
+
+        InputStream input = null;
+
+        try {
+            input = url.openStream();
+            return read(input);
+        } catch (IOException e) {
+            Logger.logException(e);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param input
+     * @return the pack or null if the input is not a pack of this version
+     * @throws IOException
+     */
+    public static TwigSymbolPack read(InputStream input) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+        String line = reader.readLine();
+
+        while (line != null && line.startsWith("#")) {
+            line = reader.readLine();
+        }
+
+        if (line == null) {
+            return null;
+        }
+
+        String[] header = line.split("\t", 3);
+
+        if (header.length < 3 || !HEADER.equals(header[0])
+                || !String.valueOf(VERSION).equals(header[1])) {
+            return null;
+        }
+
+        Map<String, Integer> kinds = new HashMap<String, Integer>();
+
+        for (int i = 0; i < KINDS.length; i++) {
+            kinds.put(KIND_NAMES[i], Integer.valueOf(KINDS[i]));
+        }
+
+        List<TwigSymbolTable.Entry> entries = new ArrayList<TwigSymbolTable.Entry>();
+
+        while ((line = reader.readLine()) != null) {
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split("\t", 4);
+            Integer kind = fields.length == 4 ? kinds.get(fields[0]) : null;
+
+            if (kind == null) {
+                Logger.debugMSG("skipping invalid symbol pack line: " + line);
+                continue;
+            }
+
+            try {
+                entries.add(new TwigSymbolTable.Entry(kind.intValue(), fields[1],
+                        unescape(fields[3]), null, Integer.parseInt(fields[2]), 0));
+            } catch (NumberFormatException e) {
+                Logger.debugMSG("skipping invalid symbol pack line: " + line);
+            }
+        }
+
+        return new TwigSymbolPack(header[2], entries);
+    }
+
+    /**
+     * Write a pack.
+     *
+     * @param writer
+     * @param name
+     *            human readable name of the pack, e.g. <code>Twig 1.x</code>
+     * @param source
+     *            the sources the pack is generated from, including their
+     *            version, recorded in the header
+     * @param entries
+     * @throws IOException
+     */
+    public static void write(Writer writer, String name, String source, List<TwigSymbolTable.Entry> entries)
+            throws IOException
+    {
+        writer.write("# generated from " + source + ", do not edit\n");
+        writer.write(HEADER + "\t" + VERSION + "\t" + name + "\n");
+
+        for (TwigSymbolTable.Entry entry : entries) {
+            String kind = getKindName(entry.getKind());
+
+            if (kind == null) {
+                continue;
+            }
+
+            writer.write(kind + "\t" + entry.getName() + "\t" + entry.getOffset()
+                    + "\t" + escape(entry.getMetadata()) + "\n");
+        }
+
+        writer.flush();
+    }
+
+    private static String getKindName(int kind)
+    {
+        for (int i = 0; i < KINDS.length; i++) {
+            if (KINDS[i] == kind) {
+                return KIND_NAMES[i];
+            }
+        }
+
+        return null;
+    }
+
+    private static String escape(String value)
+    {
+        if (value == null) {
+            return "";
+        }
+
+        StringBuilder builder = new StringBuilder(value.length() + 8);
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '\\') {
+                builder.append("\\\\");
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", Integer.valueOf(c)));
+            } else {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static String unescape(String value)
+    {
+        if (value.indexOf('\\') == -1) {
+            return value;
+        }
+
+        StringBuilder builder = new StringBuilder(value.length());
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c != '\\' || i + 1 == value.length()) {
+                builder.append(c);
+            } else if (value.charAt(i + 1) == 'u' && i + 5 < value.length()) {
+                builder.append((char) Integer.parseInt(value.substring(i + 2, i + 6), 16));
+                i += 5;
+            } else {
+                builder.append(value.charAt(++i));
+            }
+        }
+
+        return builder.toString();
+    }
+}
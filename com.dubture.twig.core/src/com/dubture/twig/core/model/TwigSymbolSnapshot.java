@@ -0,0 +1,527 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.internal.core.index2.ProjectIndexerManager;
+import org.eclipse.php.internal.core.PHPLanguageToolkit;
+
+import com.dubture.twig.core.TwigCorePlugin;
+import com.dubture.twig.core.log.Logger;
+
+/**
+ *
+ * Snapshot of the {@link TwigSymbolTable} and the {@link TemplateGraph} of one
+ * project, stored in the state location of the plugin so a restarted
+ * workspace does not have to query the DLTK index before the first
+ * completion.
+ *
+ * Every source module is written with the modification stamp of its
+ * resource, modules outside the workspace (e.g. vendor folders on the include
+ * path) with the last modification time of their file. Modules whose stamp
+ * changed in the meantime, or could not be determined, are left out when the
+ * snapshot is read and scheduled for indexing again.
+ *
+ * The file is read once per session: the symbol table and the template graph
+ * each take their part through {@link #takeEntries(IScriptProject)} and
+ * {@link #takeEdges(IScriptProject)}. It is deleted right after reading, so a
+ * session which ends without writing a new snapshot starts from the index
+ * next time instead of from outdated symbols.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class TwigSymbolSnapshot
+{
+
+    private static final int MAGIC = 0x54574753;
+    private static final int VERSION = 1;
+    private static final String SNAPSHOT_DIR = "symbols";
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Snapshots read in this session by project name, until both parts have
+     * been taken.
+     */
+    private static final Map<String, TwigSymbolSnapshot> opened = new HashMap<String, TwigSymbolSnapshot>();
+
+    private final Map<String, List<TwigSymbolTable.Entry>> entries;
+    private final Map<String, List<TemplateGraph.Edge>> edges;
+    private final Set<ISourceModule> stale;
+
+    private boolean entriesTaken = false;
+    private boolean edgesTaken = false;
+
+    private TwigSymbolSnapshot(Map<String, List<TwigSymbolTable.Entry>> entries,
+            Map<String, List<TemplateGraph.Edge>> edges, Set<ISourceModule> stale)
+    {
+        this.entries = entries;
+        this.edges = edges;
+        this.stale = stale;
+    }
+
+    /**
+     * @return the symbols by module handle, or null if the snapshot did not
+     *         contain the symbol table
+     */
+    public Map<String, List<TwigSymbolTable.Entry>> getEntries()
+    {
+        return entries;
+    }
+
+    /**
+     * @return the edges by module handle, or null if the snapshot did not
+     *         contain the template graph
+     */
+    public Map<String, List<TemplateGraph.Edge>> getEdges()
+    {
+        return edges;
+    }
+
+    /**
+     * @return the source modules which changed since the snapshot was written
+     */
+    public Set<ISourceModule> getStale()
+    {
+        return stale;
+    }
+
+    /**
+     * Take the symbol table part of the project's snapshot, read the snapshot
+     * if this is the first part taken.
+     *
+     * @param project
+     * @return the symbols by module handle, or null if there is no snapshot
+     *         or the part has already been taken
+     */
+    public static Map<String, List<TwigSymbolTable.Entry>> takeEntries(IScriptProject project)
+    {
+        synchronized (opened) {
+            TwigSymbolSnapshot snapshot = open(project);
+
+            if (snapshot == null || snapshot.entriesTaken) {
+                return null;
+            }
+
+            snapshot.entriesTaken = true;
+            close(project, snapshot);
+
+            return snapshot.entries;
+        }
+    }
+
+    /**
+     * Take the template graph part of the project's snapshot.
+     *
+     * @param project
+     * @return the edges by module handle, or null if there is no snapshot or
+     *         the part has already been taken
+     * @see #takeEntries(IScriptProject)
+     */
+    public static Map<String, List<TemplateGraph.Edge>> takeEdges(IScriptProject project)
+    {
+        synchronized (opened) {
+            TwigSymbolSnapshot snapshot = open(project);
+
+            if (snapshot == null || snapshot.edgesTaken) {
+                return null;
+            }
+
+            snapshot.edgesTaken = true;
+            close(project, snapshot);
+
+            return snapshot.edges;
+        }
+    }
+
+    private static TwigSymbolSnapshot open(IScriptProject project)
+    {
+        String key = project.getElementName();
+        TwigSymbolSnapshot snapshot = opened.get(key);
+
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        snapshot = read(project);
+
+        if (snapshot == null) {
+            return null;
+        }
+
+        deleteFile(project);
+        opened.put(key, snapshot);
+
+        // their symbols and edges reach the table and the graph as updates
+        for (ISourceModule sourceModule : snapshot.getStale()) {
+            Logger.debugMSG("reindexing changed twig symbols in " + sourceModule.getElementName());
+            ProjectIndexerManager.indexSourceModule(sourceModule, PHPLanguageToolkit.getDefault());
+        }
+
+        return snapshot;
+    }
+
+    private static void close(IScriptProject project, TwigSymbolSnapshot snapshot)
+    {
+        if (snapshot.entriesTaken && snapshot.edgesTaken) {
+            opened.remove(project.getElementName());
+        }
+    }
+
+    /**
+     * Forget the parts of the project's snapshot which have not been taken.
+     *
+     * @param project
+     */
+    private static void discard(IScriptProject project)
+    {
+        synchronized (opened) {
+            opened.remove(project.getElementName());
+        }
+    }
+
+    public static File getFile(IScriptProject project)
+    {
+        IPath location = TwigCorePlugin.getDefault().getStateLocation().append(SNAPSHOT_DIR);
+        return location.append(project.getElementName() + ".snapshot").toFile();
+    }
+
+    /**
+     * Read the snapshot of the given project. The file is copied to the heap
+     * and closed before it is decoded, so it is never locked afterwards.
+     *
+     * @param project
+     * @return the snapshot or null if there is none or it cannot be read
+     */
+    public static TwigSymbolSnapshot read(IScriptProject project)
+    {
+        File file = getFile(project);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        FileInputStream input = null;
+
+        try {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    break;
+                }
+            }
+
+            input.close();
+            input = null;
+            buffer.flip();
+
+            return read(buffer);
+        } catch (BufferUnderflowException e) {
+            Logger.debugMSG("discarding truncated twig snapshot " + file);
+        } catch (IOException e) {
+            Logger.logException(e);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static TwigSymbolSnapshot read(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+
+        boolean hasEntries = buffer.get() != 0;
+        boolean hasEdges = buffer.get() != 0;
+
+        Map<String, List<TwigSymbolTable.Entry>> entries = hasEntries
+                ? new LinkedHashMap<String, List<TwigSymbolTable.Entry>>()
+                : null;
+        Map<String, List<TemplateGraph.Edge>> edges = hasEdges
+                ? new LinkedHashMap<String, List<TemplateGraph.Edge>>()
+                : null;
+        Set<ISourceModule> stale = new LinkedHashSet<ISourceModule>();
+
+        int modules = buffer.getInt();
+
+        for (int i = 0; i < modules; i++) {
+            String handle = readString(buffer);
+            long stamp = buffer.getLong();
+            ISourceModule sourceModule = getSourceModule(handle);
+            boolean valid = sourceModule != null && stamp != IResource.NULL_STAMP
+                    && stamp == getStamp(sourceModule);
+
+            if (sourceModule != null && !valid) {
+                stale.add(sourceModule);
+            }
+
+            int entryCount = buffer.getInt();
+            List<TwigSymbolTable.Entry> moduleEntries = new ArrayList<TwigSymbolTable.Entry>(entryCount);
+
+            for (int j = 0; j < entryCount; j++) {
+                int kind = buffer.getInt();
+                String name = readString(buffer);
+                String metadata = readString(buffer);
+                int offset = buffer.getInt();
+                int length = buffer.getInt();
+
+                moduleEntries.add(new TwigSymbolTable.Entry(kind, name, metadata, sourceModule, offset, length));
+            }
+
+            int edgeCount = buffer.getInt();
+            List<TemplateGraph.Edge> moduleEdges = new ArrayList<TemplateGraph.Edge>(edgeCount);
+
+            for (int j = 0; j < edgeCount; j++) {
+                int kind = buffer.getInt();
+                String target = readString(buffer);
+                int offset = buffer.getInt();
+                int length = buffer.getInt();
+
+                moduleEdges.add(new TemplateGraph.Edge(kind, sourceModule, target, offset, length));
+            }
+
+            if (!valid) {
+                continue;
+            }
+
+            if (entries != null && !moduleEntries.isEmpty()) {
+                entries.put(handle, moduleEntries);
+            }
+
+            if (edges != null && !moduleEdges.isEmpty()) {
+                edges.put(handle, moduleEdges);
+            }
+        }
+
+        return new TwigSymbolSnapshot(entries, edges, stale);
+    }
+
+    /**
+     * Write the loaded parts of the given table and graph.
+     *
+     * @param project
+     * @param table
+     *            may be null
+     * @param graph
+     *            may be null
+     */
+    public static void write(IScriptProject project, TwigSymbolTable table, TemplateGraph graph)
+    {
+        Map<String, List<TwigSymbolTable.Entry>> entries = table != null ? table.copyEntries() : null;
+        Map<String, List<TemplateGraph.Edge>> edges = graph != null ? graph.copyEdges() : null;
+
+        // a newer snapshot than the parts not taken yet
+        discard(project);
+
+        if (entries == null && edges == null) {
+            return;
+        }
+
+        Map<String, ISourceModule> modules = new LinkedHashMap<String, ISourceModule>();
+        collectModules(entries, modules);
+        collectEdgeModules(edges, modules);
+
+        File file = getFile(project);
+        file.getParentFile().mkdirs();
+
+        DataOutputStream output = null;
+
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeByte(entries != null ? 1 : 0);
+            output.writeByte(edges != null ? 1 : 0);
+            output.writeInt(modules.size());
+
+            for (Map.Entry<String, ISourceModule> module : modules.entrySet()) {
+                String handle = module.getKey();
+                writeString(output, handle);
+                output.writeLong(getStamp(module.getValue()));
+
+                List<TwigSymbolTable.Entry> moduleEntries = get(entries, handle);
+                output.writeInt(moduleEntries.size());
+
+                for (TwigSymbolTable.Entry entry : moduleEntries) {
+                    output.writeInt(entry.getKind());
+                    writeString(output, entry.getName());
+                    writeString(output, entry.getMetadata());
+                    output.writeInt(entry.getOffset());
+                    output.writeInt(entry.getLength());
+                }
+
+                List<TemplateGraph.Edge> moduleEdges = get(edges, handle);
+                output.writeInt(moduleEdges.size());
+
+                for (TemplateGraph.Edge edge : moduleEdges) {
+                    output.writeInt(edge.getKind());
+                    writeString(output, edge.getTarget());
+                    output.writeInt(edge.getOffset());
+                    output.writeInt(edge.getLength());
+                }
+            }
+        } catch (IOException e) {
+            Logger.logException(e);
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    public static void delete(IScriptProject project)
+    {
+        discard(project);
+        deleteFile(project);
+    }
+
+    private static void deleteFile(IScriptProject project)
+    {
+        File file = getFile(project);
+
+        if (file.exists() && !file.delete()) {
+            Logger.debugMSG("unable to delete twig snapshot " + file);
+        }
+    }
+
+    private static void collectModules(Map<String, List<TwigSymbolTable.Entry>> entries,
+            Map<String, ISourceModule> modules)
+    {
+        if (entries == null) {
+            return;
+        }
+
+        for (Map.Entry<String, List<TwigSymbolTable.Entry>> entry : entries.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                modules.put(entry.getKey(), entry.getValue().get(0).getSourceModule());
+            }
+        }
+    }
+
+    private static void collectEdgeModules(Map<String, List<TemplateGraph.Edge>> edges,
+            Map<String, ISourceModule> modules)
+    {
+        if (edges == null) {
+            return;
+        }
+
+        for (Map.Entry<String, List<TemplateGraph.Edge>> entry : edges.entrySet()) {
+            if (!entry.getValue().isEmpty() && !modules.containsKey(entry.getKey())) {
+                modules.put(entry.getKey(), entry.getValue().get(0).getSource());
+            }
+        }
+    }
+
+    private static <T> List<T> get(Map<String, List<T>> map, String handle)
+    {
+        List<T> list = map != null ? map.get(handle) : null;
+        return list != null ? list : Collections.<T> emptyList();
+    }
+
+    private static ISourceModule getSourceModule(String handle)
+    {
+        IModelElement element = DLTKCore.create(handle);
+
+        if (element instanceof ISourceModule && element.exists()) {
+            return (ISourceModule) element;
+        }
+
+        return null;
+    }
+
+    /**
+     * @param sourceModule
+     * @return the modification stamp of the resource, the last modification
+     *         time of the file for modules outside the workspace, or
+     *         {@link IResource#NULL_STAMP} if neither is known
+     */
+    private static long getStamp(ISourceModule sourceModule)
+    {
+        IResource resource = sourceModule.getResource();
+
+        if (resource != null) {
+            return resource.getModificationStamp();
+        }
+
+        IFileHandle file = EnvironmentPathUtils.getFile(sourceModule);
+
+        if (file == null || !file.exists() || file.lastModified() == 0) {
+            return IResource.NULL_STAMP;
+        }
+
+        return file.lastModified();
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(ENCODING);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException
+    {
+        int length = buffer.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        return new String(bytes, ENCODING);
+    }
+}
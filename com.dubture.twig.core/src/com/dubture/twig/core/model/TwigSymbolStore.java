@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.dltk.core.ISourceModule;
+
+import com.dubture.twig.core.log.Logger;
+
+/**
+ *
+ * Workspace wide store of the symbols extracted from PHP files, shared by the
+ * {@link TwigSymbolTable}s of all projects.
+ *
+ * Projects which vendor the same Twig or Symfony release report identical
+ * symbols for their copies of <code>Twig_Extension_Core</code> and friends.
+ * The symbols of a source module are keyed by a hash of their content, so
+ * every distinct file is held once together with its decoded
+ * {@link TwigMetadata}, no matter how many projects contain it. A set of
+ * symbols is released as soon as no table refers to it anymore.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigSymbolStore
+{
+
+    private static TwigSymbolStore instance;
+
+    private static final Comparator<TwigSymbolTable.Entry> CANONICAL_ORDER = new Comparator<TwigSymbolTable.Entry>()
+    {
+        @Override
+        public int compare(TwigSymbolTable.Entry a, TwigSymbolTable.Entry b)
+        {
+            if (a.getKind() != b.getKind()) {
+                return a.getKind() < b.getKind() ? -1 : 1;
+            }
+
+            if (a.getOffset() != b.getOffset()) {
+                return a.getOffset() < b.getOffset() ? -1 : 1;
+            }
+
+            return a.getName().compareTo(b.getName());
+        }
+    };
+
+    private final ConcurrentMap<String, SymbolSetReference> sets = new ConcurrentHashMap<String, SymbolSetReference>();
+    private final ReferenceQueue<SymbolSet> released = new ReferenceQueue<SymbolSet>();
+
+    public static synchronized TwigSymbolStore getDefault()
+    {
+        if (instance == null) {
+            instance = new TwigSymbolStore();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Bind the given symbols of a source module to the shared symbols with
+     * the same content.
+     *
+     * @param sourceModule
+     * @param entries
+     * @return entries of the source module pointing to shared symbols
+     */
+    public List<TwigSymbolTable.Entry> share(ISourceModule sourceModule, List<TwigSymbolTable.Entry> entries)
+    {
+        expunge();
+
+        TwigSymbolTable.Entry[] sorted = entries.toArray(new TwigSymbolTable.Entry[entries.size()]);
+        Arrays.sort(sorted, CANONICAL_ORDER);
+
+        String key = hash(sorted);
+        SymbolSet set = null;
+
+        while (set == null) {
+            SymbolSetReference reference = sets.get(key);
+
+            if (reference != null) {
+                set = reference.get();
+
+                if (set == null) {
+                    sets.remove(key, reference);
+                }
+
+                continue;
+            }
+
+            SymbolSet created = new SymbolSet(sorted);
+
+            if (sets.putIfAbsent(key, new SymbolSetReference(key, created, released)) == null) {
+                set = created;
+            }
+        }
+
+        List<TwigSymbolTable.Entry> shared = new ArrayList<TwigSymbolTable.Entry>(set.symbols.length);
+
+        for (Symbol symbol : set.symbols) {
+            shared.add(new TwigSymbolTable.Entry(symbol, sourceModule));
+        }
+
+        return shared;
+    }
+
+    /**
+     * @return the number of distinct symbol sets held by the store
+     */
+    public int size()
+    {
+        expunge();
+        return sets.size();
+    }
+
+    private void expunge()
+    {
+        Reference<? extends SymbolSet> reference;
+
+        while ((reference = released.poll()) != null) {
+            SymbolSetReference setReference = (SymbolSetReference) reference;
+            sets.remove(setReference.key, setReference);
+        }
+    }
+
+    private static String hash(TwigSymbolTable.Entry[] entries)
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            for (TwigSymbolTable.Entry entry : entries) {
+                update(digest, entry.getKind());
+                update(digest, entry.getOffset());
+                update(digest, entry.getLength());
+                update(digest, entry.getName());
+                update(digest, entry.getMetadata());
+            }
+
+            byte[] bytes = digest.digest();
+            StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+            for (byte b : bytes) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16));
+                builder.append(Character.forDigit(b & 0xf, 16));
+            }
+
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            Logger.logException(e);
+        } catch (UnsupportedEncodingException e) {
+            Logger.logException(e);
+        }
+
+        // never shared, but still correct
+        return String.valueOf(System.identityHashCode(entries)) + '@' + System.nanoTime();
+    }
+
+    private static void update(MessageDigest digest, int value)
+    {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private static void update(MessageDigest digest, String value) throws UnsupportedEncodingException
+    {
+        if (value == null) {
+            update(digest, -1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes("UTF-8");
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    /**
+     * A symbol as extracted from a PHP file, independent of the project the
+     * file belongs to. Immutable except for the lazily decoded metadata.
+     */
+    public static final class Symbol
+    {
+        private final int kind;
+        private final String name;
+        private final String metadata;
+        private final int offset;
+        private final int length;
+
+        /**
+         * Keeps the set alive as long as a table refers to one of its symbols.
+         */
+        @SuppressWarnings("unused")
+        private SymbolSet set;
+
+        private volatile TwigMetadata decoded;
+
+        Symbol(int kind, String name, String metadata, int offset, int length)
+        {
+            this.kind = kind;
+            this.name = name;
+            this.metadata = metadata;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int getKind()
+        {
+            return kind;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public String getMetadata()
+        {
+            return metadata;
+        }
+
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        public int getLength()
+        {
+            return length;
+        }
+
+        /**
+         * @return the decoded metadata, shared by every project
+         */
+        public TwigMetadata getDecodedMetadata()
+        {
+            TwigMetadata result = decoded;
+
+            if (result == null) {
+                decoded = result = TwigMetadata.decode(metadata);
+            }
+
+            return result;
+        }
+    }
+
+    private static final class SymbolSet
+    {
+        private final Symbol[] symbols;
+
+        SymbolSet(TwigSymbolTable.Entry[] entries)
+        {
+            symbols = new Symbol[entries.length];
+
+            for (int i = 0; i < entries.length; i++) {
+                TwigSymbolTable.Entry entry = entries[i];
+                symbols[i] = new Symbol(entry.getKind(), entry.getName(),
+                        entry.getMetadata(), entry.getOffset(), entry.getLength());
+                symbols[i].set = this;
+            }
+        }
+    }
+
+    private static final class SymbolSetReference extends WeakReference<SymbolSet>
+    {
+        private final String key;
+
+        SymbolSetReference(String key, SymbolSet set, ReferenceQueue<SymbolSet> queue)
+        {
+            super(set, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,648 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.SearchFor;
+import org.eclipse.dltk.core.index2.search.ISearchRequestor;
+import org.eclipse.dltk.core.index2.search.ModelAccess;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.internal.core.ModelElement;
+import org.eclipse.dltk.internal.core.index2.ProjectIndexerManager;
+import org.eclipse.php.internal.core.PHPLanguageToolkit;
+
+import com.dubture.twig.core.index.TwigIndexingVisitorExtension;
+import com.dubture.twig.core.log.Logger;
+
+/**
+ *
+ * In-memory table of the Twig symbols (filters, functions, tests and tags)
+ * visible in one {@link IScriptProject}.
+ *
+ * The table is filled from the {@link TwigSymbolSnapshot} of the project or,
+ * if there is none, from the DLTK index on first access and afterwards kept
+ * up to date by the {@link TwigIndexingVisitorExtension}, which reports the
+ * symbols of every source module it indexes. Lookups only read the cached
+ * arrays, they never hit the index. The arrays are sorted by name and prefix
+ * queries are answered by {@link #search(TwigType[], String, ITwigElementRequestor)}.
+ * The symbols themselves are shared with other projects through the
+ * {@link TwigSymbolStore}.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class TwigSymbolTable
+{
+
+    /**
+     * Orders the cached views case insensitive by element name, so prefix
+     * queries can start with a binary search.
+     */
+    private static final Comparator<TwigType> NAME_ORDER = new Comparator<TwigType>()
+    {
+        @Override
+        public int compare(TwigType a, TwigType b)
+        {
+            return String.CASE_INSENSITIVE_ORDER.compare(a.getElementName(), b.getElementName());
+        }
+    };
+
+    private static final int[] KINDS = {ITwigModelElement.FILTER,
+            ITwigModelElement.FUNCTION, ITwigModelElement.TEST,
+            ITwigModelElement.START_TAG, ITwigModelElement.END_TAG};
+
+    private final IScriptProject project;
+
+    /**
+     * Symbols grouped by the handle identifier of the source module which
+     * declares them.
+     */
+    private final Map<String, List<Entry>> entries = new LinkedHashMap<String, List<Entry>>();
+
+    /**
+     * Updates which arrived before the table was loaded, an empty list
+     * removes the symbols of the module.
+     */
+    private final Map<String, List<Entry>> pending = new LinkedHashMap<String, List<Entry>>();
+
+    private volatile boolean loaded = false;
+
+    private volatile Filter[] filters;
+    private volatile Function[] functions;
+    private volatile Test[] tests;
+    private volatile Tag[] tags;
+    private volatile TagLexicon lexicon;
+
+    private final CacheStats lexiconStats;
+
+    public TwigSymbolTable(IScriptProject project)
+    {
+        this.project = project;
+        this.lexiconStats = new CacheStats("tag lexicon (" + project.getElementName() + ")");
+    }
+
+    public IScriptProject getScriptProject()
+    {
+        return project;
+    }
+
+    public Filter[] getFilters()
+    {
+        Filter[] result = filters;
+
+        if (result == null) {
+            result = buildFilters();
+        }
+
+        return result;
+    }
+
+    public Function[] getFunctions()
+    {
+        Function[] result = functions;
+
+        if (result == null) {
+            result = buildFunctions();
+        }
+
+        return result;
+    }
+
+    public Test[] getTests()
+    {
+        Test[] result = tests;
+
+        if (result == null) {
+            result = buildTests();
+        }
+
+        return result;
+    }
+
+    public Tag[] getTags()
+    {
+        Tag[] result = tags;
+
+        if (result == null) {
+            result = buildTags();
+        }
+
+        return result;
+    }
+
+    /**
+     * The lexicon is replaced as a whole when tags change, readers never
+     * block once it has been built.
+     * 
+     * @return the {@link TagLexicon} of the project
+     */
+    public TagLexicon getLexicon()
+    {
+        TagLexicon result = lexicon;
+
+        if (result != null) {
+            lexiconStats.hit();
+            return result;
+        }
+
+        return buildLexicon();
+    }
+
+    public CacheStats getLexiconStats()
+    {
+        return lexiconStats;
+    }
+
+    /**
+     * Push the elements whose name starts with the given prefix (ignoring
+     * case) to the requestor, in name order, until it asks to stop.
+     * 
+     * @param sorted
+     *            one of the views of this table
+     * @param prefix
+     *            may be null or empty to match every element
+     * @param requestor
+     */
+    public static <T extends TwigType> void search(T[] sorted, String prefix,
+            ITwigElementRequestor<T> requestor)
+    {
+        if (prefix == null) {
+            prefix = "";
+        }
+
+        int low = 0;
+        int high = sorted.length;
+
+        // first element which does not sort before the prefix
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(sorted[mid].getElementName(), prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int i = low; i < sorted.length; i++) {
+            String name = sorted[i].getElementName();
+
+            if (!name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return;
+            }
+
+            if (!requestor.accept(sorted[i])) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replace the symbols declared by the given source module.
+     *
+     * Called by the indexer once a module has been visited. Updates which
+     * arrive before the table has been loaded are kept and applied on top of
+     * the snapshot or the index, which may not contain them yet.
+     *
+     * @param sourceModule
+     * @param symbols
+     */
+    public synchronized void update(ISourceModule sourceModule, List<Entry> symbols)
+    {
+        String key = sourceModule.getHandleIdentifier();
+
+        if (!loaded) {
+            pending.put(key, symbols != null ? new ArrayList<Entry>(symbols) : new ArrayList<Entry>());
+            return;
+        }
+
+        List<Entry> previous;
+
+        if (symbols == null || symbols.isEmpty()) {
+            previous = entries.remove(key);
+
+            if (previous == null) {
+                return;
+            }
+        } else {
+            previous = entries.put(key, TwigSymbolStore.getDefault().share(sourceModule, symbols));
+        }
+
+        invalidate(hasTags(previous) || hasTags(symbols));
+    }
+
+    /**
+     * Check if the given source module contributes symbols to this table.
+     *
+     * @param sourceModule
+     * @return
+     */
+    public synchronized boolean contains(ISourceModule sourceModule)
+    {
+        return entries.containsKey(sourceModule.getHandleIdentifier());
+    }
+
+    /**
+     * @return a copy of the symbols by module handle, or null if the table has
+     *         not been loaded yet
+     */
+    public synchronized Map<String, List<Entry>> copyEntries()
+    {
+        if (!loaded) {
+            return null;
+        }
+
+        Map<String, List<Entry>> copy = new LinkedHashMap<String, List<Entry>>();
+
+        for (Map.Entry<String, List<Entry>> entry : entries.entrySet()) {
+            copy.put(entry.getKey(), new ArrayList<Entry>(entry.getValue()));
+        }
+
+        return copy;
+    }
+
+    public synchronized void remove(ISourceModule sourceModule)
+    {
+        if (!loaded) {
+            pending.put(sourceModule.getHandleIdentifier(), new ArrayList<Entry>());
+            return;
+        }
+
+        List<Entry> previous = entries.remove(sourceModule.getHandleIdentifier());
+
+        if (previous != null) {
+            invalidate(hasTags(previous));
+        }
+    }
+
+    /**
+     * @param tagsChanged
+     *            whether the tags of the project changed as well
+     */
+    private void invalidate(boolean tagsChanged)
+    {
+        filters = null;
+        functions = null;
+        tests = null;
+
+        if (tagsChanged) {
+            tags = null;
+
+            if (lexicon != null) {
+                lexicon = null;
+                lexiconStats.invalidated();
+                Logger.debugMSG("flushed " + lexiconStats);
+            }
+        }
+    }
+
+    private static boolean hasTags(List<Entry> symbols)
+    {
+        if (symbols == null) {
+            return false;
+        }
+
+        for (Entry entry : symbols) {
+            if (entry.getKind() == ITwigModelElement.START_TAG
+                    || entry.getKind() == ITwigModelElement.END_TAG) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private synchronized Filter[] buildFilters()
+    {
+        if (filters != null) {
+            return filters;
+        }
+
+        List<Filter> result = new ArrayList<Filter>();
+
+        for (Entry entry : getMergedEntries(ITwigModelElement.FILTER)) {
+            Filter filter = new Filter((ModelElement) entry.getSourceModule(), entry.getName());
+            filter.setMetadata(entry.getSymbol().getDecodedMetadata());
+            result.add(filter);
+        }
+
+        Filter[] sorted = (Filter[]) result.toArray(new Filter[result.size()]);
+        Arrays.sort(sorted, NAME_ORDER);
+
+        return filters = sorted;
+    }
+
+    private synchronized Function[] buildFunctions()
+    {
+        if (functions != null) {
+            return functions;
+        }
+
+        List<Function> result = new ArrayList<Function>();
+
+        for (Entry entry : getMergedEntries(ITwigModelElement.FUNCTION)) {
+            Function function = new Function((ModelElement) entry.getSourceModule(), entry.getName());
+            function.setMetadata(entry.getSymbol().getDecodedMetadata());
+            result.add(function);
+        }
+
+        Function[] sorted = (Function[]) result.toArray(new Function[result.size()]);
+        Arrays.sort(sorted, NAME_ORDER);
+
+        return functions = sorted;
+    }
+
+    private synchronized Test[] buildTests()
+    {
+        if (tests != null) {
+            return tests;
+        }
+
+        List<Test> result = new ArrayList<Test>();
+
+        for (Entry entry : getMergedEntries(ITwigModelElement.TEST)) {
+            Test test = new Test(entry.getName());
+            test.setMetadata(entry.getSymbol().getDecodedMetadata());
+            result.add(test);
+        }
+
+        Test[] sorted = (Test[]) result.toArray(new Test[result.size()]);
+        Arrays.sort(sorted, NAME_ORDER);
+
+        return tests = sorted;
+    }
+
+    private synchronized Tag[] buildTags()
+    {
+        if (tags != null) {
+            return tags;
+        }
+
+        List<Tag> result = new ArrayList<Tag>();
+        List<Entry> tagEntries = getMergedEntries(ITwigModelElement.START_TAG);
+        tagEntries.addAll(getMergedEntries(ITwigModelElement.END_TAG));
+
+        for (Entry entry : tagEntries) {
+            Tag tag = new Tag(entry.getName());
+            tag.setMetadata(entry.getSymbol().getDecodedMetadata());
+            result.add(tag);
+        }
+
+        Tag[] sorted = (Tag[]) result.toArray(new Tag[result.size()]);
+        Arrays.sort(sorted, NAME_ORDER);
+
+        return tags = sorted;
+    }
+
+    private synchronized TagLexicon buildLexicon()
+    {
+        if (lexicon != null) {
+            return lexicon;
+        }
+
+        lexiconStats.miss();
+
+        List<Entry> tagEntries = getMergedEntries(ITwigModelElement.START_TAG);
+        tagEntries.addAll(getMergedEntries(ITwigModelElement.END_TAG));
+
+        return lexicon = TagLexicon.build(tagEntries);
+    }
+
+    /**
+     * @param kind
+     * @return the names the project declares itself, without the ones of
+     *         the bundled {@link TwigSymbolPack}s
+     */
+    public synchronized Set<String> getDeclaredNames(int kind)
+    {
+        Set<String> names = new HashSet<String>();
+
+        for (Entry entry : getEntries(kind)) {
+            names.add(entry.getName());
+        }
+
+        return names;
+    }
+
+    /**
+     * @param kind
+     * @return the entries of the project, followed by the symbols of the
+     *         bundled {@link TwigSymbolPack}s the project does not declare
+     *         itself
+     */
+    private synchronized List<Entry> getMergedEntries(int kind)
+    {
+        List<Entry> result = getEntries(kind);
+        Set<String> names = new HashSet<String>();
+
+        for (Entry entry : result) {
+            names.add(entry.getName());
+        }
+
+        for (Entry entry : TwigSymbolPack.getBundledEntries()) {
+            if (entry.getKind() == kind && names.add(entry.getName())) {
+                result.add(entry);
+            }
+        }
+
+        return result;
+    }
+
+    private synchronized List<Entry> getEntries(int kind)
+    {
+        load();
+
+        List<Entry> result = new ArrayList<Entry>();
+
+        for (List<Entry> moduleEntries : entries.values()) {
+            for (Entry entry : moduleEntries) {
+                if (entry.getKind() == kind) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Fill the table from the {@link TwigSymbolSnapshot} of the project or,
+     * if there is none, from the DLTK index. Runs once per table.
+     *
+     * Source modules which changed since the snapshot was written, or whose
+     * entries are still stored in an outdated metadata format, are scheduled
+     * for indexing. The indexer reports their current symbols through
+     * {@link #update(ISourceModule, List)}. Modules added since the snapshot
+     * was written reach the table the same way, when the indexer picks them
+     * up at startup.
+     */
+    private synchronized void load()
+    {
+        if (loaded) {
+            return;
+        }
+
+        Map<String, List<Entry>> snapshot = TwigSymbolSnapshot.takeEntries(project);
+
+        if (snapshot != null) {
+            entries.putAll(snapshot);
+            applyPending();
+            share();
+            loaded = true;
+            return;
+        }
+
+        IDLTKSearchScope scope = SearchEngine.createSearchScope(project);
+        ISearchEngine engine = ModelAccess.getSearchEngine(PHPLanguageToolkit.getDefault());
+        final Map<String, ISourceModule> outdated = new LinkedHashMap<String, ISourceModule>();
+
+        for (final int kind : KINDS) {
+
+            // a limit of 0 returns every match
+            engine.search(kind, null, null, 0, 0, 0, SearchFor.REFERENCES,
+                    MatchRule.PREFIX, scope, new ISearchRequestor()
+                    {
+                        @Override
+                        public void match(int elementType, int flags, int offset,
+                                int length, int nameOffset, int nameLength,
+                                String elementName, String metadata, String doc,
+                                String qualifier, String parent,
+                                ISourceModule sourceModule, boolean isReference)
+                        {
+                            String key = sourceModule.getHandleIdentifier();
+                            List<Entry> moduleEntries = entries.get(key);
+
+                            if (moduleEntries == null) {
+                                moduleEntries = new ArrayList<Entry>();
+                                entries.put(key, moduleEntries);
+                            }
+
+                            moduleEntries.add(new Entry(kind, elementName, metadata, sourceModule, offset, length));
+
+                            if (TwigMetadata.needsReindex(metadata)) {
+                                outdated.put(key, sourceModule);
+                            }
+                        }
+                    }, null);
+        }
+
+        applyPending();
+        share();
+        loaded = true;
+
+        for (ISourceModule sourceModule : outdated.values()) {
+            Logger.debugMSG("reindexing outdated twig metadata in " + sourceModule.getElementName());
+            ProjectIndexerManager.indexSourceModule(sourceModule, PHPLanguageToolkit.getDefault());
+        }
+    }
+
+    private void applyPending()
+    {
+        for (Map.Entry<String, List<Entry>> update : pending.entrySet()) {
+            if (update.getValue().isEmpty()) {
+                entries.remove(update.getKey());
+            } else {
+                entries.put(update.getKey(), update.getValue());
+            }
+        }
+
+        pending.clear();
+    }
+
+    /**
+     * Replace the loaded entries by the ones of the {@link TwigSymbolStore}.
+     */
+    private void share()
+    {
+        TwigSymbolStore store = TwigSymbolStore.getDefault();
+
+        for (Map.Entry<String, List<Entry>> moduleEntries : entries.entrySet()) {
+            List<Entry> loadedEntries = moduleEntries.getValue();
+
+            if (!loadedEntries.isEmpty()) {
+                ISourceModule sourceModule = loadedEntries.get(0).getSourceModule();
+                moduleEntries.setValue(store.share(sourceModule, loadedEntries));
+            }
+        }
+    }
+
+    /**
+     * A single indexed symbol: its kind from {@link ITwigModelElement}, name
+     * and raw index metadata.
+     */
+    public static class Entry
+    {
+        private final TwigSymbolStore.Symbol symbol;
+        private final ISourceModule sourceModule;
+
+        public Entry(int kind, String name, String metadata, ISourceModule sourceModule, int offset, int length)
+        {
+            this(new TwigSymbolStore.Symbol(kind, name, metadata, offset, length), sourceModule);
+        }
+
+        public Entry(TwigSymbolStore.Symbol symbol, ISourceModule sourceModule)
+        {
+            this.symbol = symbol;
+            this.sourceModule = sourceModule;
+        }
+
+        /**
+         * @return the symbol, shared with identical source modules of other
+         *         projects once the entry has been added to a table
+         */
+        public TwigSymbolStore.Symbol getSymbol()
+        {
+            return symbol;
+        }
+
+        public int getKind()
+        {
+            return symbol.getKind();
+        }
+
+        public String getName()
+        {
+            return symbol.getName();
+        }
+
+        public String getMetadata()
+        {
+            return symbol.getMetadata();
+        }
+
+        public ISourceModule getSourceModule()
+        {
+            return sourceModule;
+        }
+
+        public int getOffset()
+        {
+            return symbol.getOffset();
+        }
+
+        public int getLength()
+        {
+            return symbol.getLength();
+        }
+    }
+}
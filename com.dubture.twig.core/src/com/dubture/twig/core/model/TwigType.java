@@ -37,6 +37,12 @@ public abstract class TwigType extends SourceType
     protected String internalFunction;
     protected String description;
 
+    /**
+     * Raw metadata read from the index. The fields above are decoded from it
+     * on first access.
+     */
+    protected TwigMetadata metadata;
+
     public TwigType(ModelElement parent, String name)
     {
         super(parent, name);
@@ -45,6 +51,10 @@ public abstract class TwigType extends SourceType
 
     public String getPhpClass()
     {
+        if (phpClass == null && metadata != null) {
+            phpClass = metadata.getPhpClass();
+        }
+
         return phpClass;
     }
 
@@ -55,6 +65,10 @@ public abstract class TwigType extends SourceType
 
     public String getInternalFunction()
     {
+        if (internalFunction == null && metadata != null) {
+            internalFunction = metadata.getInternalFunction();
+        }
+
         return internalFunction;
     }
 
@@ -88,6 +102,10 @@ public abstract class TwigType extends SourceType
 
     public String getDescription()
     {
+        if (description == null && metadata != null) {
+            description = metadata.getDoc();
+        }
+
         return description;
     }
 
@@ -98,6 +116,29 @@ public abstract class TwigType extends SourceType
 
     public abstract String getMetadata();
 
-    public abstract void setMetadata(JSONObject data);
+    /**
+     * Attach the metadata read from the index. Nothing is decoded until one
+     * of the getters asks for it.
+     * 
+     * @param data
+     */
+    public void setMetadata(TwigMetadata data)
+    {
+        metadata = data;
+        phpClass = null;
+        internalFunction = null;
+        description = null;
+    }
+
+    /**
+     * @param data
+     *            metadata in the JSON format of earlier versions
+     * @deprecated use {@link #setMetadata(TwigMetadata)}
+     */
+    @Deprecated
+    public void setMetadata(JSONObject data)
+    {
+        setMetadata(TwigMetadata.decode(data != null ? data.toJSONString() : null));
+    }
 
 }
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.model;
+
+import org.eclipse.dltk.core.ISourceModule;
+
+/**
+ *
+ * A place in a template where a filter, function, test or tag is used.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigUsage
+{
+
+    private final int kind;
+    private final String name;
+    private final ISourceModule sourceModule;
+    private final int offset;
+    private final int length;
+
+    public TwigUsage(int kind, String name, ISourceModule sourceModule, int offset, int length)
+    {
+        this.kind = kind;
+        this.name = name;
+        this.sourceModule = sourceModule;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return one of the usage kinds of {@link ITwigModelElement}, e.g.
+     *         {@link ITwigModelElement#FILTER_USAGE}
+     */
+    public int getKind()
+    {
+        return kind;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the template using the symbol
+     */
+    public ISourceModule getSourceModule()
+    {
+        return sourceModule;
+    }
+
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " in " + sourceModule.getElementName() + " at " + offset;
+    }
+}
@@ -12,14 +12,19 @@ import java.io.IOException;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.LinkedList;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.statements.Statement;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.internal.core.SourceModule;
 
-import com.dubture.twig.core.parser.ast.CompilerAstLexer;
-import com.dubture.twig.core.parser.ast.TwigAstParser;
+import com.dubture.twig.core.TwigCoreConstants;
+import com.dubture.twig.core.TwigCorePreferences;
+import com.dubture.twig.core.log.Logger;
+import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+import com.dubture.twig.core.parser.error.TwigError;
 
 @SuppressWarnings("restriction")
 public class SourceParserUtil
@@ -27,21 +32,31 @@ public class SourceParserUtil
     public static ModuleDeclaration parseSourceModule(Reader in)
             throws IOException
     {
+        TwigParserContext context = TwigParserContext.acquire();
 
-        CompilerAstLexer lexer = new CompilerAstLexer(in);
-        TwigAstParser parser = new TwigAstParser(lexer);
+        try {
+            if (isDescent()) {
+                return context.parseDescent(in);
+            }
 
+            return parseLR(context, in);
+        } catch (RuntimeException e) {
+            return failed(e);
+        } finally {
+            context.release();
+        }
+    }
+
+    private static ModuleDeclaration parseLR(TwigParserContext context, Reader in)
+    {
         // parser.setFileName(fileName);
         try {
-            parser.parse();
+            return context.parse(in);
         } catch (Exception e) {
-            // TODO: add recovery
-            e.printStackTrace();
-            return new ModuleDeclaration(0);
+            // syntax errors are recovered from by the grammar and recorded on
+            // the module, this is a failure of the scanner
+            return failed(e);
         }
-        
-        return parser.getModuleDeclaration();
-
     }
 
     /**
@@ -53,7 +68,7 @@ public class SourceParserUtil
     public static ModuleDeclaration parseSourceModule(SourceModule module) throws ModelException, IOException
     {
         Assert.isNotNull(module);
-        return parseSourceModule(new StringReader(module.getSource()));
+        return parseSourceModule(module.getSource());
         
     }
 
@@ -65,7 +80,31 @@ public class SourceParserUtil
     public static ModuleDeclaration parseSourceModule(String tokens) throws IOException
     {
         Assert.isNotNull(tokens);
-        return parseSourceModule(new StringReader(tokens));
-        
+        TwigParserContext context = TwigParserContext.acquire();
+
+        try {
+            if (isDescent()) {
+                return context.parseDescent(tokens);
+            }
+
+            return parseLR(context, new StringReader(tokens));
+        } catch (RuntimeException e) {
+            return failed(e);
+        } finally {
+            context.release();
+        }
+    }
+
+    private static boolean isDescent()
+    {
+        return TwigCoreConstants.PARSER_ENGINE_DESCENT.equals(TwigCorePreferences.getParserEngine());
+    }
+
+    private static ModuleDeclaration failed(Exception e)
+    {
+        Logger.logException(e);
+        TwigModuleDeclaration module = new TwigModuleDeclaration(0, new LinkedList<Statement>());
+        module.addError(new TwigError("Unable to parse template: " + e.getMessage(), 0, 0));
+        return module;
     }
 }
@@ -0,0 +1,438 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.parser;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import java_cup.runtime.Symbol;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.dltk.ast.ASTNode;
+import org.eclipse.dltk.ast.ASTVisitor;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.expressions.Expression;
+import org.eclipse.dltk.ast.statements.Statement;
+
+import com.dubture.twig.core.parser.ast.CompilerAstLexer;
+import com.dubture.twig.core.parser.ast.ParserConstants;
+import com.dubture.twig.core.parser.ast.node.BlockName;
+import com.dubture.twig.core.parser.ast.node.BlockStatement;
+import com.dubture.twig.core.parser.ast.node.InLineHtml;
+import com.dubture.twig.core.parser.ast.node.PrintStatement;
+import com.dubture.twig.core.parser.ast.node.StringLiteral;
+import com.dubture.twig.core.parser.ast.node.TwigCallExpression;
+import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+import com.dubture.twig.core.parser.ast.node.Variable;
+import com.dubture.twig.core.parser.error.TwigError;
+
+/**
+ *
+ * Reparses only the part of a template touched by an edit.
+ *
+ * The statements of a template are a flat list and the lexer is back in its
+ * initial state after each closing "}}" or "%}". The edit is reparsed from
+ * the end of the last tag before it, up to the first closing tag after it
+ * which ends a tag of the previous declaration as well. The statements
+ * before the damaged region are reused, the ones after it are copied with
+ * their offsets shifted, so the previous declaration stays untouched and
+ * can still be used by other readers.
+ *
+ * The result is the same as parsing the new source from scratch.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigIncrementalParser
+{
+
+    /**
+     * @param previous
+     *            the declaration parsed from the old source
+     * @param oldSource
+     * @param newSource
+     * @return the declaration of the new source
+     * @throws IOException
+     */
+    public static ModuleDeclaration reparse(ModuleDeclaration previous, String oldSource, String newSource)
+            throws IOException
+    {
+        Assert.isNotNull(oldSource);
+        Assert.isNotNull(newSource);
+
+        int max = Math.min(oldSource.length(), newSource.length());
+        int prefix = 0;
+
+        while (prefix < max && oldSource.charAt(prefix) == newSource.charAt(prefix)) {
+            prefix++;
+        }
+
+        int suffix = 0;
+
+        while (suffix < max - prefix
+                && oldSource.charAt(oldSource.length() - suffix - 1) == newSource.charAt(newSource.length() - suffix - 1)) {
+            suffix++;
+        }
+
+        return reparse(previous, newSource, prefix, oldSource.length() - prefix - suffix,
+                newSource.length() - prefix - suffix);
+    }
+
+    /**
+     * @param previous
+     *            the declaration parsed from the old source
+     * @param newSource
+     *            the source after the edit
+     * @param offset
+     *            where the edit starts
+     * @param removed
+     *            the number of characters replaced by the edit
+     * @param inserted
+     *            the number of characters inserted by the edit
+     * @return the declaration of the new source
+     * @throws IOException
+     */
+    public static ModuleDeclaration reparse(ModuleDeclaration previous, String newSource, int offset, int removed,
+            int inserted) throws IOException
+    {
+        // the old source was empty or did not parse, there is nothing to reuse
+        if (!(previous instanceof TwigModuleDeclaration) || previous.getStatements().isEmpty()) {
+            return SourceParserUtil.parseSourceModule(newSource);
+        }
+
+        List<?> statements = previous.getStatements();
+        int delta = inserted - removed;
+
+        // the region starts after the last tag which ends before the edit.
+        // The text before the edit is the same in both sources.
+        int restart = 0;
+        int first = 0;
+        int quote = firstQuote(newSource, offset);
+
+        for (int i = 0; i < statements.size(); i++) {
+            Object statement = statements.get(i);
+
+            if (!isTag(statement)) {
+                continue;
+            }
+
+            ASTNode tag = (ASTNode) statement;
+
+            if (tag.sourceEnd() >= offset || !isClosed(newSource, tag.sourceEnd())
+                    || (tag.sourceEnd() > quote && hasUnclosedQuote(tag, newSource))) {
+                break;
+            }
+
+            restart = tag.sourceEnd();
+            first = i + 1;
+        }
+
+        // the tags ending behind the edit, by their end offset
+        Map<Integer, Integer> boundaries = new HashMap<Integer, Integer>();
+
+        for (int i = first; i < statements.size(); i++) {
+            Object statement = statements.get(i);
+            int end = ((ASTNode) statement).sourceEnd();
+
+            // the closing delimiter must be behind the edit as well
+            if (isTag(statement) && end - 2 >= offset + removed && isClosed(newSource, end + delta)) {
+                boundaries.put(Integer.valueOf(end), Integer.valueOf(i));
+            }
+        }
+
+        int end = newSource.length();
+        int last = statements.size() - 1;
+
+        if (!boundaries.isEmpty()) {
+            TwigParserContext context = TwigParserContext.acquire();
+
+            try {
+                CompilerAstLexer lexer = context.getLexer(new StringReader(newSource.substring(restart)));
+                Symbol symbol;
+
+                while ((symbol = lexer.next_token()) != null && symbol.sym != ParserConstants.EOF) {
+                    if (symbol.sym != ParserConstants.TWIG_VAR_CLOSE && symbol.sym != ParserConstants.TWIG_STMT_CLOSE) {
+                        continue;
+                    }
+
+                    int position = restart + symbol.right;
+
+                    if (position < offset + inserted) {
+                        continue;
+                    }
+
+                    Integer index = boundaries.get(Integer.valueOf(position - delta));
+
+                    if (index != null) {
+                        end = position;
+                        last = index.intValue();
+                        break;
+                    }
+                }
+            } finally {
+                context.release();
+            }
+        }
+
+        ModuleDeclaration region = SourceParserUtil.parseSourceModule(newSource.substring(restart, end));
+
+        // a region of text without statements did not parse at all
+        if (!(region instanceof TwigModuleDeclaration) || (end > restart && region.getStatements().isEmpty())) {
+            return SourceParserUtil.parseSourceModule(newSource);
+        }
+
+        List<Statement> result = new ArrayList<Statement>(statements.size() + region.getStatements().size());
+
+        for (int i = 0; i < first; i++) {
+            result.add((Statement) statements.get(i));
+        }
+
+        for (Object statement : region.getStatements()) {
+            shift((ASTNode) statement, restart);
+            result.add((Statement) statement);
+        }
+
+        for (int i = last + 1; i < statements.size(); i++) {
+            Statement statement = (Statement) statements.get(i);
+            Statement copy = delta == 0 ? statement : (Statement) copy(statement, delta);
+
+            if (copy == null) {
+                return SourceParserUtil.parseSourceModule(newSource);
+            }
+
+            result.add(copy);
+        }
+
+        // the text behind the region is the same as in the old source, even
+        // if it holds no statements but an unclosed tag
+        boolean tail = end < newSource.length();
+        int moduleEnd;
+
+        if (tail) {
+            moduleEnd = previous.sourceEnd() + delta;
+        } else if (!region.getStatements().isEmpty()) {
+            moduleEnd = region.sourceEnd() + restart;
+        } else {
+            moduleEnd = restart;
+        }
+
+        TwigModuleDeclaration module = new TwigModuleDeclaration(0, result);
+        module.setStart(previous.sourceStart());
+        module.setEnd(moduleEnd);
+
+        // the parser recovers at the end of the broken tag, so the errors
+        // of the reused statements stay valid
+        int resume = tail ? ((ASTNode) statements.get(last)).sourceEnd() : Integer.MAX_VALUE;
+
+        for (TwigError error : ((TwigModuleDeclaration) previous).getErrors()) {
+            if (error.getSourceStart() < restart) {
+                module.addError(error);
+            }
+        }
+
+        for (TwigError error : ((TwigModuleDeclaration) region).getErrors()) {
+            module.addError(error.shift(restart));
+        }
+
+        for (TwigError error : ((TwigModuleDeclaration) previous).getErrors()) {
+            if (error.getSourceStart() >= resume) {
+                module.addError(error.shift(delta));
+            }
+        }
+
+        return module;
+    }
+
+    private static boolean isTag(Object statement)
+    {
+        return statement instanceof PrintStatement || statement instanceof BlockStatement;
+    }
+
+    /**
+     * @param source
+     * @param end
+     * @return true if a closing "}}" or "%}" ends at the offset
+     */
+    private static boolean isClosed(String source, int end)
+    {
+        if (end < 2 || end > source.length()) {
+            return false;
+        }
+
+        return source.charAt(end - 1) == '}' && (source.charAt(end - 2) == '}' || source.charAt(end - 2) == '%');
+    }
+
+    private static int firstQuote(String source, int end)
+    {
+        for (int i = 0; i < end; i++) {
+            char c = source.charAt(i);
+
+            if (c == '\'' || c == '"') {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * The lexer looks for the closing quote of a string up to the end of the
+     * template. A quote inside a tag which is not part of a string literal
+     * has not been closed, and a quote inserted anywhere after it would turn
+     * it into a string, so the tag can be lexed differently after the edit.
+     *
+     * @param tag
+     * @param source
+     * @return
+     */
+    private static boolean hasUnclosedQuote(ASTNode tag, String source)
+    {
+        final List<ASTNode> literals = new ArrayList<ASTNode>();
+
+        try {
+            tag.traverse(new ASTVisitor()
+            {
+                @Override
+                public boolean visitGeneral(ASTNode node) throws Exception
+                {
+                    if (node instanceof StringLiteral) {
+                        literals.add(node);
+                    }
+
+                    return true;
+                }
+            });
+        } catch (Exception e) {
+            return true;
+        }
+
+        int literal = 0;
+
+        for (int i = tag.sourceStart(); i < tag.sourceEnd(); i++) {
+            while (literal < literals.size() && literals.get(literal).sourceEnd() <= i) {
+                literal++;
+            }
+
+            if (literal < literals.size() && literals.get(literal).sourceStart() <= i) {
+                continue;
+            }
+
+            char c = source.charAt(i);
+
+            if (c == '\'' || c == '"') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Move freshly parsed nodes to their position in the template.
+     *
+     * @param node
+     * @param delta
+     */
+    private static void shift(ASTNode node, final int delta)
+    {
+        try {
+            node.traverse(new ASTVisitor()
+            {
+                @Override
+                public boolean visitGeneral(ASTNode node) throws Exception
+                {
+                    // inline html does not carry offsets
+                    if (!(node instanceof InLineHtml)) {
+                        node.setStart(node.sourceStart() + delta);
+                        node.setEnd(node.sourceEnd() + delta);
+                    }
+
+                    return true;
+                }
+            });
+        } catch (Exception e) {
+            // the visitor does not throw
+        }
+    }
+
+    /**
+     * Copy a node of the previous declaration to its new position.
+     *
+     * @param node
+     * @param delta
+     * @return the copy, or null if the node is of an unknown type
+     */
+    private static ASTNode copy(ASTNode node, int delta)
+    {
+        if (node == null) {
+            return null;
+        }
+
+        int start = node.sourceStart() + delta;
+        int end = node.sourceEnd() + delta;
+
+        if (node instanceof InLineHtml) {
+            return node;
+        } else if (node instanceof BlockStatement) {
+            BlockStatement block = (BlockStatement) node;
+            List<Statement> children = copyAll(block.getChilds(), delta);
+            BlockName name = (BlockName) copy(block.getName(), delta);
+
+            return children != null ? new BlockStatement(start, end, name, children) : null;
+        } else if (node instanceof PrintStatement) {
+            List<Expression> expressions = copyAll(((PrintStatement) node).getExpressions(), delta);
+            return expressions != null ? new PrintStatement(start, end, expressions) : null;
+        } else if (node instanceof TwigCallExpression) {
+            TwigCallExpression call = (TwigCallExpression) node;
+            List<Expression> arguments = copyAll(call.getArguments(), delta);
+
+            return arguments != null ? new TwigCallExpression(start, end, call.getName(), arguments) : null;
+        } else if (node instanceof BlockName) {
+            return new BlockName(start, end, ((BlockName) node).getValue());
+        } else if (node instanceof Variable) {
+            return new Variable(start, end, ((Variable) node).getValue());
+        } else if (node instanceof StringLiteral) {
+            // the value without quotes, which is what getValue() returns anyway
+            return new StringLiteral(start, end, ((StringLiteral) node).getValue());
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> copyAll(List<?> nodes, int delta)
+    {
+        List<T> copies = new ArrayList<T>(nodes != null ? nodes.size() : 0);
+
+        if (nodes == null) {
+            return copies;
+        }
+
+        for (Object node : nodes) {
+            if (node == null) {
+                copies.add(null);
+                continue;
+            }
+
+            ASTNode copy = copy((ASTNode) node, delta);
+
+            if (copy == null) {
+                return null;
+            }
+
+            copies.add((T) copy);
+        }
+
+        return copies;
+    }
+}
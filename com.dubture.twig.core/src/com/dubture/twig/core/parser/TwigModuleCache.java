@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.parser;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.compiler.env.IModuleSource;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+
+import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+
+/**
+ *
+ * Caches the parsed {@link ModuleDeclaration} of templates, so a template
+ * which did not change is parsed once, no matter how many editors, builders
+ * and code assist requests ask for it.
+ *
+ * Entries are keyed by the handle of the source module (or by the file name
+ * if there is no model element) and are only returned when the source they
+ * have been parsed from has the same length and hash as the current one.
+ * The least recently used entries are evicted when the cache holds more than
+ * {@link #MAX_ENTRIES} templates or more than {@link #MAX_WEIGHT} characters
+ * of source. When the source of a cached template changed, only the edited
+ * part is reparsed by the {@link TwigIncrementalParser}.
+ *
+ * The cached declarations are shared, callers must not modify them. Their
+ * blocks are built before they enter the cache.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigModuleCache
+{
+
+    public static final int MAX_ENTRIES = 256;
+
+    /**
+     * The summed length of the cached sources, used as an estimate of the
+     * memory taken by their declarations. The sources are kept to reparse
+     * edited templates incrementally.
+     */
+    public static final long MAX_WEIGHT = 4 * 1024 * 1024;
+
+    private static final TwigModuleCache instance = new TwigModuleCache(MAX_ENTRIES, MAX_WEIGHT);
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long weight = 0;
+
+    private int hits = 0;
+    private int misses = 0;
+
+    public TwigModuleCache(int maxEntries, long maxWeight)
+    {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    public static TwigModuleCache getDefault()
+    {
+        return instance;
+    }
+
+    /**
+     * @param sourceModule
+     * @return the declaration of the current source of the module
+     * @throws ModelException
+     * @throws IOException
+     */
+    public ModuleDeclaration get(ISourceModule sourceModule) throws ModelException, IOException
+    {
+        Assert.isNotNull(sourceModule);
+        return get(sourceModule.getHandleIdentifier(), sourceModule.getSource());
+    }
+
+    /**
+     * @param sourceModule
+     * @return the declaration of the source contents
+     * @throws IOException
+     */
+    public ModuleDeclaration get(IModuleSource sourceModule) throws IOException
+    {
+        Assert.isNotNull(sourceModule);
+        IModelElement element = sourceModule.getModelElement();
+        String key = element != null ? element.getHandleIdentifier() : sourceModule.getFileName();
+
+        return get(key, sourceModule.getSourceContents());
+    }
+
+    /**
+     * @param key
+     *            identifies the template, the source is used as key if null
+     * @param source
+     * @return the declaration of the source
+     * @throws IOException
+     */
+    public ModuleDeclaration get(String key, String source) throws IOException
+    {
+        Assert.isNotNull(source);
+
+        long hash = hash(source);
+
+        if (key == null) {
+            key = "#" + source.length() + ":" + hash;
+        }
+
+        Entry entry;
+
+        synchronized (entries) {
+            entry = entries.get(key);
+
+            if (entry != null && entry.matches(source.length(), hash)) {
+                hits++;
+                return entry.module;
+            }
+
+            misses++;
+        }
+
+        // parse outside of the lock, two threads missing the same template
+        // at once both parse it and the later one wins. An edited template
+        // only has the changed tags reparsed.
+        ModuleDeclaration module;
+
+        if (entry != null) {
+            module = TwigIncrementalParser.reparse(entry.module, entry.source, source);
+        } else {
+            module = SourceParserUtil.parseSourceModule(source);
+        }
+
+        // readers of the shared declaration never build its blocks
+        if (module instanceof TwigModuleDeclaration) {
+            ((TwigModuleDeclaration) module).getBlocks();
+        }
+
+        put(key, new Entry(module, source, hash));
+
+        return module;
+    }
+
+    /**
+     * Drop the declaration of a module, e.g. when it has been deleted.
+     *
+     * @param sourceModule
+     */
+    public void remove(ISourceModule sourceModule)
+    {
+        synchronized (entries) {
+            Entry entry = entries.remove(sourceModule.getHandleIdentifier());
+
+            if (entry != null) {
+                weight -= entry.source.length();
+            }
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    public int size()
+    {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getWeight()
+    {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public int getHits()
+    {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    public int getMisses()
+    {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    private void put(String key, Entry entry)
+    {
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+
+            if (previous != null) {
+                weight -= previous.source.length();
+            }
+
+            weight += entry.source.length();
+
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+
+            // always keep the entry just added
+            while ((entries.size() > maxEntries || weight > maxWeight) && entries.size() > 1) {
+                Entry eldest = it.next().getValue();
+                weight -= eldest.source.length();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the source.
+     *
+     * @param source
+     * @return
+     */
+    public static long hash(String source)
+    {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < source.length(); i++) {
+            hash ^= source.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static class Entry
+    {
+        private final ModuleDeclaration module;
+        private final String source;
+        private final long hash;
+
+        Entry(ModuleDeclaration module, String source, long hash)
+        {
+            this.module = module;
+            this.source = source;
+            this.hash = hash;
+        }
+
+        boolean matches(int length, long hash)
+        {
+            return source.length() == length && this.hash == hash;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.dubture.twig.core.parser.ast.CompilerAstLexer;
+import com.dubture.twig.core.parser.ast.DescentAstLexer;
+import com.dubture.twig.core.parser.ast.DescentAstParser;
+import com.dubture.twig.core.parser.ast.TwigAstParser;
+import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+
+/**
+ *
+ * The lexers and parsers of one thread, reset onto every template they
+ * parse. Most parses during editing are small templates, for which creating
+ * the scanner buffer and the parser objects costs more than the parse
+ * itself.
+ *
+ * Every thread, including the workers of the builder, gets its own context
+ * from {@link #acquire()} and has to {@link #release()} it when done. A parse
+ * started while the context of the thread is in use (from a callback of the
+ * running one) gets a fresh context instead.
+ *
+ * Buffers grown by a large template are not kept beyond {@link #release()}.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigParserContext
+{
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<TwigParserContext> contexts = new ThreadLocal<TwigParserContext>()
+    {
+        @Override
+        protected TwigParserContext initialValue()
+        {
+            return new TwigParserContext();
+        }
+    };
+
+    private final CompilerAstLexer lexer = new CompilerAstLexer((Reader) null);
+    private final TwigAstParser parser = new TwigAstParser(lexer);
+
+    private char[] buffer = new char[BUFFER_SIZE];
+    private final DescentAstLexer descentLexer = new DescentAstLexer(buffer, 0, 0);
+    private final DescentAstParser descentParser = new DescentAstParser(descentLexer);
+
+    private boolean busy = false;
+
+    /**
+     * @return the context of the current thread, or a new one if it is
+     *         already in use
+     */
+    public static TwigParserContext acquire()
+    {
+        TwigParserContext context = contexts.get();
+
+        if (context.busy) {
+            context = new TwigParserContext();
+        }
+
+        context.busy = true;
+        return context;
+    }
+
+    public void release()
+    {
+        // don't hold on to the last template and its tree
+        lexer.yyreset(null);
+        parser.reset();
+        descentLexer.reset(buffer, 0, 0);
+        descentParser.reset();
+
+        if (buffer.length > MAX_BUFFER_SIZE) {
+            buffer = new char[BUFFER_SIZE];
+        }
+
+        busy = false;
+    }
+
+    /**
+     * @param in
+     * @return the scanner of the context, restarted on the input
+     */
+    public CompilerAstLexer getLexer(Reader in)
+    {
+        lexer.yyreset(in);
+        return lexer;
+    }
+
+    /**
+     * Parses with the generated {@link TwigAstParser}.
+     *
+     * @param in
+     * @return
+     * @throws Exception
+     *             if the scanner fails, syntax errors are recorded on the
+     *             module
+     */
+    public TwigModuleDeclaration parse(Reader in) throws Exception
+    {
+        lexer.yyreset(in);
+        parser.reset();
+        parser.parse();
+
+        return parser.getModuleDeclaration();
+    }
+
+    /**
+     * Parses with the {@link DescentAstParser}, the input is read into the
+     * buffer of the context.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public TwigModuleDeclaration parseDescent(Reader in) throws IOException
+    {
+        int length = 0;
+        int read;
+
+        while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+
+            if (length == buffer.length) {
+                grow(length * 2, length);
+            }
+        }
+
+        descentLexer.reset(buffer, 0, length);
+        return descentParser.parse();
+    }
+
+    /**
+     * @param source
+     * @return
+     * @see #parseDescent(Reader)
+     */
+    public TwigModuleDeclaration parseDescent(CharSequence source)
+    {
+        int length = source.length();
+
+        if (length > buffer.length) {
+            grow(length, 0);
+        }
+
+        if (source instanceof String) {
+            ((String) source).getChars(0, length, buffer, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                buffer[i] = source.charAt(i);
+            }
+        }
+
+        descentLexer.reset(buffer, 0, length);
+        return descentParser.parse();
+    }
+
+    private void grow(int size, int length)
+    {
+        char[] grown = new char[size];
+        System.arraycopy(buffer, 0, grown, 0, length);
+        buffer = grown;
+    }
+}
@@ -8,6 +8,7 @@
  ******************************************************************************/
 package com.dubture.twig.core.parser;
 
+import java.io.IOException;
 import java.io.Reader;
 
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
@@ -20,6 +21,8 @@ import org.eclipse.php.internal.core.compiler.ast.parser.AbstractPHPSourceParser
 import com.dubture.twig.core.log.Logger;
 import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
 import com.dubture.twig.core.parser.ast.visitor.SourceParserVisitor;
+import com.dubture.twig.core.parser.error.TwigError;
+import com.dubture.twig.core.parser.error.TwigErrorReporter;
 
 /**
  * 
@@ -36,7 +39,7 @@ public class TwigSourceParser extends AbstractPHPSourceParser implements
         ISourceParser
 {
 
-    // private String fileName;
+    private String fileName;
     // private IProblemReporter problemReporter;
     // private TwigErrorReporter reporter;
 
@@ -49,6 +52,7 @@ public class TwigSourceParser extends AbstractPHPSourceParser implements
     public TwigSourceParser(String filename)
     {
         super(filename);
+        this.fileName = filename;
     }
     
     @Override
@@ -56,10 +60,11 @@ public class TwigSourceParser extends AbstractPHPSourceParser implements
     {
         try {
             
-            TwigModuleDeclaration module = (TwigModuleDeclaration) SourceParserUtil.parseSourceModule(input.getSourceContents());
+            TwigModuleDeclaration module = (TwigModuleDeclaration) TwigModuleCache.getDefault().get(input);
             
             if (module != null) {
                 module.traverse(new SourceParserVisitor(reporter));
+                reportErrors(module, input.getSourceContents(), input.getFileName(), reporter);
             }            
 
             return module;
@@ -79,10 +84,12 @@ public class TwigSourceParser extends AbstractPHPSourceParser implements
     {
         try {
             
-            TwigModuleDeclaration module = (TwigModuleDeclaration) SourceParserUtil.parseSourceModule(in);
+            String source = read(in);
+            TwigModuleDeclaration module = (TwigModuleDeclaration) SourceParserUtil.parseSourceModule(source);
             
             if (module != null) {
                 module.traverse(new SourceParserVisitor(reporter));
+                reportErrors(module, source, fileName, reporter);
             }            
 
             return module;
@@ -95,4 +102,52 @@ public class TwigSourceParser extends AbstractPHPSourceParser implements
         return new ModuleDeclaration(0);
 
     }
-}
+
+    /**
+     * Report the syntax errors the parser recovered from.
+     * 
+     * @param module
+     * @param source
+     * @param fileName
+     * @param reporter
+     */
+    protected void reportErrors(TwigModuleDeclaration module, String source, String fileName,
+            IProblemReporter reporter)
+    {
+        if (reporter == null || !module.hasErrors()) {
+            return;
+        }
+
+        TwigErrorReporter errorReporter = new TwigErrorReporter(reporter, fileName);
+
+        for (TwigError error : module.getErrors()) {
+            errorReporter.reportError(error, getLine(source, error.getSourceStart()));
+        }
+    }
+
+    private int getLine(String source, int offset)
+    {
+        int line = 0;
+
+        for (int i = 0; i < offset && i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                line++;
+            }
+        }
+
+        return line;
+    }
+
+    private String read(Reader in) throws IOException
+    {
+        StringBuilder source = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            source.append(buffer, 0, read);
+        }
+
+        return source.toString();
+    }
+}
\ No newline at end of file
@@ -13,7 +13,9 @@ import java.util.LinkedList;
 import org.eclipse.dltk.ast.statements.Statement;
 
 import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+import com.dubture.twig.core.parser.error.TwigError;
 
+import java_cup.runtime.Symbol;
 import java_cup.runtime.lr_parser;
 
 abstract class AbstractAstParser extends lr_parser
@@ -32,15 +34,112 @@ abstract class AbstractAstParser extends lr_parser
     }
 
     private TwigModuleDeclaration module = new TwigModuleDeclaration(0, new LinkedList<Statement>());
+    private int lastPosition = 0;
     
     public TwigModuleDeclaration getModuleDeclaration()
     {
         return module;
     }
-    
+
+    /**
+     * Prepare the parser for the next template of its scanner and drop the
+     * symbols of the last parse, parse() itself restarts the tables.
+     */
+    public void reset()
+    {
+        module = new TwigModuleDeclaration(0, new LinkedList<Statement>());
+        lastPosition = 0;
+        stack.removeAllElements();
+        cur_token = null;
+        lookahead = null;
+    }
+
     public void addStatement(Statement s)
     {        
         module.addStatement(s);       
     }
-    
+
+    /**
+     * @return the end offset of the last token read from the scanner
+     */
+    public int getLastPosition()
+    {
+        return lastPosition;
+    }
+
+    @Override
+    public Symbol scan() throws Exception
+    {
+        Symbol symbol = super.scan();
+
+        if (symbol.right > lastPosition) {
+            lastPosition = symbol.right;
+        }
+
+        return symbol;
+    }
+
+    /**
+     * Record the error on the module, the grammar recovers at the end of the
+     * broken tag.
+     */
+    @Override
+    public void syntax_error(Symbol token)
+    {
+        module.addError(createSyntaxError(token.sym, token.value, token.left, token.right, lastPosition));
+    }
+
+    @Override
+    public void unrecovered_syntax_error(Symbol token) throws Exception
+    {
+        // already reported by syntax_error()
+    }
+
+    /**
+     * Shared with the {@link DescentAstParser}, so both engines report the
+     * same errors.
+     * 
+     * @param sym
+     *            the unexpected token
+     * @param value
+     *            its text, if any
+     * @param left
+     *            its start offset, negative at the end of the template
+     * @param right
+     * @param lastPosition
+     *            the end offset of the last token read
+     * @return
+     */
+    static TwigError createSyntaxError(int sym, Object value, int left, int right, int lastPosition)
+    {
+        if (sym == ParserConstants.EOF || left < 0) {
+            return new TwigError("Unexpected end of template, unclosed tag", lastPosition, lastPosition);
+        }
+
+        return new TwigError("Unexpected " + describe(sym, value), left, right);
+    }
+
+    private static String describe(int sym, Object value)
+    {
+        switch (sym) {
+            case ParserConstants.TWIG_VAR_OPEN :
+                return "\"{{\"";
+            case ParserConstants.TWIG_VAR_CLOSE :
+                return "\"}}\"";
+            case ParserConstants.TWIG_STMT_OPEN :
+                return "\"{%\"";
+            case ParserConstants.TWIG_STMT_CLOSE :
+                return "\"%}\"";
+            case ParserConstants.T_OPEN_PARENTHESE :
+                return "\"(\"";
+            case ParserConstants.T_CLOSE_PARENTHESE :
+                return "\")\"";
+        }
+
+        if (value != null) {
+            return "\"" + value + "\"";
+        }
+
+        return "token";
+    }
 }
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.parser.ast;
+
+/**
+ *
+ * Scans a template the same way as the generated {@link TwigAstLexer}, but
+ * directly on a char array: a token is only its type and its offsets, no
+ * {@link java_cup.runtime.Symbol} or text is created until the
+ * {@link DescentAstParser} asks for it.
+ *
+ * Characters the {@link TwigAstLexer} does not match inside a tag are
+ * skipped silently instead of being echoed to the console.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class DescentAstLexer implements ParserConstants
+{
+
+    private static final int ST_INITIAL = 0;
+    private static final int ST_TWIG_VAR = 1;
+    private static final int ST_TWIG_BLOCK = 2;
+    private static final int ST_TWIG_BLOCK_NAME = 3;
+
+    private char[] buffer;
+    private int offset;
+    private int end;
+
+    private int position;
+    private int state;
+
+    private int tokenStart;
+    private int tokenEnd;
+
+    public DescentAstLexer(char[] buffer)
+    {
+        this(buffer, 0, buffer.length);
+    }
+
+    public DescentAstLexer(char[] buffer, int offset, int length)
+    {
+        reset(buffer, offset, length);
+    }
+
+    /**
+     * Restart the lexer on another template.
+     */
+    public void reset(char[] buffer, int offset, int length)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.end = offset + length;
+        this.position = offset;
+        this.state = ST_INITIAL;
+        this.tokenStart = this.tokenEnd = offset;
+    }
+
+    /**
+     * @return the type of the next token, one of the {@link ParserConstants}
+     */
+    public int next()
+    {
+        while (position < end) {
+            tokenStart = position;
+
+            int token;
+
+            switch (state) {
+                case ST_INITIAL :
+                    token = scanInitial();
+                    break;
+                case ST_TWIG_BLOCK_NAME :
+                    token = scanBlockName();
+                    break;
+                default :
+                    token = scanTag();
+                    break;
+            }
+
+            if (token != -1) {
+                tokenEnd = position;
+                return token;
+            }
+        }
+
+        tokenStart = tokenEnd = end;
+        return EOF;
+    }
+
+    /**
+     * @return the start offset of the current token in the template
+     */
+    public int getTokenStart()
+    {
+        return tokenStart - offset;
+    }
+
+    /**
+     * @return the end offset of the current token in the template
+     */
+    public int getTokenEnd()
+    {
+        return tokenEnd - offset;
+    }
+
+    public String getTokenText()
+    {
+        return new String(buffer, tokenStart, tokenEnd - tokenStart);
+    }
+
+    private int scanInitial()
+    {
+        char c = buffer[position];
+
+        if (c == '{' && position + 1 < end) {
+            char next = buffer[position + 1];
+
+            if (next == '{') {
+                position += 2;
+                state = ST_TWIG_VAR;
+                return TWIG_VAR_OPEN;
+            } else if (next == '%') {
+                position += 2;
+                state = ST_TWIG_BLOCK_NAME;
+                return TWIG_STMT_OPEN;
+            }
+        }
+
+        // the inline html rule has a special case for " {s"
+        if (c == ' ' && position + 2 < end && buffer[position + 1] == '{' && buffer[position + 2] == 's') {
+            position += 3;
+            return T_INLINE_HTML;
+        }
+
+        int start = position;
+
+        while (position < end) {
+            if (buffer[position] != '{') {
+                position++;
+            } else if (position + 1 < end && !isHtmlBreak(buffer[position + 1])) {
+                position += 2;
+            } else {
+                break;
+            }
+        }
+
+        // a single "{" which does not open a tag
+        if (position == start) {
+            position++;
+        }
+
+        return T_INLINE_HTML;
+    }
+
+    private int scanBlockName()
+    {
+        char c = buffer[position];
+
+        if (isLabelStart(c)) {
+            scanLabel();
+            state = ST_TWIG_BLOCK;
+            return T_BLOCK_NAME;
+        }
+
+        position++;
+        return -1;
+    }
+
+    private int scanTag()
+    {
+        char c = buffer[position];
+
+        switch (c) {
+            case '}' :
+                if (state == ST_TWIG_VAR && position + 1 < end && buffer[position + 1] == '}') {
+                    position += 2;
+                    state = ST_INITIAL;
+                    return TWIG_VAR_CLOSE;
+                }
+                break;
+            case '%' :
+                if (state == ST_TWIG_BLOCK && position + 1 < end && buffer[position + 1] == '}') {
+                    position += 2;
+                    state = ST_INITIAL;
+                    return TWIG_STMT_CLOSE;
+                }
+                break;
+            case '(' :
+                position++;
+                return T_OPEN_PARENTHESE;
+            case ')' :
+                position++;
+                return T_CLOSE_PARENTHESE;
+            case '"' :
+            case '\'' :
+                if (scanString(position)) {
+                    return T_CONSTANT_ENCAPSED_STRING;
+                }
+                break;
+            case 'b' :
+            case 'B' :
+                if (position + 1 < end && scanString(position + 1)) {
+                    return T_CONSTANT_ENCAPSED_STRING;
+                }
+                break;
+        }
+
+        if (isLabelStart(c)) {
+            scanLabel();
+            return T_VARIABLE;
+        }
+
+        // whitespace, separators and unknown characters
+        position++;
+        return -1;
+    }
+
+    private void scanLabel()
+    {
+        position++;
+
+        while (position < end && isLabelPart(buffer[position])) {
+            position++;
+        }
+    }
+
+    /**
+     * Strings may span lines, inside them a backslash escapes any character.
+     *
+     * @param quote
+     *            the offset of the opening quote
+     * @return true if the string is closed and has been consumed
+     */
+    private boolean scanString(int quote)
+    {
+        char delimiter = buffer[quote];
+
+        if (delimiter != '"' && delimiter != '\'') {
+            return false;
+        }
+
+        int i = quote + 1;
+
+        while (i < end) {
+            char c = buffer[i];
+
+            if (c == delimiter) {
+                position = i + 1;
+                return true;
+            }
+
+            if (c == '\\') {
+                if (i + 1 >= end) {
+                    return false;
+                }
+
+                i++;
+            }
+
+            i++;
+        }
+
+        return false;
+    }
+
+    private static boolean isHtmlBreak(char c)
+    {
+        return c == '{' || c == '%' || c == '?' || c == 's';
+    }
+
+    private static boolean isLabelStart(char c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (c >= 0x7f && c <= 0xff);
+    }
+
+    private static boolean isLabelPart(char c)
+    {
+        return isLabelStart(c) || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.parser.ast;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.dltk.ast.statements.Statement;
+
+import com.dubture.twig.core.parser.ast.node.BlockName;
+import com.dubture.twig.core.parser.ast.node.BlockStatement;
+import com.dubture.twig.core.parser.ast.node.InLineHtml;
+import com.dubture.twig.core.parser.ast.node.PrintStatement;
+import com.dubture.twig.core.parser.ast.node.StringLiteral;
+import com.dubture.twig.core.parser.ast.node.TwigCallExpression;
+import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+import com.dubture.twig.core.parser.ast.node.Variable;
+
+/**
+ *
+ * Recursive descent parser for the grammar of compiler_ast_parser.cup,
+ * reading the tokens of a {@link DescentAstLexer}.
+ *
+ * It builds the same declarations as the {@link TwigAstParser}, including
+ * the partial ones of broken templates: a syntax error inside a tag drops
+ * what has been started at the error, skips to the closing delimiter and
+ * keeps the tag with the expressions parsed before. Tokens are only looked
+ * at in the same places as the LALR tables of the {@link TwigAstParser}, so
+ * both agree on where an error is detected.
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class DescentAstParser implements ParserConstants
+{
+
+    private final DescentAstLexer lexer;
+    private TwigModuleDeclaration module;
+
+    private int token;
+    private int tokenStart;
+    private int tokenEnd;
+
+    /** end offset of the last token consumed */
+    private int previousEnd;
+
+    /** end offset of the last token read from the lexer */
+    private int lastPosition;
+
+    /** end offset of the statement parsed last, including broken ones */
+    private int statementEnd;
+
+    /** a syntax error the grammar can not recover from */
+    private boolean failed;
+
+    public DescentAstParser(char[] source)
+    {
+        this(new DescentAstLexer(source));
+    }
+
+    public DescentAstParser(DescentAstLexer lexer)
+    {
+        this.lexer = lexer;
+    }
+
+    /**
+     * Drop the module of the last parse.
+     */
+    public void reset()
+    {
+        module = null;
+    }
+
+    /**
+     * Parses the template of the lexer, the parser may be reused once the
+     * lexer has been reset onto another one.
+     *
+     * @return the declaration of the template, without statements if the
+     *         parser could not recover from an error
+     */
+    public TwigModuleDeclaration parse()
+    {
+        module = new TwigModuleDeclaration(0, new LinkedList<Statement>());
+        previousEnd = lastPosition = statementEnd = 0;
+        failed = false;
+
+        List<Statement> statements = new LinkedList<Statement>();
+        int end = 0;
+
+        next();
+
+        while (token != EOF) {
+            Statement statement;
+
+            switch (token) {
+                case T_INLINE_HTML :
+                    statement = new InLineHtml(tokenStart, tokenEnd);
+                    statementEnd = tokenEnd;
+                    consume();
+                    break;
+                case TWIG_VAR_OPEN :
+                    statement = parseVar();
+                    break;
+                case TWIG_STMT_OPEN :
+                    statement = parseBlock();
+                    break;
+                default :
+                    syntaxError();
+                    return module;
+            }
+
+            if (failed) {
+                return module;
+            }
+
+            if (statement != null) {
+                statements.add(statement);
+            }
+
+            end = statementEnd;
+        }
+
+        module.setStatements(statements);
+        module.setStart(0);
+        module.setEnd(end);
+
+        return module;
+    }
+
+    public TwigModuleDeclaration getModuleDeclaration()
+    {
+        return module;
+    }
+
+    private PrintStatement parseVar()
+    {
+        int start = tokenStart;
+        consume();
+
+        // the LR parser has no recovery state before the first expression
+        if (token != TWIG_VAR_CLOSE && !isExpression(token)) {
+            syntaxError();
+            failed = true;
+            return null;
+        }
+
+        List expressions = new LinkedList();
+
+        if (parseExpressions(expressions) && token == TWIG_VAR_CLOSE) {
+            statementEnd = tokenEnd;
+            consume();
+            return new PrintStatement(start, statementEnd, expressions);
+        }
+
+        syntaxError();
+        int errorEnd = previousEnd;
+
+        while (token != TWIG_VAR_CLOSE) {
+            if (isStatement(token)) {
+                statementEnd = errorEnd;
+                return new PrintStatement(start, lastPosition, expressions);
+            }
+
+            consume();
+        }
+
+        statementEnd = tokenEnd;
+        consume();
+
+        return new PrintStatement(start, statementEnd, expressions);
+    }
+
+    private BlockStatement parseBlock()
+    {
+        int start = tokenStart;
+        consume();
+
+        if (token != T_BLOCK_NAME) {
+            syntaxError();
+            return skipBlock();
+        }
+
+        BlockName name = new BlockName(tokenStart, tokenEnd, lexer.getTokenText());
+        consume();
+
+        if (token != TWIG_STMT_CLOSE && !isExpression(token)) {
+            syntaxError();
+            return skipBlock();
+        }
+
+        List statements = new LinkedList();
+
+        if (parseExpressions(statements) && token == TWIG_STMT_CLOSE) {
+            statementEnd = tokenEnd;
+            consume();
+            return new BlockStatement(start, statementEnd, name, statements);
+        }
+
+        syntaxError();
+        int errorEnd = previousEnd;
+
+        while (token != TWIG_STMT_CLOSE) {
+            if (isStatement(token)) {
+                statementEnd = errorEnd;
+                return new BlockStatement(start, lastPosition, name, statements);
+            }
+
+            consume();
+        }
+
+        statementEnd = tokenEnd;
+        consume();
+
+        return new BlockStatement(start, statementEnd, name, statements);
+    }
+
+    /**
+     * A tag without a name is dropped up to the next statement.
+     */
+    private BlockStatement skipBlock()
+    {
+        statementEnd = previousEnd;
+
+        while (!isStatement(token)) {
+            consume();
+        }
+
+        return null;
+    }
+
+    /**
+     * @param expressions
+     * @return false if an expression is broken, the error is at the current
+     *         token
+     */
+    private boolean parseExpressions(List expressions)
+    {
+        while (isExpression(token)) {
+            if (!parseExpression(expressions)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean parseExpression(List expressions)
+    {
+        int start = tokenStart;
+        int end = tokenEnd;
+
+        switch (token) {
+            case T_VARIABLE :
+                String name = lexer.getTokenText();
+                consume();
+
+                if (token == T_OPEN_PARENTHESE) {
+                    return parseFunction(expressions, start, name);
+                }
+
+                if (!isFollow(token)) {
+                    return false;
+                }
+
+                expressions.add(new Variable(start, end, name));
+                return true;
+            case T_CONSTANT_ENCAPSED_STRING :
+                String value = lexer.getTokenText();
+                consume();
+
+                if (!isFollow(token)) {
+                    return false;
+                }
+
+                expressions.add(new StringLiteral(start, end, value));
+                return true;
+            default :
+                consume();
+
+                if (!isFollow(token)) {
+                    return false;
+                }
+
+                expressions.add(new InLineHtml(start, end));
+                return true;
+        }
+    }
+
+    private boolean parseFunction(List expressions, int start, String name)
+    {
+        consume();
+
+        if (token != T_CLOSE_PARENTHESE && !isExpression(token)) {
+            return false;
+        }
+
+        List arguments = new LinkedList();
+
+        if (!parseExpressions(arguments) || token != T_CLOSE_PARENTHESE) {
+            return false;
+        }
+
+        int end = tokenEnd;
+        consume();
+
+        if (!isFollow(token)) {
+            return false;
+        }
+
+        expressions.add(new TwigCallExpression(start, end, name, arguments));
+        return true;
+    }
+
+    private void next()
+    {
+        token = lexer.next();
+        tokenStart = lexer.getTokenStart();
+        tokenEnd = lexer.getTokenEnd();
+
+        if (token != EOF && tokenEnd > lastPosition) {
+            lastPosition = tokenEnd;
+        }
+    }
+
+    private void consume()
+    {
+        previousEnd = tokenEnd;
+        next();
+    }
+
+    private void syntaxError()
+    {
+        Object value = null;
+
+        if (token == T_VARIABLE || token == T_CONSTANT_ENCAPSED_STRING || token == T_BLOCK_NAME) {
+            value = lexer.getTokenText();
+        }
+
+        module.addError(AbstractAstParser.createSyntaxError(token, value, tokenStart, tokenEnd, lastPosition));
+    }
+
+    private static boolean isExpression(int token)
+    {
+        return token == T_VARIABLE || token == T_CONSTANT_ENCAPSED_STRING || token == T_INLINE_HTML;
+    }
+
+    /**
+     * The tokens the LR parser accepts after a complete expression, in any
+     * kind of tag.
+     */
+    private static boolean isFollow(int token)
+    {
+        return isExpression(token) || token == TWIG_VAR_CLOSE || token == TWIG_STMT_CLOSE
+                || token == T_CLOSE_PARENTHESE;
+    }
+
+    /**
+     * The tokens starting a top level statement, or the end of the template.
+     */
+    private static boolean isStatement(int token)
+    {
+        return token == EOF || token == T_INLINE_HTML || token == TWIG_VAR_OPEN || token == TWIG_STMT_OPEN;
+    }
+}
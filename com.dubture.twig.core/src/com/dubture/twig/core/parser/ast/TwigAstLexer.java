@@ -39,11 +39,11 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
    * Translates characters to character classes
    */
   final private static String yycmap_packed = 
-    "\11\0\2\6\2\0\1\6\22\0\1\14\1\0\1\10\2\0\1\3"+
-    "\1\0\1\21\1\16\1\17\2\0\1\15\1\0\1\7\1\0\12\5"+
-    "\5\0\1\12\1\0\1\4\1\20\20\4\1\4\7\4\1\0\1\11"+
-    "\2\0\1\4\1\0\1\4\1\20\20\4\1\13\7\4\1\1\1\0"+
-    "\1\2\1\0\201\4\uff00\0";
+    "\11\0\1\6\1\6\2\0\1\6\22\0\1\13\1\0\1\7\2\0"+
+    "\1\3\1\0\1\20\1\15\1\16\2\0\1\14\3\0\12\5\5\0"+
+    "\1\11\1\0\1\4\1\17\20\4\1\4\7\4\1\0\1\10\2\0"+
+    "\1\4\1\0\1\4\1\17\20\4\1\12\7\4\1\1\1\0\1\2"+
+    "\1\0\201\4\uff00\0";
 
   /** 
    * Translates characters to character classes
@@ -54,31 +54,31 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
    * Translates a state to a row index in the transition table
    */
   final private static int yy_rowMap [] = { 
-        0,    18,    36,    54,    72,    90,   108,   126,   144,   162, 
-      180,   198,   144,   216,   144,   144,   234,   252,   270,   144, 
-      288,   306,   324,   144,   144,   342,   144,   216,   144,   360, 
-      252,   378,   144,   144
+        0,    17,    34,    51,    68,    85,   102,   119,    68,   136, 
+      153,   170,   187,    68,    68,   204,   221,   238,    68,   255, 
+      272,   289,    68,    68,   306,    68,   187,    68,   323,   221, 
+      340,    68,    68
   };
 
   /** 
    * The packed transition table of the DFA
    */
   final private static String yy_packed = 
-    "\1\6\1\7\12\6\1\10\5\6\2\11\1\12\1\11"+
-    "\1\13\1\11\1\14\1\15\1\16\2\11\1\13\1\14"+
-    "\1\11\1\17\1\20\1\21\1\22\3\11\1\23\1\13"+
-    "\1\11\1\14\1\15\1\16\2\11\1\13\1\14\1\24"+
-    "\1\17\1\20\1\21\1\22\4\11\1\25\1\11\1\26"+
-    "\1\15\3\11\1\25\1\26\3\11\1\25\23\11\1\6"+
-    "\1\27\21\6\1\30\1\6\1\31\6\6\2\0\7\6"+
-    "\1\32\20\6\24\0\1\33\23\0\2\13\5\0\1\13"+
-    "\4\0\1\13\7\0\1\14\5\0\1\14\5\0\10\34"+
-    "\1\35\1\36\10\34\4\0\2\13\2\0\1\34\2\0"+
-    "\1\13\4\0\1\13\12\37\1\40\7\37\1\35\2\0"+
-    "\1\41\23\0\2\25\5\0\1\25\4\0\1\25\7\0"+
-    "\1\26\5\0\1\26\5\0\1\6\1\0\1\6\1\0"+
-    "\6\6\2\0\7\6\1\0\1\6\1\0\6\6\1\0"+
-    "\1\42\6\6\7\0\1\34\21\0\1\37\12\0";
+    "\1\6\1\7\11\6\1\10\5\6\2\11\1\12\1\11"+
+    "\1\13\1\11\1\14\1\15\2\11\1\13\1\14\1\11"+
+    "\1\16\1\17\1\20\1\21\3\11\1\22\1\13\1\11"+
+    "\1\14\1\15\2\11\1\13\1\14\1\23\1\16\1\17"+
+    "\1\20\1\21\4\11\1\24\1\11\1\25\3\11\1\24"+
+    "\1\25\3\11\1\24\1\11\21\0\1\6\1\26\20\6"+
+    "\1\27\1\6\1\30\5\6\2\0\7\6\1\31\17\6"+
+    "\2\0\1\32\22\0\2\13\4\0\1\13\4\0\1\13"+
+    "\7\0\1\14\4\0\1\14\5\0\7\33\1\34\1\35"+
+    "\10\33\4\0\2\13\1\0\1\33\2\0\1\13\4\0"+
+    "\1\13\11\36\1\37\7\36\1\34\2\0\1\40\22\0"+
+    "\2\24\4\0\1\24\4\0\1\24\7\0\1\25\4\0"+
+    "\1\25\5\0\1\6\1\0\1\6\1\0\5\6\2\0"+
+    "\7\6\1\0\1\6\1\0\5\6\1\0\1\41\6\6"+
+    "\21\33\21\36";
 
   /** 
    * The transition table of the DFA
@@ -104,9 +104,8 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
    * YY_ATTRIBUTE[aState] contains the attributes of state <code>aState</code>
    */
   private final static byte YY_ATTRIBUTE[] = {
-     0,  0,  0,  0,  0,  1,  1,  1,  9,  1,  1,  1,  9,  1,  9,  9, 
-     1,  1,  1,  9,  1,  1,  0,  9,  9,  0,  9,  0,  9,  0,  0,  0, 
-     9,  9
+     0,  0,  0,  0,  8,  1,  1,  1,  9,  1,  1,  1,  1,  9,  9,  1, 
+     1,  1,  9,  1,  1,  0,  9,  9,  0,  9,  0,  9,  0,  0,  0,  9,  9
   };
 
   /** the input device */
@@ -190,6 +189,25 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
         return yy_atEOF;
     }
 
+    /**
+     * Restarts the scanner on a new input, keeping the buffer unless a large
+     * template has grown it.
+     */
+    public void yyreset(java.io.Reader reader) {
+        yy_reader = reader;
+        yy_lexical_state = YYINITIAL;
+        yy_markedPos = yy_pushbackPos = yy_currentPos = 0;
+        yy_startRead = yy_endRead = 0;
+        yyline = yychar = yycolumn = 0;
+        yy_atBOL = false;
+        yy_atEOF = false;
+        yy_eof_done = false;
+
+        if (yy_buffer.length > 4 * 16384) {
+            yy_buffer = new char[16384];
+        }
+    }
+
 
   /**
    * Creates a new scanner
@@ -218,10 +236,10 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
    * @return         the unpacked transition table
    */
   private static int [] yy_unpack(String packed) {
-    int [] trans = new int[396];
+    int [] trans = new int[357];
     int i = 0;  /* index in packed string  */
     int j = 0;  /* index in unpacked array */
-    while (i < 238) {
+    while (i < 228) {
       int count = packed.charAt(i++);
       int value = packed.charAt(i++);
       value--;
@@ -240,7 +258,7 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
     char [] map = new char[0x10000];
     int i = 0;  /* index in packed string  */
     int j = 0;  /* index in unpacked array */
-    while (i < 88) {
+    while (i < 86) {
       int  count = packed.charAt(i++);
       char value = packed.charAt(i++);
       do map[j++] = value; while (--count > 0);
@@ -457,83 +475,80 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
 
       switch (yy_action) {    
 
-        case 28: 
+        case 27: 
           { 
     return fullSymbol(ParserConstants.T_CONSTANT_ENCAPSED_STRING);
  }
-        case 35: break;
+        case 34: break;
         case 5: 
         case 6: 
         case 7: 
-        case 33: 
+        case 32: 
           { 
 	// raw content
 	return symbol(ParserConstants.T_INLINE_HTML);
  }
-        case 36: break;
+        case 35: break;
+        case 8: 
+        case 9: 
         case 12: 
+        case 16: 
+        case 17: 
           { 
 	// do nothing
  }
-        case 37: break;
+        case 36: break;
         case 10: 
-        case 16: 
+        case 15: 
           { 
         return fullSymbol(ParserConstants.T_VARIABLE);    
      }
-        case 38: break;
-        case 20: 
+        case 37: break;
+        case 19: 
           { 
         yybegin(ST_TWIG_BLOCK);
         return fullSymbol(ParserConstants.T_BLOCK_NAME);
      }
-        case 39: break;
-        case 32: 
+        case 38: break;
+        case 31: 
           {   
         yybegin(YYINITIAL);
         return symbol(ParserConstants.TWIG_STMT_CLOSE);
      }
-        case 40: break;
-        case 26: 
+        case 39: break;
+        case 25: 
           {   
         yybegin(YYINITIAL);
         return symbol(ParserConstants.TWIG_VAR_CLOSE);
      }
-        case 41: break;
-        case 24: 
+        case 40: break;
+        case 23: 
           {  
         yybegin(ST_TWIG_BLOCK_NAME);
         return symbol(ParserConstants.TWIG_STMT_OPEN);
      }
-        case 42: break;
-        case 23: 
+        case 41: break;
+        case 22: 
           {  
         yybegin(ST_TWIG_VAR);
         return symbol(ParserConstants.TWIG_VAR_OPEN);
      }
-        case 43: break;
-        case 21: 
-          {  /* just skip what was found, do nothing */  }
-        case 44: break;
+        case 42: break;
         case 11: 
-        case 19: 
+        case 18: 
           {  
      
      }
-        case 45: break;
-        case 14: 
+        case 43: break;
+        case 13: 
           {  return symbol(ParserConstants.T_OPEN_PARENTHESE);  }
-        case 46: break;
-        case 15: 
+        case 44: break;
+        case 14: 
           {  return symbol(ParserConstants.T_CLOSE_PARENTHESE);  }
-        case 47: break;
-        case 8: 
-        case 9: 
-        case 13: 
-        case 17: 
-        case 18: 
-          { System.out.print(yytext()); }
-        case 48: break;
+        case 45: break;
+        case 20: 
+          {  /* just skip what was found, do nothing */  }
+        case 46: break;
         default: 
           if (yy_input == YYEOF && yy_startRead == yy_currentPos) {
             yy_atEOF = true;
@@ -547,48 +562,5 @@ public class TwigAstLexer implements java_cup.runtime.Scanner {
     }
   }    
 
-  /**
-   * Runs the scanner on input files.
-   *
-   * This is a standalone scanner, i.e. it will print any unmatched
-   * text to System.out unchanged.
-   *
-   * @param argv   the command line, contains the filenames to run
-   *               the scanner on.
-   */
-  public static void main(String argv[]) {
-    for (int i = 0; i < argv.length; i++) {
-      TwigAstLexer scanner = null;
-      try {
-        scanner = new TwigAstLexer( new java.io.FileReader(argv[i]) );
-      }
-      catch (java.io.FileNotFoundException e) {
-        System.out.println("File not found : \""+argv[i]+"\"");
-        System.exit(1);
-      }
-      catch (java.io.IOException e) {
-        System.out.println("Error opening file \""+argv[i]+"\"");
-        System.exit(1);
-      }
-      catch (ArrayIndexOutOfBoundsException e) {
-        System.out.println("Usage : java TwigAstLexer <inputfile>");
-        System.exit(1);
-      }
-
-      try {
-        while ( !scanner.yy_atEOF ) scanner.next_token();
-      }
-      catch (java.io.IOException e) {
-        System.out.println("An I/O error occured while scanning :");
-        System.out.println(e);
-        System.exit(1);
-      }
-      catch (Exception e) {
-        e.printStackTrace();
-        System.exit(1);
-      }
-    }
-  }
-
 
 }
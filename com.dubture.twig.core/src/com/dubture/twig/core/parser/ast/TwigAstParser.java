@@ -1,7 +1,7 @@
 
 //----------------------------------------------------
 // The following code was generated by CUP v0.10k
-// Sat Sep 14 22:23:40 CEST 2013
+// Sun Oct 18 09:53:07 UTC 2026
 //----------------------------------------------------
 
 package com.dubture.twig.core.parser.ast;
@@ -20,7 +20,7 @@ import org.eclipse.dltk.ast.expressions.Expression;
 import org.eclipse.dltk.ast.statements.Statement;
 
 /** CUP v0.10k generated parser.
-  * @version Sat Sep 14 22:23:40 CEST 2013
+  * @version Sun Oct 18 09:53:07 UTC 2026
   */
 public class TwigAstParser extends AbstractAstParser {
 
@@ -33,12 +33,14 @@ public class TwigAstParser extends AbstractAstParser {
   /** Production table. */
   protected static final short _production_table[][] = 
     unpackFromStrings(new String[] {
-    "\000\022\000\002\003\003\000\002\002\004\000\002\006" +
+    "\000\027\000\002\003\003\000\002\002\004\000\002\006" +
     "\004\000\002\006\002\000\002\007\003\000\002\007\003" +
-    "\000\002\007\003\000\002\005\005\000\002\004\006\000" +
-    "\002\010\004\000\002\010\002\000\002\011\003\000\002" +
-    "\011\003\000\002\013\006\000\002\012\003\000\002\012" +
-    "\003\000\002\012\003\000\002\014\003" });
+    "\000\002\007\003\000\002\005\005\000\002\005\006\000" +
+    "\002\005\005\000\002\004\006\000\002\004\007\000\002" +
+    "\004\006\000\002\004\004\000\002\010\004\000\002\010" +
+    "\002\000\002\011\003\000\002\011\003\000\002\013\006" +
+    "\000\002\012\003\000\002\012\003\000\002\012\003\000" +
+    "\002\014\003" });
 
   /** Access to production table. */
   public short[][] production_table() {return _production_table;}
@@ -46,18 +48,38 @@ public class TwigAstParser extends AbstractAstParser {
   /** Parse-action table. */
   protected static final short[][] _action_table = 
     unpackFromStrings(new String[] {
-    "\000\032\000\002\001\ufffe\000\004\002\034\001\002\000" +
-    "\014\004\011\006\010\012\012\013\006\014\014\001\001" +
-    "\000\002\001\ufff3\000\002\001\ufffb\000\004\015\031\001" +
-    "\002\000\002\001\ufff7\000\002\001\ufff1\000\002\001\ufffd" +
-    "\000\002\001\ufff2\000\002\001\uffff\000\002\001\ufffc\000" +
-    "\012\005\022\012\012\013\023\014\014\001\002\000\002" +
-    "\001\ufff8\000\002\001\ufff5\000\002\001\ufffa\000\004\010" +
-    "\025\001\ufff3\000\002\001\ufff6\000\002\001\ufff7\000\012" +
-    "\011\027\012\012\013\023\014\014\001\002\000\002\001" +
-    "\ufff4\000\002\001\ufff7\000\002\001\ufff0\000\012\007\033" +
-    "\012\012\013\023\014\014\001\002\000\002\001\ufff9\000" +
-    "\002\001\000" });
+    "\000\036\000\012\002\ufffe\004\ufffe\006\ufffe\012\ufffe\001" +
+    "\002\000\004\002\040\001\002\000\012\002\001\004\011" +
+    "\006\007\012\006\001\002\000\012\002\ufffd\004\ufffd\006" +
+    "\ufffd\012\ufffd\001\002\000\006\003\031\015\033\001\002" +
+    "\000\012\002\ufffc\004\ufffc\006\ufffc\012\ufffc\001\002\000" +
+    "\014\003\ufff2\005\ufff2\012\ufff2\013\ufff2\014\ufff2\001\002" +
+    "\000\012\002\ufffb\004\ufffb\006\ufffb\012\ufffb\001\002\000" +
+    "\012\002\uffff\004\uffff\006\uffff\012\uffff\001\002\000\014" +
+    "\003\020\005\021\012\017\013\022\014\024\001\002\000" +
+    "\020\003\ufff0\005\ufff0\007\ufff0\011\ufff0\012\ufff0\013\ufff0" +
+    "\014\ufff0\001\002\000\020\003\ufff3\005\ufff3\007\ufff3\011" +
+    "\ufff3\012\ufff3\013\ufff3\014\ufff3\001\002\000\020\003\uffec" +
+    "\005\uffec\007\uffec\011\uffec\012\uffec\013\uffec\014\uffec\001" +
+    "\002\000\014\002\ufff8\004\ufff8\005\030\006\ufff8\012\ufff8" +
+    "\001\002\000\012\002\ufffa\004\ufffa\006\ufffa\012\ufffa\001" +
+    "\002\000\022\003\uffee\005\uffee\007\uffee\010\025\011\uffee" +
+    "\012\uffee\013\uffee\014\uffee\001\002\000\020\003\ufff1\005" +
+    "\ufff1\007\ufff1\011\ufff1\012\ufff1\013\ufff1\014\ufff1\001\002" +
+    "\000\020\003\uffed\005\uffed\007\uffed\011\uffed\012\uffed\013" +
+    "\uffed\014\uffed\001\002\000\012\011\ufff2\012\ufff2\013\ufff2" +
+    "\014\ufff2\001\002\000\012\011\027\012\017\013\022\014" +
+    "\024\001\002\000\020\003\uffef\005\uffef\007\uffef\011\uffef" +
+    "\012\uffef\013\uffef\014\uffef\001\002\000\012\002\ufff9\004" +
+    "\ufff9\006\ufff9\012\ufff9\001\002\000\012\002\ufff4\004\ufff4" +
+    "\006\ufff4\012\ufff4\001\002\000\014\003\ufff2\007\ufff2\012" +
+    "\ufff2\013\ufff2\014\ufff2\001\002\000\014\003\uffeb\007\uffeb" +
+    "\012\uffeb\013\uffeb\014\uffeb\001\002\000\014\003\036\007" +
+    "\035\012\017\013\022\014\024\001\002\000\012\002\ufff7" +
+    "\004\ufff7\006\ufff7\012\ufff7\001\002\000\014\002\ufff5\004" +
+    "\ufff5\006\ufff5\007\037\012\ufff5\001\002\000\012\002\ufff6" +
+    "\004\ufff6\006\ufff6\012\ufff6\001\002\000\004\002\000\001" +
+    "\002" });
 
   /** Access to parse-action table. */
   public short[][] action_table() {return _action_table;}
@@ -65,18 +87,19 @@ public class TwigAstParser extends AbstractAstParser {
   /** <code>reduce_goto</code> table. */
   protected static final short[][] _reduce_table = 
     unpackFromStrings(new String[] {
-    "\000\032\000\006\003\003\006\004\001\001\000\002\001" +
-    "\001\000\012\004\006\005\015\007\014\012\012\001\001" +
-    "\000\002\001\001\000\002\001\001\000\004\014\027\001" +
-    "\001\000\004\010\016\001\001\000\002\001\001\000\002" +
-    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
-    "\001\000\010\011\017\012\023\013\020\001\001\000\002" +
-    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
-    "\001\000\002\001\001\000\004\010\025\001\001\000\010" +
-    "\011\017\012\023\013\020\001\001\000\002\001\001\000" +
-    "\004\010\031\001\001\000\002\001\001\000\010\011\017" +
-    "\012\023\013\020\001\001\000\002\001\001\000\002\001" +
-    "\001" });
+    "\000\036\000\006\003\003\006\004\001\001\000\002\001" +
+    "\001\000\010\004\011\005\007\007\012\001\001\000\002" +
+    "\001\001\000\004\014\031\001\001\000\002\001\001\000" +
+    "\004\010\013\001\001\000\002\001\001\000\002\001\001" +
+    "\000\010\011\015\012\022\013\014\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\004\010\025\001\001\000\010\011\015" +
+    "\012\022\013\014\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\004\010\033\001\001\000\002" +
+    "\001\001\000\010\011\015\012\022\013\014\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001" });
 
   /** Access to <code>reduce_goto</code> table. */
   public short[][] reduce_table() {return _reduce_table;}
@@ -155,6 +178,12 @@ public class TwigAstParser extends AbstractAstParser {
         /* Print the contents of the StringBuffer 'm', which contains
            an error message, out on a line. */
     }
+
+    /* Resume parsing as soon as a single token after the error can be
+       shifted, which is the closing delimiter of the broken tag. */
+    protected int error_sync_size() {
+        return 1;
+    }
    
     /* Change the method report_fatal_error so when it reports a fatal
        error it will display the line and column number of where the
@@ -192,7 +221,7 @@ class CUP$TwigAstParser$actions {
       switch (CUP$TwigAstParser$act_num)
         {
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 17: // blockname ::= T_BLOCK_NAME 
+          case 22: // blockname ::= T_BLOCK_NAME 
             {
               BlockName RESULT = null;
 		int stmtleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
@@ -206,7 +235,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 16: // statement ::= T_INLINE_HTML 
+          case 21: // statement ::= T_INLINE_HTML 
             {
               Statement RESULT = null;
 		int htmlleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
@@ -220,7 +249,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 15: // statement ::= T_CONSTANT_ENCAPSED_STRING 
+          case 20: // statement ::= T_CONSTANT_ENCAPSED_STRING 
             {
               Statement RESULT = null;
 		int stringleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
@@ -234,7 +263,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 14: // statement ::= T_VARIABLE 
+          case 19: // statement ::= T_VARIABLE 
             {
               Statement RESULT = null;
 		int varleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
@@ -248,7 +277,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 13: // function ::= T_VARIABLE T_OPEN_PARENTHESE inner_statement_list T_CLOSE_PARENTHESE 
+          case 18: // function ::= T_VARIABLE T_OPEN_PARENTHESE inner_statement_list T_CLOSE_PARENTHESE 
             {
               TwigCallExpression RESULT = null;
 		int idleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).left;
@@ -271,7 +300,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 12: // inner_statement ::= function 
+          case 17: // inner_statement ::= function 
             {
               Statement RESULT = null;
 		int functionleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
@@ -285,7 +314,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 11: // inner_statement ::= statement 
+          case 16: // inner_statement ::= statement 
             {
               Statement RESULT = null;
 		int statementleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
@@ -299,7 +328,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 10: // inner_statement_list ::= 
+          case 15: // inner_statement_list ::= 
             {
               List RESULT = null;
 		 
@@ -310,7 +339,7 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 9: // inner_statement_list ::= inner_statement_list inner_statement 
+          case 14: // inner_statement_list ::= inner_statement_list inner_statement 
             {
               List RESULT = null;
 		int statementListleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).left;
@@ -331,7 +360,61 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 8: // block ::= TWIG_STMT_OPEN blockname inner_statement_list TWIG_STMT_CLOSE 
+          case 13: // block ::= TWIG_STMT_OPEN error 
+            {
+              BlockStatement RESULT = null;
+		
+		                	RESULT = null;
+		                
+              CUP$TwigAstParser$result = new java_cup.runtime.Symbol(2/*block*/, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).left, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right, RESULT);
+            }
+          return CUP$TwigAstParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 12: // block ::= TWIG_STMT_OPEN blockname inner_statement_list error 
+            {
+              BlockStatement RESULT = null;
+		int startleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).left;
+		int startright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).right;
+		Object start = (Object)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).value;
+		int nameleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).left;
+		int nameright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).right;
+		BlockName name = (BlockName)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).value;
+		int innerleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).left;
+		int innerright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).right;
+		List inner = (List)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).value;
+		
+		                	RESULT = new BlockStatement(startleft, parser.getLastPosition(), name, inner);
+		                
+              CUP$TwigAstParser$result = new java_cup.runtime.Symbol(2/*block*/, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).left, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right, RESULT);
+            }
+          return CUP$TwigAstParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 11: // block ::= TWIG_STMT_OPEN blockname inner_statement_list error TWIG_STMT_CLOSE 
+            {
+              BlockStatement RESULT = null;
+		int startleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-4)).left;
+		int startright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-4)).right;
+		Object start = (Object)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-4)).value;
+		int nameleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).left;
+		int nameright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).right;
+		BlockName name = (BlockName)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).value;
+		int innerleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).left;
+		int innerright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).right;
+		List inner = (List)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).value;
+		int endleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
+		int endright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right;
+		Object end = (Object)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).value;
+		
+		                	RESULT = new BlockStatement(startleft, endright, name, inner);
+		                
+              CUP$TwigAstParser$result = new java_cup.runtime.Symbol(2/*block*/, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-4)).left, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right, RESULT);
+            }
+          return CUP$TwigAstParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 10: // block ::= TWIG_STMT_OPEN blockname inner_statement_list TWIG_STMT_CLOSE 
             {
               BlockStatement RESULT = null;
 		int startleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).left;
@@ -354,6 +437,43 @@ class CUP$TwigAstParser$actions {
             }
           return CUP$TwigAstParser$result;
 
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 9: // var ::= TWIG_VAR_OPEN inner_statement_list error 
+            {
+              PrintStatement RESULT = null;
+		int startleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).left;
+		int startright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).right;
+		Object start = (Object)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).value;
+		int innerleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).left;
+		int innerright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).right;
+		List inner = (List)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-1)).value;
+		
+							RESULT = new PrintStatement(startleft, parser.getLastPosition(), inner);
+						
+              CUP$TwigAstParser$result = new java_cup.runtime.Symbol(3/*var*/, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).left, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right, RESULT);
+            }
+          return CUP$TwigAstParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 8: // var ::= TWIG_VAR_OPEN inner_statement_list error TWIG_VAR_CLOSE 
+            {
+              PrintStatement RESULT = null;
+		int startleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).left;
+		int startright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).right;
+		Object start = (Object)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).value;
+		int innerleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).left;
+		int innerright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).right;
+		List inner = (List)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-2)).value;
+		int endleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
+		int endright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right;
+		Object end = (Object)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).value;
+		
+							RESULT = new PrintStatement(startleft, endright, inner);
+						
+              CUP$TwigAstParser$result = new java_cup.runtime.Symbol(3/*var*/, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-3)).left, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right, RESULT);
+            }
+          return CUP$TwigAstParser$result;
+
           /*. . . . . . . . . . . . . . . . . . . .*/
           case 7: // var ::= TWIG_VAR_OPEN inner_statement_list TWIG_VAR_CLOSE 
             {
@@ -404,14 +524,14 @@ class CUP$TwigAstParser$actions {
           return CUP$TwigAstParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 4: // top_statement ::= statement 
+          case 4: // top_statement ::= T_INLINE_HTML 
             {
               Statement RESULT = null;
-		int statementleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
-		int statementright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right;
-		Statement statement = (Statement)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).value;
+		int htmlleft = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left;
+		int htmlright = ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right;
+		Object html = (Object)((java_cup.runtime.Symbol) CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).value;
 		
-							RESULT = statement;
+							RESULT = new InLineHtml(htmlleft, htmlright);
 						
               CUP$TwigAstParser$result = new java_cup.runtime.Symbol(5/*top_statement*/, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).left, ((java_cup.runtime.Symbol)CUP$TwigAstParser$stack.elementAt(CUP$TwigAstParser$top-0)).right, RESULT);
             }
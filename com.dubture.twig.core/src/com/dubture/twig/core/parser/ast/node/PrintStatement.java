@@ -47,4 +47,9 @@ public class PrintStatement extends Statement
     {
         return ASTNodeKinds.PRINT_STATEMENT;
     }
+
+    public List<Expression> getExpressions()
+    {
+        return expressions;
+    }
 }
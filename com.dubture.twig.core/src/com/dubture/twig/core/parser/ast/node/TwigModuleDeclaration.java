@@ -8,15 +8,23 @@
  ******************************************************************************/
 package com.dubture.twig.core.parser.ast.node;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
 import org.eclipse.dltk.ast.statements.Statement;
 
+import com.dubture.twig.core.parser.error.TwigError;
+
 public class TwigModuleDeclaration extends ModuleDeclaration
 {
-    protected List<BlockStatement> blocks;
+    /**
+     * Built once all statements have been added and only published filled,
+     * so declarations shared by the module cache can be read from any thread.
+     */
+    protected volatile List<BlockStatement> blocks;
+    protected List<TwigError> errors;
 
     public TwigModuleDeclaration(int length, List<Statement> statements)
     {
@@ -27,22 +35,55 @@ public class TwigModuleDeclaration extends ModuleDeclaration
         }
     }
 
+    /**
+     * @return the block statements of the module, not modifiable
+     */
     public List<BlockStatement> getBlocks()
     {
-        if (blocks != null) {
-            return blocks;
+        List<BlockStatement> result = blocks;
+
+        if (result != null) {
+            return result;
         }
-        
-        blocks = new LinkedList<BlockStatement>();
+
+        List<BlockStatement> found = new ArrayList<BlockStatement>();
 
         for (Object o : getStatements()) {
             if (o instanceof BlockStatement) {
-                blocks.add((BlockStatement) o);
+                found.add((BlockStatement) o);
             }
         }
-        
-        return blocks;
 
+        return blocks = Collections.unmodifiableList(found);
+    }
+    
+    /**
+     * The syntax errors the parser recovered from. The statements of the
+     * module are the ones which could be parsed.
+     * 
+     * @return
+     */
+    public List<TwigError> getErrors()
+    {
+        if (errors == null) {
+            return Collections.emptyList();
+        }
+
+        return errors;
+    }
+
+    public void addError(TwigError error)
+    {
+        if (errors == null) {
+            errors = new ArrayList<TwigError>();
+        }
+
+        errors.add(error);
+    }
+
+    public boolean hasErrors()
+    {
+        return errors != null && !errors.isEmpty();
     }
     
     public BlockStatement getExtends()
@@ -8,122 +8,42 @@
  ******************************************************************************/
 package com.dubture.twig.core.parser.error;
 
-import org.eclipse.dltk.compiler.problem.CategorizedProblem;
-import org.eclipse.dltk.compiler.problem.IProblemIdentifier;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.IProblem;
 import org.eclipse.dltk.compiler.problem.ProblemSeverity;
 
-public class TwigError extends CategorizedProblem
+/**
+ * 
+ * A syntax error the parser recovered from, kept on the
+ * {@link com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration}.
+ * 
+ * The file name and line are not known while parsing, the
+ * {@link TwigErrorReporter} adds them when the error is reported.
+ * 
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ * 
+ */
+public class TwigError extends DefaultProblem
 {
 
-    @Override
-    public String[] getArguments()
-    {
-        // TODO Auto-generated method stub
-        return null;
-    }
-
-    @Override
-    public IProblemIdentifier getID()
-    {
-        // TODO Auto-generated method stub
-        return null;
-    }
-
-    @Override
-    public String getMessage()
-    {
-        // TODO Auto-generated method stub
-        return null;
-    }
-
-    @Override
-    public String getOriginatingFileName()
-    {
-        // TODO Auto-generated method stub
-        return null;
-    }
-
-    @Override
-    public int getSourceEnd()
-    {
-        // TODO Auto-generated method stub
-        return 0;
-    }
-
-    @Override
-    public int getSourceLineNumber()
-    {
-        // TODO Auto-generated method stub
-        return 0;
-    }
-
-    @Override
-    public int getSourceStart()
-    {
-        // TODO Auto-generated method stub
-        return 0;
-    }
-
-    @Override
-    public boolean isError()
-    {
-        // TODO Auto-generated method stub
-        return false;
-    }
-
-    @Override
-    public boolean isWarning()
-    {
-        // TODO Auto-generated method stub
-        return false;
-    }
-
-    @Override
-    public boolean isTask()
+    @SuppressWarnings("deprecation")
+    public TwigError(String message, int start, int end)
     {
-        // TODO Auto-generated method stub
-        return false;
+        super(null, message, IProblem.Syntax, new String[0], ProblemSeverity.ERROR, start, end, -1);
     }
 
-    @Override
-    public void setSourceEnd(int sourceEnd)
+    /**
+     * @param delta
+     * @return a copy of the error moved by delta characters
+     */
+    public TwigError shift(int delta)
     {
-        // TODO Auto-generated method stub
-
+        return new TwigError(getMessage(), getSourceStart() + delta, getSourceEnd() + delta);
     }
 
     @Override
-    public void setSourceLineNumber(int lineNumber)
+    public String toString()
     {
-        // TODO Auto-generated method stub
-
+        return String.format("[TwigError %d - %d] : %s", getSourceStart(), getSourceEnd(), getMessage());
     }
-
-    @Override
-    public void setSourceStart(int sourceStart)
-    {
-        // TODO Auto-generated method stub
-
-    }
-
-    @Override
-    public int getCategoryID()
-    {
-        // TODO Auto-generated method stub
-        return 0;
-    }
-
-    @Override
-    public String getMarkerType()
-    {
-        // TODO Auto-generated method stub
-        return null;
-    }
-
-    public void setSeverity(ProblemSeverity severity)
-    {
-        // TODO Auto-generated method stub
-
-    }
-
 }
@@ -46,15 +46,9 @@ public class TwigErrorReporter
     public void reportError(String header, String message)
     {
 
-        // disabled due to 3.6 incompatibility
-        // see https://github.com/pulse00/Twig-Eclipse-Plugin/issues/8
-        if (!TwigCorePlugin.getDefault().isDLTK3()) {
-            return;
-        }
-
-        ProblemSeverity severity = TwigCorePreferences.getSyntaxErrorSeverity();
+        ProblemSeverity severity = getSeverity();
 
-        if (severity == null || severity == ProblemSeverity.IGNORE)
+        if (severity == null)
             return;
 
         IProblem problem = new DefaultProblem(filename, message,
@@ -65,6 +59,48 @@ public class TwigErrorReporter
 
     }
 
+    /**
+     * Report an error recorded by the parser.
+     * 
+     * @param error
+     * @param line
+     */
+    @SuppressWarnings("deprecation")
+    public void reportError(TwigError error, int line)
+    {
+        ProblemSeverity severity = getSeverity();
+
+        if (severity == null) {
+            return;
+        }
+
+        int start = error.getSourceStart();
+        int end = Math.max(error.getSourceEnd(), start + 1);
+
+        reporter.reportProblem(new DefaultProblem(filename, error.getMessage(),
+                IProblem.Syntax, new String[0], severity, start, end, line));
+    }
+
+    /**
+     * @return the configured severity, or null if errors are not reported
+     */
+    private ProblemSeverity getSeverity()
+    {
+        // disabled due to 3.6 incompatibility
+        // see https://github.com/pulse00/Twig-Eclipse-Plugin/issues/8
+        if (!TwigCorePlugin.getDefault().isDLTK3()) {
+            return null;
+        }
+
+        ProblemSeverity severity = TwigCorePreferences.getSyntaxErrorSeverity();
+
+        if (severity == ProblemSeverity.IGNORE) {
+            return null;
+        }
+
+        return severity;
+    }
+
     public void setOffset(int offset2, int line2)
     {
 
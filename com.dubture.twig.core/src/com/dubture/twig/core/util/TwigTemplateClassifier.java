@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.core.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.core.runtime.content.IContentTypeManager;
+import org.eclipse.core.runtime.content.IContentTypeManager.ContentTypeChangeEvent;
+import org.eclipse.core.runtime.content.IContentTypeManager.IContentTypeChangeListener;
+
+import com.dubture.twig.core.documentModel.provisional.contenttype.ContentTypeIdForTwig;
+
+/**
+ *
+ * Decides whether a file is a Twig template, by its name.
+ *
+ * A file is a template if one of its content types is the Twig content type,
+ * or if the user mapped its name or extension to the Twig editor. The editor
+ * mappings are contributed by the UI plugin through
+ * {@link #setEditorMappings(EditorMappings)}, headless only the content
+ * types count. Results are cached per file name and dropped when the content
+ * types or the editor mappings change.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigTemplateClassifier
+{
+
+    /**
+     * The cache is simply flushed when it grows beyond this size.
+     */
+    private static final int MAX_ENTRIES = 20000;
+
+    private static TwigTemplateClassifier instance;
+
+    private final ConcurrentMap<String, Boolean> classifications = new ConcurrentHashMap<String, Boolean>();
+
+    /**
+     * Counts {@link #clear()}, a classification which raced with a clear is
+     * not kept.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile EditorMappings editorMappings;
+
+    private final IContentTypeChangeListener contentTypeListener = new IContentTypeChangeListener()
+    {
+        @Override
+        public void contentTypeChanged(ContentTypeChangeEvent event)
+        {
+            clear();
+        }
+    };
+
+    /**
+     * The file editor mappings of the workbench.
+     */
+    public interface EditorMappings
+    {
+        /**
+         * @param filename
+         * @return true if the name or the extension of the file is mapped to
+         *         the Twig editor
+         */
+        boolean isMappedToTwigEditor(String filename);
+    }
+
+    private TwigTemplateClassifier()
+    {
+        Platform.getContentTypeManager().addContentTypeChangeListener(contentTypeListener);
+    }
+
+    public static synchronized TwigTemplateClassifier getDefault()
+    {
+        if (instance == null) {
+            instance = new TwigTemplateClassifier();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Remove the listener of the shared classifier, if it has been created.
+     */
+    public static synchronized void shutdown()
+    {
+        if (instance == null) {
+            return;
+        }
+
+        Platform.getContentTypeManager().removeContentTypeChangeListener(instance.contentTypeListener);
+        instance = null;
+    }
+
+    /**
+     * @param mappings
+     *            the editor mappings to consult, null to classify by content
+     *            type only
+     */
+    public void setEditorMappings(EditorMappings mappings)
+    {
+        editorMappings = mappings;
+        clear();
+    }
+
+    /**
+     * Drop all classifications, e.g. when the editor mappings changed.
+     */
+    public void clear()
+    {
+        generation.incrementAndGet();
+        classifications.clear();
+    }
+
+    /**
+     * @param filename
+     *            the name of the file, without a path
+     * @return true if the file is a Twig template
+     */
+    public boolean isTemplate(String filename)
+    {
+        if (filename == null) {
+            return false;
+        }
+
+        Boolean cached = classifications.get(filename);
+
+        if (cached != null) {
+            return cached.booleanValue();
+        }
+
+        int classified = generation.get();
+        Boolean template = Boolean.valueOf(classify(filename));
+
+        if (classifications.size() >= MAX_ENTRIES) {
+            classifications.clear();
+        }
+
+        classifications.put(filename, template);
+
+        // cleared while classifying, the result may be outdated
+        if (generation.get() != classified) {
+            classifications.remove(filename, template);
+        }
+
+        return template.booleanValue();
+    }
+
+    private boolean classify(String filename)
+    {
+        IContentTypeManager manager = Platform.getContentTypeManager();
+
+        for (IContentType type : manager.findContentTypesFor(filename)) {
+            if (ContentTypeIdForTwig.CONTENT_TYPE_ID_TWIG.equals(type.getId())) {
+                return true;
+            }
+        }
+
+        EditorMappings mappings = editorMappings;
+
+        return mappings != null && mappings.isMappedToTwigEditor(filename);
+    }
+}
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.eclipse.php.internal.core.compiler.ast.parser.php53.PhpSourceParser;
+
+import com.dubture.twig.core.index.TwigIndexingVisitorExtension;
+import com.dubture.twig.core.model.ITwigModelElement;
+import com.dubture.twig.core.model.TwigMetadata;
+import com.dubture.twig.core.model.TwigSymbolPack;
+import com.dubture.twig.core.model.TwigSymbolTable;
+
+/**
+ *
+ * Generates a {@link TwigSymbolPack} by running the
+ * {@link TwigIndexingVisitorExtension} over the PHP sources of a Twig release.
+ * The version of the release is read from <code>Twig_Environment</code> and
+ * recorded in the header of the pack.
+ *
+ * The functions <code>attribute</code>, <code>block</code> and
+ * <code>parent</code> are compiled by the expression parser instead of being
+ * declared by an extension, they are added to every pack.
+ *
+ * Run it with the classpath of the test fragment on a checkout of a tagged
+ * Twig 1.x release, then list the pack in <code>TwigSymbolPack</code> and
+ * the <code>build.properties</code> of the core plugin to bundle it:
+ *
+ * <pre>
+ * SymbolPackGenerator twig/lib/Twig ../com.dubture.twig.core/Resources/symbolpacks/twig-1.x.pack "Twig 1.x"
+ * </pre>
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class SymbolPackGenerator
+{
+
+    private static final String[] PARSER_FUNCTIONS = {"attribute", "block", "parent"};
+
+    private static final Pattern VERSION = Pattern.compile("const\\s+VERSION\\s*=\\s*'([^']+)'");
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2) {
+            System.err.println("usage: SymbolPackGenerator <source directory> <pack file> [name]");
+            System.exit(1);
+        }
+
+        List<File> files = new ArrayList<File>();
+        collect(new File(args[0]), files);
+
+        String version = null;
+
+        for (File file : files) {
+            if (file.getName().equals("Environment.php")) {
+                version = readVersion(file);
+            }
+        }
+
+        if (version == null) {
+            System.err.println("no Twig_Environment::VERSION in " + args[0]);
+            System.exit(1);
+        }
+
+        CollectingRequestor requestor = new CollectingRequestor();
+
+        for (File file : files) {
+            requestor.startFile();
+            index(file, requestor);
+        }
+
+        for (String name : PARSER_FUNCTIONS) {
+            requestor.entries.add(new TwigSymbolTable.Entry(ITwigModelElement.FUNCTION, name,
+                    TwigMetadata.encode("Twig_ExpressionParser", "", null, false, null), null, 0, 0));
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(args[1]), "UTF-8");
+
+        try {
+            TwigSymbolPack.write(writer, args.length > 2 ? args[2] : "Twig " + version, "Twig " + version,
+                    requestor.entries);
+        } finally {
+            writer.close();
+        }
+
+        System.out.println("wrote " + requestor.entries.size() + " symbols of "
+                + files.size() + " files to " + args[1]);
+    }
+
+    private static String readVersion(File file) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = VERSION.matcher(line);
+
+                if (matcher.find()) {
+                    return matcher.group(1);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        return null;
+    }
+
+    private static void collect(File directory, List<File> files)
+    {
+        File[] children = directory.listFiles();
+
+        if (children == null) {
+            return;
+        }
+
+        // sorted, so the pack only changes with the sources
+        Arrays.sort(children);
+
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collect(child, files);
+            } else if (child.getName().endsWith(".php")) {
+                files.add(child);
+            }
+        }
+    }
+
+    private static void index(File file, IIndexingRequestor requestor) throws Exception
+    {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+
+        try {
+            PhpSourceParser parser = new PhpSourceParser(file.getName());
+            ModuleDeclaration module = (ModuleDeclaration) parser.parse(reader, null, true);
+
+            TwigIndexingVisitorExtension extension = new TwigIndexingVisitorExtension();
+            extension.setRequestor(requestor);
+            extension.setSourceModule(null);
+
+            module.traverse(extension);
+        } catch (IOException e) {
+            System.err.println("unable to index " + file + ": " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Collects the symbols of all files. The offsets of tags are replaced by
+     * a number per token parser, unique across all files, which pairs the
+     * start and end tag of the parser.
+     */
+    private static class CollectingRequestor implements IIndexingRequestor
+    {
+        private final List<TwigSymbolTable.Entry> entries = new ArrayList<TwigSymbolTable.Entry>();
+        private final Map<Integer, Integer> parsers = new HashMap<Integer, Integer>();
+        private int parserCount = 0;
+
+        void startFile()
+        {
+            parsers.clear();
+        }
+
+        @Override
+        public void addDeclaration(DeclarationInfo info)
+        {
+        }
+
+        @Override
+        public void addReference(ReferenceInfo info)
+        {
+            switch (info.elementType) {
+                case ITwigModelElement.START_TAG :
+                case ITwigModelElement.END_TAG :
+                    Integer offset = Integer.valueOf(info.offset);
+                    Integer parser = parsers.get(offset);
+
+                    if (parser == null) {
+                        parser = Integer.valueOf(++parserCount);
+                        parsers.put(offset, parser);
+                    }
+
+                    entries.add(new TwigSymbolTable.Entry(info.elementType, info.name,
+                            info.metadata, null, parser.intValue(), 0));
+                    break;
+
+                case ITwigModelElement.FILTER :
+                case ITwigModelElement.FUNCTION :
+                case ITwigModelElement.TEST :
+                    entries.add(new TwigSymbolTable.Entry(info.elementType, info.name,
+                            info.metadata, null, 0, 0));
+                    break;
+            }
+        }
+    }
+}
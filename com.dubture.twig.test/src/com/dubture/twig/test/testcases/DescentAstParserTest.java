@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.dubture.twig.core.parser.ast.CompilerAstLexer;
+import com.dubture.twig.core.parser.ast.DescentAstParser;
+import com.dubture.twig.core.parser.ast.TwigAstParser;
+
+/**
+ *
+ * Compares the declarations of the {@link DescentAstParser} with the ones of
+ * the generated {@link TwigAstParser}, for valid, broken and random
+ * templates.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class DescentAstParserTest extends TestCase
+{
+
+    private static final String[] FRAGMENTS = {
+        "{{ ", " }}", "{% ", " %}", "{{", "}}", "{%", "%}", "block ", "endblock ", "for ", "item ", "path(", ")",
+        "(", "'name' ", "\"title\" ", "'", "\"", "\\", "\\.", ".", ", ", "|upper ", "<div>", " {s", "{?", "b'x'",
+        "\n", "\t", " ", "text", "{", "}", "%", "é", "_9"
+    };
+
+    @Test
+    public void testValidTemplates() throws Exception
+    {
+        assertSameDeclaration("");
+        assertSameDeclaration("<html><body></body></html>");
+        assertSameDeclaration("{% metaHttpEquiv 'Content-Type' with 'text/html; charset=utf-8' %}");
+        assertSameDeclaration("{{ path('post_show', { 'id': entity.id }) }}");
+        assertSameDeclaration("{{ '{{ entity.'~ field|replace({'_': ''}) ~' }}' }}");
+        assertSameDeclaration("{%- if loop.first and ('show' in actions) %}");
+        assertSameDeclaration("{% include ajax ? 'ajax.html' : 'not_ajax.html' %}");
+        assertSameDeclaration("{% extends \"AcmeDemoBundle::layout.html.twig\" %}\n"
+                + "{% block content %}\n"
+                + "{% for post in posts %}<p>{{ post.title|upper }}</p>{% endfor %}\n"
+                + "{{ form_widget(form.name, { 'attr': {'class': b'name'} }) }}\n"
+                + "{% endblock %}");
+    }
+
+    @Test
+    public void testBrokenTemplates() throws Exception
+    {
+        assertSameDeclaration("{% %}");
+        assertSameDeclaration("{{ }}");
+        assertSameDeclaration("{{ ( }}<p>{{ a }}</p>");
+        assertSameDeclaration("{{ foo( }}<p>{{ bar }}</p>");
+        assertSameDeclaration("{% block content ) %}x{{ y }}");
+        assertSameDeclaration("{% block ( %}x{{ y }}");
+        assertSameDeclaration("<b>{{ a }}</b>{{ a");
+        assertSameDeclaration("{% block content %}{{ f(g(a, 'b' }}{% endblock %}{%");
+    }
+
+    @Test
+    public void testLargeTemplate() throws Exception
+    {
+        StringBuilder template = new StringBuilder();
+
+        // more than the buffer of the generated lexer
+        for (int i = 0; i < 1000; i++) {
+            template.append("{% block content").append(i).append(" %}<p>{{ item.name|upper }}</p>{% endblock %}\n");
+        }
+
+        assertSameDeclaration(template.toString());
+    }
+
+    @Test
+    public void testRandomTemplates() throws Exception
+    {
+        Random random = new Random(20112);
+
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder template = new StringBuilder();
+            int fragments = 1 + random.nextInt(30);
+
+            for (int j = 0; j < fragments; j++) {
+                template.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+
+            assertSameDeclaration(template.toString());
+        }
+    }
+
+    private void assertSameDeclaration(String template) throws Exception
+    {
+        TwigAstParser parser = new TwigAstParser(new CompilerAstLexer(new StringReader(template)));
+        parser.parse();
+
+        assertEquals(template, TwigIncrementalParserTest.dump(parser.getModuleDeclaration()),
+                TwigIncrementalParserTest.dump(new DescentAstParser(template.toCharArray()).parse()));
+    }
+}
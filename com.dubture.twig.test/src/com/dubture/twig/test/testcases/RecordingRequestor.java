@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+
+import com.dubture.twig.core.index.TwigIndexingVisitor;
+import com.dubture.twig.core.parser.SourceParserUtil;
+
+/**
+ *
+ * Records the references reported by an indexing visitor, so the index tests
+ * can check them by kind.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class RecordingRequestor implements IIndexingRequestor
+{
+
+    private final List<ReferenceInfo> references = new ArrayList<ReferenceInfo>();
+
+    /**
+     * Parse the template and index it with the {@link TwigIndexingVisitor}.
+     *
+     * @param template
+     * @param kind
+     * @return the references of the given kind, in the order reported
+     * @throws Exception
+     */
+    public static List<ReferenceInfo> index(String template, int kind) throws Exception
+    {
+        RecordingRequestor requestor = new RecordingRequestor();
+        ModuleDeclaration module = SourceParserUtil.parseSourceModule(template);
+
+        module.traverse(new TwigIndexingVisitor(requestor, null, template));
+
+        return requestor.getReferences(kind);
+    }
+
+    @Override
+    public void addDeclaration(DeclarationInfo info)
+    {
+    }
+
+    @Override
+    public void addReference(ReferenceInfo info)
+    {
+        references.add(info);
+    }
+
+    /**
+     * @param kind
+     *            one of the {@link com.dubture.twig.core.model.ITwigModelElement}
+     *            kinds
+     * @return the references of the given kind, in the order reported
+     */
+    public List<ReferenceInfo> getReferences(int kind)
+    {
+        List<ReferenceInfo> result = new ArrayList<ReferenceInfo>();
+
+        for (ReferenceInfo reference : references) {
+            if (reference.elementType == kind) {
+                result.add(reference);
+            }
+        }
+
+        return result;
+    }
+}
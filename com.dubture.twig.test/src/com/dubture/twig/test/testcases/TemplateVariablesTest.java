@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.dubture.twig.core.model.TemplateVariables;
+import com.dubture.twig.core.model.TemplateVariables.Definition;
+import com.dubture.twig.core.parser.SourceParserUtil;
+
+/**
+ *
+ * Tests the scopes of the {@link TemplateVariables} extracted from a parsed
+ * template.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TemplateVariablesTest extends TestCase
+{
+
+    private static final String TEMPLATE =
+            "{% set title = 'Posts' %}\n"
+          + "{% for key, post in posts %}\n"
+          + "  {% set summary = post.body %}\n"
+          + "  {{ |1 }}\n"
+          + "{% endfor %}\n"
+          + "{% block content %}\n"
+          + "  {% set title = 'Other' %}\n"
+          + "  {{ |2 }}\n"
+          + "{% endblock %}\n"
+          + "{% macro input(name, value = none, type = 'text') %}\n"
+          + "  {{ |3 }}\n"
+          + "{% endmacro %}\n"
+          + "{% with {user: author} %}\n"
+          + "  {{ |4 }}\n"
+          + "{% endwith %}\n"
+          + "{{ |5 }}";
+
+    @Test
+    public void testForScope() throws Exception
+    {
+        assertVisible("|1", "key", "loop", "post", "summary", "title");
+    }
+
+    @Test
+    public void testBlockScope() throws Exception
+    {
+        assertVisible("|2", "title");
+
+        Definition title = getVariables().getVisible(TEMPLATE.indexOf("|2"), "t").get(0);
+        assertEquals(TEMPLATE.indexOf("title = 'Other'"), title.getOffset());
+    }
+
+    @Test
+    public void testMacroIsIsolated() throws Exception
+    {
+        assertVisible("|3", "name", "type", "value");
+    }
+
+    @Test
+    public void testWithKeys() throws Exception
+    {
+        assertVisible("|4", "title", "user");
+    }
+
+    @Test
+    public void testAfterScopes() throws Exception
+    {
+        assertVisible("|5", "title");
+        assertEquals(0, getVariables().getVisible(0, "").size());
+    }
+
+    @Test
+    public void testPrefix() throws Exception
+    {
+        List<Definition> visible = getVariables().getVisible(TEMPLATE.indexOf("|1"), "P");
+
+        assertEquals(1, visible.size());
+        assertEquals("post", visible.get(0).getName());
+    }
+
+    @Test
+    public void testValidity() throws Exception
+    {
+        TemplateVariables variables = getVariables();
+
+        assertTrue(variables.isValid(TEMPLATE));
+        assertFalse(variables.isValid(TEMPLATE + " "));
+    }
+
+    private TemplateVariables getVariables() throws Exception
+    {
+        return TemplateVariables.build(SourceParserUtil.parseSourceModule(TEMPLATE), TEMPLATE);
+    }
+
+    private void assertVisible(String marker, String... expected) throws Exception
+    {
+        List<Definition> visible = getVariables().getVisible(TEMPLATE.indexOf(marker), "");
+
+        assertEquals(expected.length, visible.size());
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], visible.get(i).getName());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.eclipse.dltk.core.index2.IIndexingRequestor.ReferenceInfo;
+import org.junit.Test;
+
+import com.dubture.twig.core.builder.TwigBuildResults;
+import com.dubture.twig.core.builder.TwigBuildStage;
+import com.dubture.twig.core.builder.TwigReferenceBuffer;
+import com.dubture.twig.core.index.TwigIndexingVisitor;
+import com.dubture.twig.core.index.TwigReferenceCollector;
+import com.dubture.twig.core.parser.SourceParserUtil;
+
+/**
+ *
+ * Compares indexing generated templates the way the indexer does on its own,
+ * parsing and visiting one template after the other, with the
+ * {@link TwigBuildStage} preparing them on an increasing number of threads
+ * before the indexer writes the prepared references. The indexer still
+ * parses every template in both cases. Not picked up by the surefire run,
+ * start it manually as a JUnit Plug-in Test.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigBuildBenchmark extends TestCase
+{
+
+    private static final int TEMPLATES = 8000;
+    private static final int WARMUP = 2;
+
+    @Test
+    public void testSpeedupByCores() throws Exception
+    {
+        List<ISourceModule> templates = new ArrayList<ISourceModule>(TEMPLATES);
+        List<String> sources = new ArrayList<String>(TEMPLATES);
+
+        for (int i = 0; i < TEMPLATES; i++) {
+            String source = generate(i);
+            sources.add(source);
+            templates.add(createTemplate("template" + i + ".html.twig", source));
+        }
+
+        CountingRequestor requestor = new CountingRequestor();
+
+        for (int i = 0; i < WARMUP; i++) {
+            indexSequential(templates, sources, requestor);
+        }
+
+        requestor.references = 0;
+        long start = System.nanoTime();
+        indexSequential(templates, sources, requestor);
+        long single = System.nanoTime() - start;
+        int references = requestor.references;
+
+        System.out.println(String.format("indexer alone: %d templates in %dms, %d references", TEMPLATES,
+                single / 1000000, references));
+
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= processors; threads *= 2) {
+            TwigBuildResults results = new TwigBuildResults();
+            HandoffStage stage = new HandoffStage(threads, results);
+
+            for (int i = 0; i < WARMUP; i++) {
+                stage.run(templates, null);
+                indexPrepared(templates, sources, results, requestor);
+            }
+
+            requestor.references = 0;
+            start = System.nanoTime();
+            stage.run(templates, null);
+            int written = indexPrepared(templates, sources, results, requestor);
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(TEMPLATES, written);
+            assertEquals(references, requestor.references);
+
+            System.out.println(String.format(
+                    "build stage on %d threads and indexer: %d templates in %dms, speedup %.2f",
+                    threads, TEMPLATES, elapsed / 1000000, (double) single / elapsed));
+
+            if (threads < processors && threads * 2 > processors) {
+                threads = processors / 2;
+            }
+        }
+    }
+
+    /**
+     * What the indexer does without the stage: parse and visit.
+     */
+    private void indexSequential(List<ISourceModule> templates, List<String> sources, IIndexingRequestor requestor)
+            throws Exception
+    {
+        for (int i = 0; i < templates.size(); i++) {
+            ModuleDeclaration module = SourceParserUtil.parseSourceModule(sources.get(i));
+            TwigReferenceCollector references = new TwigReferenceCollector(requestor);
+            module.traverse(new TwigIndexingVisitor(references, templates.get(i), sources.get(i)));
+            references.flush();
+        }
+    }
+
+    /**
+     * What the indexer does after the stage: parse, and write the prepared
+     * references of unchanged templates.
+     *
+     * @return the number of templates written from a prepared batch
+     */
+    private int indexPrepared(List<ISourceModule> templates, List<String> sources, TwigBuildResults results,
+            IIndexingRequestor requestor) throws Exception
+    {
+        int written = 0;
+
+        for (int i = 0; i < templates.size(); i++) {
+            SourceParserUtil.parseSourceModule(sources.get(i));
+            TwigReferenceBuffer.Batch batch = results.take(templates.get(i).getHandleIdentifier());
+
+            if (batch != null && batch.isIndexed(sources.get(i))) {
+                TwigReferenceCollector references = new TwigReferenceCollector(requestor);
+
+                for (ReferenceInfo info : batch.getReferences()) {
+                    references.addReference(info);
+                }
+
+                references.flush();
+                written++;
+            }
+        }
+
+        return written;
+    }
+
+    private static String generate(int i)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{% extends 'AcmeDemoBundle::layout" + (i % 10) + ".html.twig' %}\n");
+        builder.append("{% import 'AcmeDemoBundle::macros.html.twig' as forms %}\n");
+
+        for (int j = 0; j < 20; j++) {
+            builder.append("{% block content" + j + " %}\n");
+            builder.append("<div class=\"item\">{{ item" + j + ".name|upper }}</div>\n");
+            builder.append("{% include 'AcmeDemoBundle::row.html.twig' %}\n");
+            builder.append("{% endblock %}\n");
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * The stage only asks the template for its source and names.
+     */
+    private static ISourceModule createTemplate(final String name, final String source)
+    {
+        return (ISourceModule) proxy(ISourceModule.class, name, source);
+    }
+
+    private static Object proxy(final Class<?> type, final String name, final String source)
+    {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                new InvocationHandler()
+                {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        String methodName = method.getName();
+                        Class<?> returnType = method.getReturnType();
+
+                        if ("getSource".equals(methodName)) {
+                            return source;
+                        } else if (returnType == String.class) {
+                            return name;
+                        } else if (returnType == boolean.class) {
+                            return Boolean.FALSE;
+                        } else if (returnType == int.class) {
+                            return Integer.valueOf(0);
+                        } else if (returnType.isInterface()) {
+                            return proxy(returnType, name, source);
+                        }
+
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Hands the batches over without touching the model, which needs a
+     * workspace.
+     */
+    private static class HandoffStage extends TwigBuildStage
+    {
+        private final TwigBuildResults results;
+
+        public HandoffStage(int parallelism, TwigBuildResults results)
+        {
+            super(parallelism);
+            this.results = results;
+        }
+
+        @Override
+        protected void flush(List<TwigReferenceBuffer.Batch> batches)
+        {
+            for (TwigReferenceBuffer.Batch batch : batches) {
+                assertFalse(batch.isFailed());
+                results.put(batch);
+            }
+        }
+    }
+
+    private static class CountingRequestor implements IIndexingRequestor
+    {
+        int references;
+
+        @Override
+        public void addDeclaration(DeclarationInfo info)
+        {
+        }
+
+        @Override
+        public void addReference(ReferenceInfo info)
+        {
+            references++;
+        }
+    }
+}
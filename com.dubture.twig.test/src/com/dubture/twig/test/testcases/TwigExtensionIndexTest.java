@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.eclipse.php.internal.core.compiler.ast.parser.php53.PhpSourceParser;
+import org.junit.Test;
+
+import com.dubture.twig.core.index.TwigIndexingVisitorExtension;
+import com.dubture.twig.core.model.ITwigModelElement;
+
+/**
+ *
+ * Checks the callables the {@link TwigIndexingVisitorExtension} finds in a
+ * Twig extension: the legacy hashes, the simple callable lists of Twig 1.12
+ * and later, and callables backed by native PHP functions.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class TwigExtensionIndexTest extends TestCase
+{
+
+    private static final String EXTENSION =
+            "<?php\n"
+          + "class Acme_Extension extends Twig_Extension\n"
+          + "{\n"
+          + "    public function getFilters()\n"
+          + "    {\n"
+          + "        return array(\n"
+          + "            'rot13' => new Twig_Filter_Function('acme_rot13'),\n"
+          + "            new Twig_SimpleFilter('upper', 'strtoupper'),\n"
+          + "            new Twig_SimpleFilter('price', array($this, 'priceFilter')),\n"
+          + "        );\n"
+          + "    }\n"
+          + "\n"
+          + "    public function getFunctions()\n"
+          + "    {\n"
+          + "        return array(\n"
+          + "            new Twig_SimpleFunction('range', 'range'),\n"
+          + "            new Twig_SimpleFunction('dump', 'acme_dump', array('needs_context' => true)),\n"
+          + "        );\n"
+          + "    }\n"
+          + "\n"
+          + "    public function getTests()\n"
+          + "    {\n"
+          + "        return array(\n"
+          + "            new Twig_SimpleTest('odd', null, array('node_class' => 'Twig_Node_Expression_Test_Odd')),\n"
+          + "        );\n"
+          + "    }\n"
+          + "\n"
+          + "    public function priceFilter($number, $decimals = 2)\n"
+          + "    {\n"
+          + "        return number_format($number, $decimals);\n"
+          + "    }\n"
+          + "\n"
+          + "    public function getName()\n"
+          + "    {\n"
+          + "        return 'acme';\n"
+          + "    }\n"
+          + "}\n"
+          + "\n"
+          + "function acme_rot13($value)\n"
+          + "{\n"
+          + "    return str_rot13($value);\n"
+          + "}\n"
+          + "\n"
+          + "function acme_dump($context)\n"
+          + "{\n"
+          + "    var_dump($context);\n"
+          + "}\n";
+
+    @Test
+    public void testFilters() throws Exception
+    {
+        assertNames(ITwigModelElement.FILTER, "price", "rot13", "upper");
+    }
+
+    @Test
+    public void testFunctions() throws Exception
+    {
+        assertNames(ITwigModelElement.FUNCTION, "dump", "range");
+    }
+
+    @Test
+    public void testTests() throws Exception
+    {
+        assertNames(ITwigModelElement.TEST, "odd");
+    }
+
+    private void assertNames(int kind, String... expected) throws Exception
+    {
+        PhpSourceParser parser = new PhpSourceParser("Acme_Extension.php");
+        ModuleDeclaration module = (ModuleDeclaration) parser.parse(new StringReader(EXTENSION), null, true);
+        RecordingRequestor requestor = new RecordingRequestor();
+
+        TwigIndexingVisitorExtension extension = new TwigIndexingVisitorExtension();
+        extension.setRequestor(requestor);
+        extension.setSourceModule(null);
+        module.traverse(extension);
+
+        Set<String> names = new TreeSet<String>();
+
+        for (IIndexingRequestor.ReferenceInfo reference : requestor.getReferences(kind)) {
+            names.add(reference.name);
+        }
+
+        assertEquals(new TreeSet<String>(Arrays.asList(expected)), names);
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ast.ASTNode;
+import org.eclipse.dltk.ast.ASTVisitor;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.expressions.Literal;
+import org.junit.Test;
+
+import com.dubture.twig.core.parser.SourceParserUtil;
+import com.dubture.twig.core.parser.TwigIncrementalParser;
+import com.dubture.twig.core.parser.ast.node.BlockStatement;
+import com.dubture.twig.core.parser.ast.node.TwigCallExpression;
+import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+import com.dubture.twig.core.parser.error.TwigError;
+
+/**
+ *
+ * Compares the declarations of the {@link TwigIncrementalParser} with the
+ * ones of a full parse, for random edits of random templates.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigIncrementalParserTest extends TestCase
+{
+
+    private static final String[] FRAGMENTS = {
+        "{{ ", " }}", "{% ", " %}", "block ", "endblock ", "if ", "endif ", "for ", "item ", "in ", "items ",
+        "path(", ")", "'name' ", "\"title\" ", "'", "\"", "\\", ", ", "|upper ", "<div>", "</div>", "\n", " ",
+        "text", "{", "}", "%"
+    };
+
+    private static final String TEMPLATE =
+            "<html>{% block content %}\n"
+          + "{% for post in posts %}<p>{{ post.title|upper }}</p>{% endfor %}\n"
+          + "{{ path('post_show', {'id': post.id}) }}\n"
+          + "{% endblock %}</html>";
+
+    @Test
+    public void testUnchanged() throws Exception
+    {
+        assertReparse(TEMPLATE, TEMPLATE);
+    }
+
+    @Test
+    public void testEditInsideTag() throws Exception
+    {
+        assertReparse(TEMPLATE, TEMPLATE.replace("post.title", "post.subtitle"));
+    }
+
+    @Test
+    public void testEditInsideHtml() throws Exception
+    {
+        assertReparse(TEMPLATE, TEMPLATE.replace("<p>", "<p class=\"post\">"));
+    }
+
+    @Test
+    public void testOpenTag() throws Exception
+    {
+        assertReparse(TEMPLATE, TEMPLATE.replace("<html>", "<html>{{ title"));
+    }
+
+    @Test
+    public void testRemoveClosingTag() throws Exception
+    {
+        assertReparse(TEMPLATE, TEMPLATE.replace("post.title|upper }}", "post.title|upper "));
+    }
+
+    @Test
+    public void testRandomEdits() throws Exception
+    {
+        Random random = new Random(20111);
+
+        for (int i = 0; i < 300; i++) {
+            String source = randomText(random, 5 + random.nextInt(40));
+
+            for (int j = 0; j < 10; j++) {
+                int offset = random.nextInt(source.length() + 1);
+                int removed = random.nextInt(Math.min(8, source.length() - offset) + 1);
+                String inserted = random.nextBoolean() ? randomText(random, random.nextInt(3)) : "";
+                String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+
+                assertReparse(source, edited);
+                source = edited;
+            }
+        }
+    }
+
+    private String randomText(Random random, int fragments)
+    {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < fragments; i++) {
+            text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+
+        return text.toString();
+    }
+
+    private void assertReparse(String oldSource, String newSource) throws Exception
+    {
+        ModuleDeclaration previous = SourceParserUtil.parseSourceModule(oldSource);
+        String before = dump(previous);
+        ModuleDeclaration incremental = TwigIncrementalParser.reparse(previous, oldSource, newSource);
+
+        assertEquals(oldSource + " -> " + newSource, dump(SourceParserUtil.parseSourceModule(newSource)),
+                dump(incremental));
+        assertEquals("the previous declaration has been modified", before, dump(previous));
+    }
+
+    static String dump(ModuleDeclaration module) throws Exception
+    {
+        final StringBuilder dump = new StringBuilder();
+
+        dump.append(module.getClass().getSimpleName()).append(' ').append(module.sourceStart()).append(' ')
+                .append(module.sourceEnd()).append('\n');
+
+        for (Object statement : module.getStatements()) {
+            ((ASTNode) statement).traverse(new ASTVisitor()
+            {
+                @Override
+                public boolean visitGeneral(ASTNode node) throws Exception
+                {
+                    dump.append(node.getClass().getSimpleName()).append(' ').append(node.sourceStart()).append(' ')
+                            .append(node.sourceEnd());
+
+                    if (node instanceof Literal) {
+                        dump.append(' ').append(((Literal) node).getValue());
+                    } else if (node instanceof TwigCallExpression) {
+                        dump.append(' ').append(((TwigCallExpression) node).getName());
+                    } else if (node instanceof BlockStatement) {
+                        dump.append(' ').append(((BlockStatement) node).getTag());
+                    }
+
+                    dump.append('\n');
+                    return true;
+                }
+            });
+        }
+
+        if (module instanceof TwigModuleDeclaration) {
+            for (TwigError error : ((TwigModuleDeclaration) module).getErrors()) {
+                dump.append(error).append('\n');
+            }
+        }
+
+        return dump.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.eclipse.php.internal.core.compiler.ast.parser.php53.PhpSourceParser;
+import org.junit.Test;
+
+import com.dubture.twig.core.index.TwigIndexingVisitorExtension;
+import com.dubture.twig.core.model.ITwigModelElement;
+
+/**
+ *
+ * Measures the {@link TwigIndexingVisitorExtension} on the Twig core
+ * extension, <code>lib/Twig/Extension/Core.php</code> of Twig 1.15, vendored
+ * with its license under <code>Resources/Twig</code>. Another version can be
+ * passed as <code>-Dtwig.core=&lt;path&gt;</code>. Not picked up by the
+ * surefire run, start it manually as a JUnit Plug-in Test.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+@SuppressWarnings("restriction")
+public class TwigIndexingBenchmark extends TestCase
+{
+
+    private static final String CORE_EXTENSION = "Resources/Twig/Extension/Core.php";
+
+    private static final int WARMUP = 50;
+    private static final int RUNS = 500;
+
+    @Test
+    public void testIndexCoreExtension() throws Exception
+    {
+        String path = System.getProperty("twig.core",
+                System.getProperty("user.dir") + "/" + CORE_EXTENSION);
+
+        assertTrue("core extension not found: " + path, new File(path).isFile());
+
+        FileInputStream input = new FileInputStream(new File(path));
+
+        StringBuffer buffer = new StringBuffer();
+        int ch;
+
+        while ((ch = input.read()) != -1) {
+            buffer.append((char) ch);
+        }
+
+        input.close();
+
+        PhpSourceParser parser = new PhpSourceParser("Twig_Extension_Core.php");
+        ModuleDeclaration module = (ModuleDeclaration) parser.parse(
+                new StringReader(buffer.toString()), null, true);
+
+        CountingRequestor requestor = new CountingRequestor();
+
+        for (int i = 0; i < WARMUP; i++) {
+            index(module, requestor);
+        }
+
+        requestor.references = 0;
+        long start = System.nanoTime();
+
+        for (int i = 0; i < RUNS; i++) {
+            index(module, requestor);
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(requestor.references > 0);
+
+        System.out.println("indexed " + path + " " + RUNS + " times in "
+                + (elapsed / 1000000) + "ms, " + (elapsed / RUNS / 1000)
+                + "us per module, " + (requestor.references / RUNS)
+                + " symbols");
+    }
+
+    /**
+     * Runs the extension directly over the php module. The PHP indexing
+     * visitor is left out so only the twig extension is measured.
+     */
+    private void index(ModuleDeclaration module, IIndexingRequestor requestor) throws Exception
+    {
+        TwigIndexingVisitorExtension extension = new TwigIndexingVisitorExtension();
+        extension.setRequestor(requestor);
+        extension.setSourceModule(null);
+
+        // ends with endvisit(ModuleDeclaration), which reports the symbols
+        module.traverse(extension);
+    }
+
+    private static class CountingRequestor implements IIndexingRequestor
+    {
+        int references;
+
+        @Override
+        public void addDeclaration(DeclarationInfo info)
+        {
+        }
+
+        @Override
+        public void addReference(ReferenceInfo info)
+        {
+            switch (info.elementType) {
+                case ITwigModelElement.FILTER :
+                case ITwigModelElement.FUNCTION :
+                case ITwigModelElement.TEST :
+                    references++;
+                    break;
+            }
+        }
+    }
+}
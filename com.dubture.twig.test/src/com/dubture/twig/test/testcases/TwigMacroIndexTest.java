@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.junit.Test;
+
+import com.dubture.twig.core.index.TwigIndexingVisitor;
+import com.dubture.twig.core.model.ITwigModelElement;
+import com.dubture.twig.core.model.TwigMetadata;
+
+/**
+ *
+ * Tests the indexing of macro declarations and macro imports by the
+ * {@link TwigIndexingVisitor}.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigMacroIndexTest extends TestCase
+{
+
+    @Test
+    public void testMacroDeclaration() throws Exception
+    {
+        String template = "{% macro input(name, value = none, type = 'text') %}{% endmacro %}";
+        List<IIndexingRequestor.ReferenceInfo> macros = RecordingRequestor.index(template, ITwigModelElement.MACRO);
+
+        assertEquals(1, macros.size());
+        assertEquals("input", macros.get(0).name);
+        assertEquals(template.indexOf("input"), macros.get(0).offset);
+
+        TwigMetadata metadata = TwigMetadata.decode(macros.get(0).metadata);
+
+        assertEquals(3, metadata.getArgumentCount());
+        assertEquals("value", metadata.getArgumentName(1));
+        assertEquals("none", metadata.getArgumentDefault(1));
+        assertEquals("type", metadata.getArgumentName(2));
+        assertEquals("text", metadata.getArgumentDefault(2));
+        assertEquals("", metadata.getArgumentDefault(0));
+    }
+
+    @Test
+    public void testImport() throws Exception
+    {
+        List<IIndexingRequestor.ReferenceInfo> aliases = RecordingRequestor.index(
+                "{% import 'forms.html.twig' as forms %}{% import _self as local %}",
+                ITwigModelElement.IMPORT_ALIAS);
+
+        assertEquals(2, aliases.size());
+        assertEquals("forms", aliases.get(0).name);
+        assertEquals("forms.html.twig", aliases.get(0).qualifier);
+        assertEquals("", TwigMetadata.decode(aliases.get(0).metadata).getMacro());
+        assertEquals("local", aliases.get(1).name);
+        assertEquals("_self", aliases.get(1).qualifier);
+    }
+
+    @Test
+    public void testFromImport() throws Exception
+    {
+        List<IIndexingRequestor.ReferenceInfo> aliases = RecordingRequestor.index(
+                "{% from 'forms.html.twig' import input as field, textarea %}",
+                ITwigModelElement.IMPORT_ALIAS);
+
+        assertEquals(2, aliases.size());
+        assertEquals("field", aliases.get(0).name);
+        assertEquals("input", TwigMetadata.decode(aliases.get(0).metadata).getMacro());
+        assertEquals("", TwigMetadata.decode(aliases.get(0).metadata).getInternalFunction());
+        assertEquals("textarea", aliases.get(1).name);
+        assertEquals("textarea", TwigMetadata.decode(aliases.get(1).metadata).getMacro());
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.dubture.twig.core.model.TwigMetadata;
+
+/**
+ *
+ * Tests for the {@link TwigMetadata} index encoding.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigMetadataTest extends TestCase
+{
+
+    @Test
+    public void testRoundTrip()
+    {
+        Map<String, String> args = new LinkedHashMap<String, String>();
+        args.put("format", "null");
+        args.put("timezone", "null");
+
+        String encoded = TwigMetadata.encode("Twig_Extension_Core",
+                "twig_date_format_filter", "Formats a date.", false, args);
+
+        assertFalse(TwigMetadata.needsReindex(encoded));
+
+        TwigMetadata data = TwigMetadata.decode(encoded);
+
+        assertEquals("Twig_Extension_Core", data.getPhpClass());
+        assertEquals("twig_date_format_filter", data.getInternalFunction());
+        assertEquals("Formats a date.", data.getDoc());
+        assertFalse(data.isOpenClose());
+        assertEquals(2, data.getArgumentCount());
+        assertEquals("timezone", data.getArgumentName(1));
+        assertEquals(args, data.getArguments());
+    }
+
+    @Test
+    public void testEmptyFields()
+    {
+        TwigMetadata data = TwigMetadata.decode(TwigMetadata.encode(null,
+                null, null, true, null));
+
+        assertEquals("", data.getPhpClass());
+        assertEquals("", data.getDoc());
+        assertTrue(data.isOpenClose());
+        assertEquals(0, data.getArgumentCount());
+
+        data = TwigMetadata.decode(null);
+
+        assertEquals("", data.getInternalFunction());
+        assertFalse(data.isOpenClose());
+    }
+
+    @Test
+    public void testVersion1()
+    {
+        // an import alias and the bundled filters, written before the macro field
+        String alias = "\u00011\u001f\u001finput\u001f0\u001f";
+        String filter = "\u00011\u001fTwig_Extension_Core\u001ftwig_round\u001f0\u001fRounds a number.\u001f$value\u001f\u001f$precision\u001f0";
+
+        assertFalse(TwigMetadata.needsReindex(alias));
+        assertEquals("input", TwigMetadata.decode(alias).getMacro());
+
+        TwigMetadata data = TwigMetadata.decode(filter);
+
+        assertEquals("twig_round", data.getInternalFunction());
+        assertEquals(2, data.getArgumentCount());
+        assertEquals("$precision", data.getArgumentName(1));
+        assertEquals("0", data.getArgumentDefault(1));
+    }
+
+    @Test
+    public void testLegacyJSON()
+    {
+        String json = "{\"phpClass\":\"Twig_TokenParser_Block\",\"doc\":\"Marks a section\",\"is_open_close\":true}";
+
+        assertTrue(TwigMetadata.needsReindex(json));
+
+        TwigMetadata data = TwigMetadata.decode(json);
+
+        assertEquals("Twig_TokenParser_Block", data.getPhpClass());
+        assertEquals("Marks a section", data.getDoc());
+        assertTrue(data.isOpenClose());
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.junit.Test;
+
+import com.dubture.twig.core.parser.TwigModuleCache;
+
+/**
+ *
+ * Tests the lookup and the eviction of the {@link TwigModuleCache}.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigModuleCacheTest extends TestCase
+{
+
+    private static final String TEMPLATE = "{% block content %}{{ title|upper }}{% endblock %}";
+
+    @Test
+    public void testUnchangedSource() throws Exception
+    {
+        TwigModuleCache cache = new TwigModuleCache(10, 10000);
+        ModuleDeclaration module = cache.get("index.html.twig", TEMPLATE);
+
+        assertSame(module, cache.get("index.html.twig", new String(TEMPLATE)));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testChangedSource() throws Exception
+    {
+        TwigModuleCache cache = new TwigModuleCache(10, 10000);
+        ModuleDeclaration module = cache.get("index.html.twig", TEMPLATE);
+        ModuleDeclaration changed = cache.get("index.html.twig", TEMPLATE + "{{ footer }}");
+
+        assertNotSame(module, changed);
+        assertEquals(1, cache.size());
+        assertEquals(TEMPLATE.length() + "{{ footer }}".length(), cache.getWeight());
+        assertNotSame(module, cache.get("index.html.twig", TEMPLATE));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception
+    {
+        TwigModuleCache cache = new TwigModuleCache(2, 10000);
+        ModuleDeclaration first = cache.get("first", TEMPLATE);
+        ModuleDeclaration second = cache.get("second", TEMPLATE);
+
+        cache.get("first", TEMPLATE);
+        cache.get("third", TEMPLATE);
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get("first", TEMPLATE));
+        assertNotSame(second, cache.get("second", TEMPLATE));
+    }
+
+    @Test
+    public void testEvictsByWeight() throws Exception
+    {
+        TwigModuleCache cache = new TwigModuleCache(10, TEMPLATE.length() * 2);
+
+        cache.get("first", TEMPLATE);
+        cache.get("second", TEMPLATE);
+        cache.get("third", TEMPLATE);
+
+        assertEquals(2, cache.size());
+        assertEquals(TEMPLATE.length() * 2, cache.getWeight());
+    }
+
+    @Test
+    public void testAnonymousSource() throws Exception
+    {
+        TwigModuleCache cache = new TwigModuleCache(10, 10000);
+        ModuleDeclaration module = cache.get(null, TEMPLATE);
+
+        assertSame(module, cache.get(null, TEMPLATE));
+        assertNotSame(module, cache.get(null, TEMPLATE + " "));
+    }
+}
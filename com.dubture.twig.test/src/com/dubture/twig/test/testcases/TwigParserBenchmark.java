@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.dubture.twig.core.parser.ast.CompilerAstLexer;
+import com.dubture.twig.core.parser.ast.DescentAstParser;
+import com.dubture.twig.core.parser.ast.TwigAstParser;
+
+/**
+ *
+ * Compares the throughput and the allocation rate of the generated
+ * {@link TwigAstParser} and the {@link DescentAstParser} on generated
+ * templates. Not picked up by the surefire run, start it manually as a JUnit
+ * Plug-in Test.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigParserBenchmark extends TestCase
+{
+
+    private static final int TEMPLATES = 200;
+    private static final int WARMUP = 20;
+    private static final int RUNS = 50;
+
+    @Test
+    public void testParserEngines() throws Exception
+    {
+        List<String> templates = new ArrayList<String>(TEMPLATES);
+        long characters = 0;
+
+        for (int i = 0; i < TEMPLATES; i++) {
+            String template = generate(i);
+            templates.add(template);
+            characters += template.length();
+        }
+
+        Engine lr = new Engine("lr")
+        {
+            @Override
+            int parse(String template) throws Exception
+            {
+                TwigAstParser parser = new TwigAstParser(new CompilerAstLexer(new StringReader(template)));
+                parser.parse();
+                return parser.getModuleDeclaration().getStatements().size();
+            }
+        };
+
+        Engine descent = new Engine("descent")
+        {
+            @Override
+            int parse(String template) throws Exception
+            {
+                return new DescentAstParser(template.toCharArray()).parse().getStatements().size();
+            }
+        };
+
+        assertEquals(lr.run(templates, 1), descent.run(templates, 1));
+
+        lr.run(templates, WARMUP);
+        descent.run(templates, WARMUP);
+
+        lr.measure(templates, characters);
+        descent.measure(templates, characters);
+    }
+
+    private static String generate(int i)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{% extends 'AcmeDemoBundle::layout" + (i % 10) + ".html.twig' %}\n");
+        builder.append("{% import 'AcmeDemoBundle::macros.html.twig' as forms %}\n");
+
+        for (int j = 0; j < 20; j++) {
+            builder.append("{% block content" + j + " %}\n");
+            builder.append("<div class=\"item\">{{ item" + j + ".name|upper }}</div>\n");
+            builder.append("{% for post in posts %}<a href=\"{{ path('post_show', {'id': post.id}) }}\">");
+            builder.append("{{ post.title|default('untitled') }}</a>{% endfor %}\n");
+            builder.append("{% include 'AcmeDemoBundle::row.html.twig' with {'item': item" + j + "} %}\n");
+            builder.append("{% endblock %}\n");
+        }
+
+        return builder.toString();
+    }
+
+    private static abstract class Engine
+    {
+        private final String name;
+
+        Engine(String name)
+        {
+            this.name = name;
+        }
+
+        abstract int parse(String template) throws Exception;
+
+        int run(List<String> templates, int runs) throws Exception
+        {
+            int statements = 0;
+
+            for (int i = 0; i < runs; i++) {
+                for (String template : templates) {
+                    statements += parse(template);
+                }
+            }
+
+            return statements;
+        }
+
+        void measure(List<String> templates, long characters) throws Exception
+        {
+            long allocated = getAllocatedBytes();
+            long start = System.nanoTime();
+
+            run(templates, RUNS);
+
+            long elapsed = System.nanoTime() - start;
+            long parsed = (long) templates.size() * RUNS;
+
+            if (allocated >= 0) {
+                allocated = (getAllocatedBytes() - allocated) / parsed;
+            }
+
+            System.out.println(String.format(
+                    "%s: %.0f templates/s, %.1f MB/s, %d bytes allocated per template",
+                    name, parsed * 1e9 / elapsed, characters * RUNS * 1e3 / elapsed,
+                    allocated));
+        }
+    }
+
+    /**
+     * @return the bytes allocated by the current thread, or -1 if the VM
+     *         does not count them
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+}
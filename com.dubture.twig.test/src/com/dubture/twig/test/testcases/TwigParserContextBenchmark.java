@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.dubture.twig.core.parser.TwigParserContext;
+import com.dubture.twig.core.parser.ast.CompilerAstLexer;
+import com.dubture.twig.core.parser.ast.DescentAstParser;
+import com.dubture.twig.core.parser.ast.TwigAstParser;
+
+/**
+ *
+ * Measures the fixed cost of a parse on tiny templates, with new lexer and
+ * parser instances for every template and with the reused ones of a
+ * {@link TwigParserContext}. Not picked up by the surefire run, start it
+ * manually as a JUnit Plug-in Test.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigParserContextBenchmark extends TestCase
+{
+
+    private static final String[] TEMPLATES = {
+        "{{ title }}", "<p>{{ post.title|upper }}</p>", "{% block content %}{% endblock %}", "<br/>"
+    };
+
+    private static final int WARMUP = 20000;
+    private static final int RUNS = 200000;
+
+    @Test
+    public void testFixedCost() throws Exception
+    {
+        Setup lr = new Setup("lr, new instances")
+        {
+            @Override
+            int parse(String template) throws Exception
+            {
+                TwigAstParser parser = new TwigAstParser(new CompilerAstLexer(new StringReader(template)));
+                parser.parse();
+                return parser.getModuleDeclaration().getStatements().size();
+            }
+        };
+
+        Setup lrContext = new Setup("lr, context")
+        {
+            @Override
+            int parse(String template) throws Exception
+            {
+                TwigParserContext context = TwigParserContext.acquire();
+
+                try {
+                    return context.parse(new StringReader(template)).getStatements().size();
+                } finally {
+                    context.release();
+                }
+            }
+        };
+
+        Setup descent = new Setup("descent, new instances")
+        {
+            @Override
+            int parse(String template) throws Exception
+            {
+                return new DescentAstParser(template.toCharArray()).parse().getStatements().size();
+            }
+        };
+
+        Setup descentContext = new Setup("descent, context")
+        {
+            @Override
+            int parse(String template) throws Exception
+            {
+                TwigParserContext context = TwigParserContext.acquire();
+
+                try {
+                    return context.parseDescent(template).getStatements().size();
+                } finally {
+                    context.release();
+                }
+            }
+        };
+
+        Setup[] setups = { lr, lrContext, descent, descentContext };
+
+        for (Setup setup : setups) {
+            assertEquals(lr.run(1), setup.run(1));
+            setup.run(WARMUP);
+        }
+
+        for (Setup setup : setups) {
+            setup.measure();
+        }
+    }
+
+    private static abstract class Setup
+    {
+        private final String name;
+
+        Setup(String name)
+        {
+            this.name = name;
+        }
+
+        abstract int parse(String template) throws Exception;
+
+        int run(int runs) throws Exception
+        {
+            int statements = 0;
+
+            for (int i = 0; i < runs; i++) {
+                statements += parse(TEMPLATES[i % TEMPLATES.length]);
+            }
+
+            return statements;
+        }
+
+        void measure() throws Exception
+        {
+            long allocated = getAllocatedBytes();
+            long start = System.nanoTime();
+
+            run(RUNS);
+
+            long elapsed = System.nanoTime() - start;
+
+            if (allocated >= 0) {
+                allocated = (getAllocatedBytes() - allocated) / RUNS;
+            }
+
+            System.out.println(String.format("%s: %d ns per parse, %d bytes allocated per parse", name, elapsed
+                    / RUNS, allocated));
+        }
+    }
+
+    /**
+     * @return the bytes allocated by the current thread, or -1 if the VM
+     *         does not count them
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.dubture.twig.core.parser.TwigParserContext;
+import com.dubture.twig.core.parser.ast.CompilerAstLexer;
+import com.dubture.twig.core.parser.ast.TwigAstParser;
+
+/**
+ *
+ * Checks that a reused {@link TwigParserContext} parses every template as a
+ * new parser would, whatever the template parsed before left behind.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigParserContextTest extends TestCase
+{
+
+    private static final String[] TEMPLATES = {
+        "{% block content %}<p>{{ post.title|upper }}</p>{% endblock %}",
+        "{{ ( }}<p>{{ a }}</p>",
+        "{% block content %}{{ f(g(a, 'b' }}{% endblock %}{%",
+        "",
+        "<b>{{ a }}</b>{{ a",
+        "{{ path('post_show', { 'id': entity.id }) }}",
+        "{% block content ) %}x{{ y }}",
+    };
+
+    @Test
+    public void testReuse() throws Exception
+    {
+        StringBuilder large = new StringBuilder();
+
+        // grows both buffers beyond the size kept by the context
+        for (int i = 0; i < 2000; i++) {
+            large.append("{% block content").append(i).append(" %}<p>{{ item.name|upper }}</p>{% endblock %}\n");
+        }
+
+        for (int run = 0; run < 2; run++) {
+            for (String template : TEMPLATES) {
+                assertReuse(template);
+            }
+
+            assertReuse(large.toString());
+        }
+    }
+
+    @Test
+    public void testNested() throws Exception
+    {
+        TwigParserContext context = TwigParserContext.acquire();
+        TwigParserContext nested = TwigParserContext.acquire();
+
+        assertNotSame(context, nested);
+        assertEquals(expected(TEMPLATES[0]), TwigIncrementalParserTest.dump(nested.parse(new StringReader(TEMPLATES[0]))));
+        nested.release();
+        context.release();
+
+        assertSame(context, TwigParserContext.acquire());
+        context.release();
+    }
+
+    @Test
+    public void testThreads() throws Exception
+    {
+        final TwigParserContext[] other = new TwigParserContext[1];
+        TwigParserContext context = TwigParserContext.acquire();
+        context.release();
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                other[0] = TwigParserContext.acquire();
+                other[0].release();
+            }
+        };
+
+        thread.start();
+        thread.join();
+
+        assertNotNull(other[0]);
+        assertNotSame(context, other[0]);
+    }
+
+    private void assertReuse(String template) throws Exception
+    {
+        String expected = expected(template);
+        TwigParserContext context = TwigParserContext.acquire();
+
+        try {
+            assertEquals(template, expected, TwigIncrementalParserTest.dump(context.parse(new StringReader(template))));
+            assertEquals(template, expected, TwigIncrementalParserTest.dump(context.parseDescent(template)));
+            assertEquals(template, expected,
+                    TwigIncrementalParserTest.dump(context.parseDescent(new StringReader(template))));
+        } finally {
+            context.release();
+        }
+    }
+
+    private String expected(String template) throws Exception
+    {
+        TwigAstParser parser = new TwigAstParser(new CompilerAstLexer(new StringReader(template)));
+        parser.parse();
+
+        return TwigIncrementalParserTest.dump(parser.getModuleDeclaration());
+    }
+}
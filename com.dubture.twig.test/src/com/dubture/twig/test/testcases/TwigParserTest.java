@@ -16,6 +16,10 @@ import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
 import org.junit.Test;
 
 import com.dubture.twig.core.parser.SourceParserUtil;
+import com.dubture.twig.core.parser.ast.node.BlockStatement;
+import com.dubture.twig.core.parser.ast.node.PrintStatement;
+import com.dubture.twig.core.parser.ast.node.TwigModuleDeclaration;
+import com.dubture.twig.core.parser.error.TwigError;
 
 public class TwigParserTest extends TestCase
 {
@@ -235,6 +239,48 @@ public class TwigParserTest extends TestCase
         assertValidTokenstream("{% include ajax ? 'ajax.html' : 'not_ajax.html' %}");
     }
 
+    @Test
+    public void testBrokenPrint() throws Exception
+    {
+        TwigModuleDeclaration module = assertErrors("{{ foo( }}<p>{{ bar }}</p>", 4, 1);
+
+        assertTrue(module.getStatements().get(0) instanceof PrintStatement);
+        assertTrue(module.getStatements().get(2) instanceof PrintStatement);
+        assertEquals(8, module.getErrors().get(0).getSourceStart());
+    }
+
+    @Test
+    public void testBrokenBlock() throws Exception
+    {
+        TwigModuleDeclaration module = assertErrors("{% block content ) %}x{{ y }}", 3, 1);
+
+        assertEquals("block", ((BlockStatement) module.getStatements().get(0)).getTag());
+        assertEquals(17, module.getErrors().get(0).getSourceStart());
+    }
+
+    @Test
+    public void testUnclosedTag() throws Exception
+    {
+        TwigModuleDeclaration module = assertErrors("<b>{{ a }}</b>{{ a", 4, 1);
+        TwigError error = module.getErrors().get(0);
+
+        assertEquals(18, ((PrintStatement) module.getStatements().get(3)).sourceEnd());
+        assertEquals(18, error.getSourceStart());
+
+        assertErrors("{% block content %}{{ a }}{% endblock %}{%", 3, 1);
+    }
+
+    private TwigModuleDeclaration assertErrors(String tokens, int statements, int errors) throws IOException
+    {
+        ModuleDeclaration module = SourceParserUtil.parseSourceModule(tokens);
+
+        assertTrue(module instanceof TwigModuleDeclaration);
+        assertEquals(statements, module.getStatements().size());
+        assertEquals(errors, ((TwigModuleDeclaration) module).getErrors().size());
+
+        return (TwigModuleDeclaration) module;
+    }
+
     private void assertValidTokenstream(String tokens)
     {
         try {
@@ -242,6 +288,7 @@ public class TwigParserTest extends TestCase
             ModuleDeclaration module = SourceParserUtil.parseSourceModule(tokens);            
             assertNotNull(module);            
             assertEquals(1, module.getStatements().size());            
+            assertFalse(((TwigModuleDeclaration) module).hasErrors());
 
         } catch (Exception e) {
             e.printStackTrace();
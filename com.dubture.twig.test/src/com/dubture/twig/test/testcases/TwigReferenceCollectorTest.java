@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.junit.Test;
+
+import com.dubture.twig.core.index.TwigIndexingVisitor;
+import com.dubture.twig.core.index.TwigReferenceCollector;
+import com.dubture.twig.core.model.ITwigModelElement;
+import com.dubture.twig.core.parser.SourceParserUtil;
+
+/**
+ *
+ * Tests the deduplication of references by the {@link TwigReferenceCollector}.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigReferenceCollectorTest extends TestCase
+{
+
+    private static final String TEMPLATE =
+            "{% set title = 'Posts' %}\n"
+          + "{% if title %}{{ title|upper }}{% endif %}";
+
+    private List<IIndexingRequestor.ReferenceInfo> written = new ArrayList<IIndexingRequestor.ReferenceInfo>();
+
+    private IIndexingRequestor requestor = new IIndexingRequestor()
+    {
+        @Override
+        public void addDeclaration(DeclarationInfo info)
+        {
+        }
+
+        @Override
+        public void addReference(ReferenceInfo info)
+        {
+            written.add(info);
+        }
+    };
+
+    @Test
+    public void testFlushOnce() throws Exception
+    {
+        TwigReferenceCollector collector = new TwigReferenceCollector(requestor);
+        SourceParserUtil.parseSourceModule(TEMPLATE).traverse(new TwigIndexingVisitor(collector, null, TEMPLATE));
+
+        assertEquals(0, written.size());
+
+        int count = collector.flush();
+
+        assertTrue(count > 0);
+        assertEquals(count, written.size());
+        assertEquals(0, collector.size());
+        assertEquals(0, collector.flush());
+        assertEquals(count, written.size());
+    }
+
+    @Test
+    public void testDuplicates() throws Exception
+    {
+        TwigReferenceCollector collector = new TwigReferenceCollector(requestor);
+        ModuleDeclaration module = SourceParserUtil.parseSourceModule(TEMPLATE);
+        TwigIndexingVisitor visitor = new TwigIndexingVisitor(collector, null, TEMPLATE);
+
+        module.traverse(visitor);
+        int distinct = collector.size();
+        module.traverse(visitor);
+
+        assertEquals(distinct, collector.size());
+        assertEquals(2 * distinct, collector.getReported());
+        assertEquals(distinct, collector.flush());
+    }
+
+    @Test
+    public void testSameNameDifferentOffset() throws Exception
+    {
+        TwigReferenceCollector collector = new TwigReferenceCollector(requestor);
+
+        collector.addReference(new IIndexingRequestor.ReferenceInfo(ITwigModelElement.FILTER_USAGE, 3, 5, "upper", null, null));
+        collector.addReference(new IIndexingRequestor.ReferenceInfo(ITwigModelElement.FILTER_USAGE, 3, 5, "upper", "other", null));
+        collector.addReference(new IIndexingRequestor.ReferenceInfo(ITwigModelElement.FILTER_USAGE, 9, 5, "upper", null, null));
+        collector.addReference(new IIndexingRequestor.ReferenceInfo(ITwigModelElement.FUNCTION_USAGE, 3, 5, "upper", null, null));
+
+        assertEquals(3, collector.flush());
+        assertNull(written.get(0).metadata);
+    }
+}
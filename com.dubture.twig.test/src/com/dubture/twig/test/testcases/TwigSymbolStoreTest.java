@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.dubture.twig.core.model.ITwigModelElement;
+import com.dubture.twig.core.model.TwigMetadata;
+import com.dubture.twig.core.model.TwigSymbolStore;
+import com.dubture.twig.core.model.TwigSymbolTable.Entry;
+
+/**
+ *
+ * Tests for the sharing of identical symbols in the {@link TwigSymbolStore}.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigSymbolStoreTest extends TestCase
+{
+
+    @Test
+    public void testIdenticalModulesShareSymbols()
+    {
+        TwigSymbolStore store = TwigSymbolStore.getDefault();
+
+        List<Entry> first = store.share(null, createEntries());
+        List<Entry> reversed = createEntries();
+        Collections.reverse(reversed);
+        List<Entry> second = store.share(null, reversed);
+
+        assertEquals(first.size(), second.size());
+
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i).getSymbol(), second.get(i).getSymbol());
+        }
+
+        assertSame(first.get(0).getSymbol().getDecodedMetadata(),
+                second.get(0).getSymbol().getDecodedMetadata());
+    }
+
+    @Test
+    public void testDifferentModulesDoNotShare()
+    {
+        TwigSymbolStore store = TwigSymbolStore.getDefault();
+
+        List<Entry> changed = createEntries();
+        changed.add(new Entry(ITwigModelElement.TEST, "even", null, null, 400, 20));
+
+        List<Entry> first = store.share(null, createEntries());
+        List<Entry> second = store.share(null, changed);
+
+        assertEquals(first.size() + 1, second.size());
+        assertNotSame(first.get(0).getSymbol(), second.get(0).getSymbol());
+    }
+
+    private List<Entry> createEntries()
+    {
+        String metadata = TwigMetadata.encode("Twig_Extension_Core",
+                "twig_date_format_filter", "Formats a date.", false, null);
+
+        List<Entry> entries = new ArrayList<Entry>();
+        entries.add(new Entry(ITwigModelElement.FILTER, "date", metadata, null, 120, 40));
+        entries.add(new Entry(ITwigModelElement.FILTER, "upper", metadata, null, 180, 40));
+        entries.add(new Entry(ITwigModelElement.FUNCTION, "range", metadata, null, 240, 30));
+
+        return entries;
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.test.testcases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.dltk.core.index2.IIndexingRequestor;
+import org.junit.Test;
+
+import com.dubture.twig.core.index.TwigIndexingVisitor;
+import com.dubture.twig.core.model.ITwigModelElement;
+
+/**
+ *
+ * Tests the usage references of filters, functions, tests and tags emitted
+ * by the {@link TwigIndexingVisitor}.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigUsageIndexTest extends TestCase
+{
+
+    private static final String TEMPLATE =
+            "{% trans %}Hello{% endtrans %}\n"
+          + "{{ post.created|date('Y-m-d') }} {{ post.title|upper }}\n"
+          + "{{ path('post_show', {'id': post.id}) }} {{ post.author.name() }}\n"
+          + "{% if post.tags is not empty and loop is divisible by(3) %}{% else %}{% endif %}\n"
+          + "{% filter lower|escape %}Text{% endfilter %}\n"
+          + "{% set count = max(1, 2) %}";
+
+    @Test
+    public void testFilters() throws Exception
+    {
+        assertUsages(ITwigModelElement.FILTER_USAGE, "date", "upper", "lower", "escape");
+    }
+
+    @Test
+    public void testFunctions() throws Exception
+    {
+        assertUsages(ITwigModelElement.FUNCTION_USAGE, "path", "max");
+    }
+
+    @Test
+    public void testTests() throws Exception
+    {
+        assertUsages(ITwigModelElement.TEST_USAGE, "empty", "divisible by");
+    }
+
+    @Test
+    public void testTags() throws Exception
+    {
+        assertUsages(ITwigModelElement.TAG_USAGE, "trans", "if", "filter", "set");
+    }
+
+    @Test
+    public void testOffsets() throws Exception
+    {
+        IIndexingRequestor.ReferenceInfo upper = RecordingRequestor.index(TEMPLATE, ITwigModelElement.FILTER_USAGE).get(1);
+
+        assertEquals(TEMPLATE.indexOf("upper"), upper.offset);
+        assertEquals("upper".length(), upper.length);
+    }
+
+    private void assertUsages(int kind, String... expected) throws Exception
+    {
+        List<IIndexingRequestor.ReferenceInfo> usages = RecordingRequestor.index(TEMPLATE, kind);
+        List<String> names = new ArrayList<String>();
+
+        for (IIndexingRequestor.ReferenceInfo usage : usages) {
+            names.add(usage.name);
+        }
+
+        assertEquals(Arrays.asList(expected), names);
+    }
+}
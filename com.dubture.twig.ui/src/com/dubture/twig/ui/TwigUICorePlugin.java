@@ -27,6 +27,7 @@ import org.eclipse.wst.sse.core.internal.provisional.IStructuredModel;
 import org.osgi.framework.BundleContext;
 
 import com.dubture.twig.core.log.Logger;
+import com.dubture.twig.ui.editor.TwigEditorMappings;
 import com.dubture.twig.ui.editor.configuration.TwigContributionContextTypeRegistry;
 import com.dubture.twig.ui.editor.templates.TwigTemplateContextType;
 import com.dubture.twig.ui.preferences.PreferenceConstants;
@@ -52,6 +53,8 @@ public class TwigUICorePlugin extends AbstractUIPlugin
 
     private ImagesOnFileSystemRegistry fImagesOnFSRegistry;
 
+    private TwigEditorMappings editorMappings;
+
     /**
      * The constructor
      */
@@ -70,6 +73,7 @@ public class TwigUICorePlugin extends AbstractUIPlugin
     {
         super.start(context);
         plugin = this;
+        editorMappings = TwigEditorMappings.install();
     }
 
     /*
@@ -81,6 +85,11 @@ public class TwigUICorePlugin extends AbstractUIPlugin
      */
     public void stop(BundleContext context) throws Exception
     {
+        if (editorMappings != null) {
+            editorMappings.uninstall();
+            editorMappings = null;
+        }
+
         plugin = null;
         super.stop(context);
     }
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.ui;
+
+import org.eclipse.ui.IStartup;
+
+import com.dubture.twig.ui.editor.TwigEditorMappings;
+
+/**
+ *
+ * Activates the UI plugin with the workbench, so the builder already
+ * classifies templates with the {@link TwigEditorMappings} before the first
+ * Twig editor is opened.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigUIStartup implements IStartup
+{
+
+    @Override
+    public void earlyStartup()
+    {
+        // starting the plugin installs the mappings
+    }
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * This file is part of the Twig eclipse plugin.
+ *
+ * (c) Robert Gruendler <r.gruendler@gmail.com>
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ ******************************************************************************/
+package com.dubture.twig.ui.editor;
+
+import org.eclipse.ui.IEditorDescriptor;
+import org.eclipse.ui.IEditorRegistry;
+import org.eclipse.ui.IFileEditorMapping;
+import org.eclipse.ui.IPropertyListener;
+import org.eclipse.ui.PlatformUI;
+
+import com.dubture.twig.core.TwigCorePlugin;
+import com.dubture.twig.core.util.TwigTemplateClassifier;
+
+/**
+ *
+ * Tells the {@link TwigTemplateClassifier} of the core plugin which file names
+ * and extensions the user mapped to the Twig editor, and clears its
+ * classifications when the mappings change.
+ *
+ *
+ * @author Robert Gruendler <r.gruendler@gmail.com>
+ *
+ */
+public class TwigEditorMappings implements TwigTemplateClassifier.EditorMappings, IPropertyListener
+{
+
+    private final IEditorRegistry registry;
+
+    private TwigEditorMappings(IEditorRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    /**
+     * Hand the editor mappings of the running workbench to the classifier.
+     *
+     * @return the installed mappings, or null if the workbench is not running
+     */
+    public static TwigEditorMappings install()
+    {
+        if (!PlatformUI.isWorkbenchRunning()) {
+            return null;
+        }
+
+        TwigEditorMappings mappings = new TwigEditorMappings(PlatformUI.getWorkbench().getEditorRegistry());
+        mappings.registry.addPropertyListener(mappings);
+        TwigTemplateClassifier.getDefault().setEditorMappings(mappings);
+
+        return mappings;
+    }
+
+    public void uninstall()
+    {
+        registry.removePropertyListener(this);
+        TwigTemplateClassifier.getDefault().setEditorMappings(null);
+    }
+
+    @Override
+    public void propertyChanged(Object source, int propId)
+    {
+        if (propId == IEditorRegistry.PROP_CONTENTS) {
+            TwigTemplateClassifier.getDefault().clear();
+        }
+    }
+
+    @Override
+    public boolean isMappedToTwigEditor(String filename)
+    {
+        int dot = filename.lastIndexOf('.');
+        String extension = dot != -1 ? filename.substring(dot + 1) : null;
+
+        for (IFileEditorMapping mapping : registry.getFileEditorMappings()) {
+            boolean matches = filename.equalsIgnoreCase(mapping.getLabel())
+                    || ("*".equals(mapping.getName()) && extension != null
+                            && extension.equalsIgnoreCase(mapping.getExtension()));
+
+            if (matches && isTwigEditorMapping(mapping)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isTwigEditorMapping(IFileEditorMapping mapping)
+    {
+        for (IEditorDescriptor editor : mapping.getEditors()) {
+            if (TwigCorePlugin.EDITOR_ID.equals(editor.getId())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -27,7 +27,7 @@ import org.eclipse.wst.sse.ui.ISemanticHighlighting;
 import org.eclipse.wst.sse.ui.ISemanticHighlightingExtension2;
 
 import com.dubture.twig.core.log.Logger;
-import com.dubture.twig.core.parser.SourceParserUtil;
+import com.dubture.twig.core.parser.TwigModuleCache;
 import com.dubture.twig.ui.TwigUICorePlugin;
 import com.dubture.twig.ui.editor.SemanticHighlightingStyle;
 import com.dubture.twig.ui.preferences.PreferenceConstants;
@@ -135,7 +135,7 @@ public abstract class AbstractSemanticHighlighting implements ISemanticHighlight
         ModuleDeclaration module = null;
         try {
             if (sourceModule != null) {
-                module = SourceParserUtil.parseSourceModule(sourceModule.getSource());
+                module = TwigModuleCache.getDefault().get(sourceModule);
             }
         } catch (Exception e) {
             Logger.logException(e);
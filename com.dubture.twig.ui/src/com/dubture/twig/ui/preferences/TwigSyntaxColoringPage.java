@@ -99,7 +99,7 @@ import com.dubture.twig.core.documentModel.parser.regions.ITwigScriptRegion;
 import com.dubture.twig.core.documentModel.parser.regions.TwigRegionTypes;
 import com.dubture.twig.core.documentModel.provisional.contenttype.ContentTypeIdForTwig;
 import com.dubture.twig.core.log.Logger;
-import com.dubture.twig.core.parser.SourceParserUtil;
+import com.dubture.twig.core.parser.TwigModuleCache;
 import com.dubture.twig.ui.TwigUICorePlugin;
 import com.dubture.twig.ui.TwigUIMessages;
 import com.dubture.twig.ui.editor.LineStyleProviderForTwig;
@@ -828,7 +828,7 @@ public class TwigSyntaxColoringPage extends PreferencePage implements
             final ISourceModule sourceModule = DLTKUIPlugin
                     .getDocumentProvider().getWorkingCopy(input);
 
-            final ModuleDeclaration module = SourceParserUtil.parseSourceModule(sourceModule.getSource());
+            final ModuleDeclaration module = TwigModuleCache.getDefault().get(sourceModule);
             if (sourceModule != null) {
 
                 List<AbstractSemanticHighlighting> highlightings = new ArrayList<AbstractSemanticHighlighting>();